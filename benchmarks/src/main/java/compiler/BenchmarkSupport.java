@@ -0,0 +1,49 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Shared setup for the benchmarks: generated inputs and a muted console.
+ * <p>
+ * The compiler echoes everything it generates to {@code System.out}; the benchmarks
+ * swap in a discarding stream so that we measure the compiler rather than the terminal.
+ */
+final class BenchmarkSupport {
+
+    // Fixed seed so that every fork and every run sees the same program.
+    static final long SEED = 455L;
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    private static PrintStream savedOut;
+
+    private BenchmarkSupport() {
+    }
+
+    static String program(final int tokens) {
+        return ProgramGenerator.generate(tokens, SEED);
+    }
+
+    static File writeTempFile(final String source) throws IOException {
+        final File file = File.createTempFile("compiler-bench-", ".txt");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), source, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    static void muteStdout() {
+        savedOut = System.out;
+        System.setOut(NULL_OUT);
+    }
+
+    static void restoreStdout() {
+        if (savedOut != null) {
+            System.setOut(savedOut);
+            savedOut = null;
+        }
+    }
+}
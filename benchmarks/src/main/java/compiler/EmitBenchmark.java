@@ -0,0 +1,80 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DOT emission phase on its own, driven without the parser.
+ * <p>
+ * Each token becomes a "&lt;TOKEN&gt;" box with its lexeme as an oval underneath, which is
+ * the same shape of output the parser produces for every matched terminal. {@code emit} keeps
+ * the output in memory (and echoes it to the muted console); {@code emitStreaming} streams it
+ * through a buffered sink and keeps nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class EmitBenchmark {
+
+    @Param({"500", "50000", "500000"})
+    public int tokens;
+
+    private String[] lexemes;
+    private String[] labels;
+
+    @Setup
+    public void setUp() {
+        this.lexemes = BenchmarkSupport.program(tokens).trim().split("\\s+");
+        this.labels = new String[lexemes.length];
+        for (int i = 0; i < lexemes.length; i++) {
+            labels[i] = Token.fromLexeme(lexemes[i]).getLabel();
+        }
+        BenchmarkSupport.muteStdout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.restoreStdout();
+    }
+
+    @Benchmark
+    public String emit() {
+        final CodeGenerator codeGenerator = new CodeGenerator();
+        this.emitTree(codeGenerator);
+        return codeGenerator.getGeneratedCodeBuffer();
+    }
+
+    @Benchmark
+    public CodeGenerator emitStreaming() {
+        final CodeGenerator codeGenerator = new CodeGenerator(CodeSink.toWriter(Writer.nullWriter()));
+        this.emitTree(codeGenerator);
+        codeGenerator.close();
+        return codeGenerator;
+    }
+
+    private void emitTree(final CodeGenerator codeGenerator) {
+        final TreeNode root = codeGenerator.writeHeader("PARSE TREE");
+
+        for (int i = 0; i < lexemes.length; i++) {
+            final TreeNode terminal = codeGenerator.addNonTerminalToTree(root, labels[i]);
+            codeGenerator.addTerminalToTree(terminal, lexemes[i]);
+        }
+        codeGenerator.writeFooter();
+    }
+}
@@ -0,0 +1,56 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole pipeline, the same way {@link MAIN} runs it: input file to DOT text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Xss256m"})
+public class EndToEndBenchmark {
+
+    @Param({"500", "5000", "50000"})
+    public int tokens;
+
+    private File sourceFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.sourceFile = BenchmarkSupport.writeTempFile(BenchmarkSupport.program(tokens));
+        BenchmarkSupport.muteStdout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.restoreStdout();
+    }
+
+    @Benchmark
+    public String compile() throws IOException {
+        final CodeGenerator codeGenerator = new CodeGenerator();
+        final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(sourceFile);
+
+        new Parser(lexicalAnalyzer, codeGenerator).analyze();
+
+        return codeGenerator.getGeneratedCodeBuffer();
+    }
+}
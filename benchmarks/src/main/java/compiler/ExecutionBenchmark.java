@@ -0,0 +1,98 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running a program rather than compiling it: nested loops with arithmetic, branches and a
+ * little output, {@code n * n} inner iterations in all.
+ * <p>
+ * The program is parsed (and, for {@link #vm()} and {@link #bytecode()}, compiled) once per trial;
+ * each invocation runs it from the start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class ExecutionBenchmark {
+
+    static final String PROGRAM = """
+            read n
+            total := 0
+            i := 0
+            while i < n do
+              j := 0
+              while j < n do
+                if (i + j) / 2 > j then total := total + i * j else total := total - 1 fi
+                j := j + 1
+              od
+              do total := total / 2 until total < 1000000
+              i := i + 1
+            od
+            write total
+            """;
+
+    @Param({"100", "1000"})
+    public int n;
+
+    private Program program;
+    private RegisterMachine machine;
+    private double[] registers;
+    private MethodHandle compiled;
+    private byte[] input;
+
+    @Setup
+    public void setUp() {
+        final ParseTree tree = Compilation.parseTree(CompilerOptions.forRequest(true, true, false),
+                new LexicalAnalyzer(PROGRAM));
+        this.program = Program.from(tree);
+        final ControlFlowGraph graph = ControlFlowGraph.from(program);
+        this.machine = RegisterMachine.compile(graph);
+        this.registers = machine.newRegisters();
+        this.compiled = BytecodeBackend.load(BytecodeBackend.compile(graph));
+        this.input = Integer.toString(n).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public double[] interpret() {
+        final var interpreter = new Interpreter(program, new ProgramInput(new ByteArrayInputStream(input)),
+                new ProgramOutput(OutputStream.nullOutputStream()));
+        interpreter.run();
+        return interpreter.getSlots();
+    }
+
+    @Benchmark
+    public double[] vm() {
+        // The variables start at 0 again; the constants and temporaries can stay as they are.
+        Arrays.fill(registers, 0, program.getSlotCount(), 0);
+        machine.run(registers, new ProgramInput(new ByteArrayInputStream(input)),
+                new ProgramOutput(OutputStream.nullOutputStream()));
+        return registers;
+    }
+
+    @Benchmark
+    public double[] bytecode() {
+        final double[] slots = new double[program.getSlotCount()];
+        BytecodeBackend.run(compiled, new ProgramInput(new ByteArrayInputStream(input)),
+                new ProgramOutput(OutputStream.nullOutputStream()), slots);
+        return slots;
+    }
+}
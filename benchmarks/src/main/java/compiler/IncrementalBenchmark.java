@@ -0,0 +1,83 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Recompiling a program after a one character edit: {@link IncrementalParser} against a
+ * full compile (scan, table-driven parse into a tree, emit).
+ * <p>
+ * The edit changes a digit near the middle of the program, alternating between two versions,
+ * so every invocation really is an edit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class IncrementalBenchmark {
+
+    @Param({"5000", "50000", "500000"})
+    public int tokens;
+
+    private byte[][] versions;
+    private int version;
+    private IncrementalParser incrementalParser;
+
+    @Setup
+    public void setUp() {
+        final byte[] source = BenchmarkSupport.program(tokens).getBytes(StandardCharsets.UTF_8);
+
+        int digit = source.length / 2;
+        while (digit < source.length && (source[digit] < '0' || source[digit] > '8')) {
+            digit++;
+        }
+        if (digit == source.length) {
+            throw new IllegalStateException("No digit to edit in the generated program.");
+        }
+
+        final byte[] edited = source.clone();
+        edited[digit]++;
+        this.versions = new byte[][]{source, edited};
+        this.incrementalParser = new IncrementalParser(source);
+    }
+
+    @Benchmark
+    public IncrementalParser editIncrementally() {
+        version ^= 1;
+        incrementalParser.update(versions[version]);
+        this.emit(incrementalParser::emit);
+        return incrementalParser;
+    }
+
+    @Benchmark
+    public ParseTree editFullCompile() {
+        version ^= 1;
+        final var lexer = new LexicalAnalyzer(versions[version]);
+        final var treeBuilder = new ParseTreeBuilder(lexer);
+        new TableDrivenParser(lexer, treeBuilder).analyze();
+        this.emit(codeGenerator -> DotEmitter.emit(treeBuilder.getTree(), codeGenerator));
+        return treeBuilder.getTree();
+    }
+
+    private void emit(final Consumer<CodeGenerator> emitter) {
+        final CodeGenerator codeGenerator = new CodeGenerator(CodeSink.toWriter(Writer.nullWriter()));
+        emitter.accept(codeGenerator);
+        codeGenerator.close();
+    }
+}
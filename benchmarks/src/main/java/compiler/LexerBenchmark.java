@@ -0,0 +1,51 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lexical analysis phase on its own: source text (or file) to token list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LexerBenchmark {
+
+    @Param({"500", "50000", "5000000"})
+    public int tokens;
+
+    private String source;
+    private File sourceFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.source = BenchmarkSupport.program(tokens);
+        this.sourceFile = BenchmarkSupport.writeTempFile(source);
+    }
+
+    @Benchmark
+    public LexicalAnalyzer tokenizeString() {
+        return new LexicalAnalyzer(source);
+    }
+
+    @Benchmark
+    public LexicalAnalyzer tokenizeFile() throws IOException {
+        return new LexicalAnalyzer(sourceFile);
+    }
+}
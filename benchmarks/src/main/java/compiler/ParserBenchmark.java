@@ -0,0 +1,78 @@
+package compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The syntax analysis phase: {@link Parser#analyze()} and {@link TableDrivenParser#analyze()}
+ * over an already tokenized input, either generating code on the fly or only building a
+ * {@link ParseTree}.
+ * <p>
+ * The lexer is consumed by parsing, so a fresh one is built before every invocation
+ * (outside of the measured region). Sizes stop well short of the lexer benchmark because
+ * the recursive-descent parser recurses once per statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Xss256m"})
+public class ParserBenchmark {
+
+    @Param({"500", "5000", "50000"})
+    public int tokens;
+
+    private String source;
+    private LexicalAnalyzer lexer;
+    private CodeGenerator codeGenerator;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        this.source = BenchmarkSupport.program(tokens);
+        BenchmarkSupport.muteStdout();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        this.lexer = new LexicalAnalyzer(source);
+        this.codeGenerator = new CodeGenerator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkSupport.restoreStdout();
+    }
+
+    @Benchmark
+    public CodeGenerator parse() {
+        new Parser(lexer, codeGenerator).analyze();
+        return codeGenerator;
+    }
+
+    @Benchmark
+    public CodeGenerator parseTableDriven() {
+        new TableDrivenParser(lexer, codeGenerator).analyze();
+        return codeGenerator;
+    }
+
+    @Benchmark
+    public ParseTree buildTree() {
+        final ParseTreeBuilder treeBuilder = new ParseTreeBuilder(lexer);
+        new TableDrivenParser(lexer, treeBuilder).analyze();
+        return treeBuilder.getTree();
+    }
+}
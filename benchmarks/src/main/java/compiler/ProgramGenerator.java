@@ -0,0 +1,154 @@
+package compiler;
+
+import java.util.Random;
+
+/**
+ * Generates syntactically valid programs for the grammar in {@link Parser}.
+ * <p>
+ * The output is deterministic for a given seed, so every benchmark fork sees the
+ * same program. All lexemes are separated by single spaces and statements by
+ * newlines, which is what {@link LexicalAnalyzer} expects.
+ */
+final class ProgramGenerator {
+
+    // Keep loops and ifs shallow; the benchmarks are about volume, not nesting.
+    private static final int MAX_DEPTH = 3;
+
+    private static final String[] IDENTIFIERS = {"a", "b", "c", "x", "y", "z", "sum", "count"};
+    private static final String[] ADD_OPS = {"+", "-"};
+    private static final String[] MULT_OPS = {"*", "/"};
+    private static final String[] RELATIONS = {"<", ">", "<=", ">=", "=", "!="};
+
+    private final Random random;
+    private final StringBuilder out = new StringBuilder();
+    private int tokens;
+
+    private ProgramGenerator(final long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generate a program of roughly the requested size.
+     *
+     * @param targetTokens the minimum number of tokens to emit
+     * @param seed         the random seed
+     * @return the program text
+     */
+    static String generate(final int targetTokens, final long seed) {
+        final var generator = new ProgramGenerator(seed);
+
+        while (generator.tokens < targetTokens) {
+            generator.statement(0);
+            generator.out.append('\n');
+        }
+
+        return generator.out.toString();
+    }
+
+    // <STMT> ::= <ID> := <EXPR> | read <ID> | write <EXPR> | <WHILE_STMT> | <DO_STMT> | <IF_STMT>
+    private void statement(final int depth) {
+        final int choice = depth < MAX_DEPTH ? random.nextInt(10) : random.nextInt(6);
+
+        switch (choice) {
+            case 0, 1, 2, 3 -> {
+                emit(identifier());
+                emit(":=");
+                expression(0);
+            }
+            case 4 -> {
+                emit("read");
+                emit(identifier());
+            }
+            case 5 -> {
+                emit("write");
+                expression(0);
+            }
+            case 6, 7 -> {
+                emit("while");
+                condition();
+                emit("do");
+                statementList(depth + 1);
+                emit("od");
+            }
+            case 8 -> {
+                emit("do");
+                statementList(depth + 1);
+                emit("until");
+                condition();
+            }
+            default -> {
+                emit("if");
+                condition();
+                emit("then");
+                statementList(depth + 1);
+                if (random.nextBoolean()) {
+                    emit("else");
+                    statementList(depth + 1);
+                }
+                emit("fi");
+            }
+        }
+    }
+
+    private void statementList(final int depth) {
+        final int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            statement(depth);
+        }
+    }
+
+    private void condition() {
+        expression(0);
+        emit(pick(RELATIONS));
+        expression(0);
+    }
+
+    // <EXPR> ::= <TERM> <TERM_TAIL>
+    private void expression(final int depth) {
+        term(depth);
+        while (random.nextInt(3) == 0) {
+            emit(pick(ADD_OPS));
+            term(depth);
+        }
+    }
+
+    // <TERM> ::= <FACTOR> <FACTOR_TAIL>
+    private void term(final int depth) {
+        factor(depth);
+        while (random.nextInt(3) == 0) {
+            emit(pick(MULT_OPS));
+            factor(depth);
+        }
+    }
+
+    // <FACTOR> ::= ( <EXPR> ) | <ID> | <NUMBER>
+    private void factor(final int depth) {
+        final int choice = random.nextInt(depth < MAX_DEPTH ? 5 : 4);
+
+        if (choice < 2) {
+            emit(identifier());
+        } else if (choice < 4) {
+            emit(Integer.toString(random.nextInt(1000)));
+        } else {
+            emit("(");
+            expression(depth + 1);
+            emit(")");
+        }
+    }
+
+    private String identifier() {
+        return pick(IDENTIFIERS);
+    }
+
+    private String pick(final String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private void emit(final String lexeme) {
+        if (!out.isEmpty() && out.charAt(out.length() - 1) != '\n') {
+            out.append(' ');
+        }
+        out.append(lexeme);
+        tokens++;
+    }
+}
@@ -0,0 +1,267 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many programs at once ({@code MAIN --batch}).
+ * <p>
+ * Every program is an independent {@link Compilation}, so the files are simply split across a
+ * work-stealing {@link ForkJoinPool}: a thread that runs out of files takes half of another
+ * thread's remaining ones, which keeps all of them busy even when a few programs are much
+ * longer than the rest.
+ * <p>
+ * Each program's code goes into its own file, {@code <input>.dot}: next to the input, or under
+ * the {@code -o} directory (keeping the input's path relative to the directory or glob it was
+ * found through).
+ * <p>
+ * With {@code --stats}, each program is measured on its own and the numbers are added up for
+ * the whole batch. With {@code --cache}, a program whose code is in the {@link CompileCache}
+ * is copied from there instead of being compiled.
+ */
+final class BatchCompiler {
+
+    // The extension of the programs a directory is searched for; a glob can match any others.
+    static final String SOURCE_EXTENSION = ".txt";
+
+    // The extension of the generated files.
+    static final String OUTPUT_EXTENSION = ".dot";
+
+    // A single input: the program and where its code goes.
+    private record Job(Path input, Path output) {
+    }
+
+    // The outcome of a batch.
+    record Result(int compiled, int failed) {
+    }
+
+    private final CompilerOptions options;
+
+    // Every program's numbers, added up (null without --stats).
+    private final CompilationStats stats;
+
+    // Code compiled before (null without --cache).
+    private final CompileCache cache;
+
+    /**
+     * @param options the batch's settings
+     * @throws IOException if the cache directory can't be created
+     */
+    BatchCompiler(final CompilerOptions options) throws IOException {
+        this.options = options;
+        this.stats = options.isStats() ? new CompilationStats() : null;
+        this.cache = options.getCacheDirectory() == null
+                ? null
+                : new CompileCache(options.getCacheDirectory(), options.getCacheSize());
+    }
+
+    /**
+     * @return the numbers of every program compiled so far, or null without {@code --stats}
+     */
+    CompilationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Compile every input of the batch and print a one line summary, plus a line per failure.
+     *
+     * @return how many programs compiled and how many didn't
+     * @throws IOException if an input directory can't be searched
+     */
+    Result run() throws IOException {
+        final List<Job> jobs = this.findJobs();
+        final List<String> failures;
+
+        final ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        try {
+            failures = pool.invoke(new CompileTask(jobs, 0, jobs.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (final String failure : failures) {
+            System.err.println(failure);
+        }
+        final var result = new Result(jobs.size() - failures.size(), failures.size());
+        if (cache == null) {
+            System.out.printf("Compiled %d program(s), %d failed.%n", result.compiled(), result.failed());
+        } else {
+            System.out.printf("Compiled %d program(s), %d failed, %d from the cache.%n", result.compiled(),
+                    result.failed(), cache.getHits());
+        }
+        return result;
+    }
+
+    /**
+     * Expand the inputs: a directory is searched recursively for {@code .txt} files, a glob
+     * pattern (e.g. {@code tests/**.prog}) is matched below the part of it that has no wildcards,
+     * anything else is a file.
+     *
+     * @return every program to compile, once, in command line order
+     * @throws IOException if a directory can't be searched
+     */
+    List<Job> findJobs() throws IOException {
+        final Set<Path> seen = new LinkedHashSet<>();
+        final List<Job> jobs = new ArrayList<>();
+
+        for (final String input : options.getInputs()) {
+            final int wildcard = firstWildcard(input);
+            final Path base;
+            final List<Path> files;
+
+            if (wildcard >= 0) {
+                // Search from the last directory before the first wildcard.
+                final int separator = Math.max(input.lastIndexOf('/', wildcard), input.lastIndexOf('\\', wildcard));
+                base = Path.of(separator < 0 ? "." : input.substring(0, separator + 1));
+                final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                files = walk(base, file -> matcher.matches(separator < 0 ? base.relativize(file) : file));
+            } else if (Files.isDirectory(Path.of(input))) {
+                base = Path.of(input);
+                files = walk(base, file -> file.getFileName().toString().endsWith(SOURCE_EXTENSION));
+            } else {
+                base = null;
+                files = List.of(Path.of(input));
+            }
+
+            for (final Path file : files) {
+                if (seen.add(file.toAbsolutePath().normalize())) {
+                    jobs.add(new Job(file, this.outputFor(file, base)));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    // input.dot, next to the input or under the output directory.
+    private Path outputFor(final Path input, final Path base) {
+        final Path outputDirectory = options.getOutputFile();
+        if (outputDirectory == null) {
+            return input.resolveSibling(input.getFileName() + OUTPUT_EXTENSION);
+        }
+        final Path relative = base == null ? input.getFileName() : base.relativize(input);
+        return outputDirectory.resolve(relative + OUTPUT_EXTENSION);
+    }
+
+    // Compile one program; the error message if it didn't compile, null if it did.
+    private String compile(final Job job) {
+        try {
+            if (!Files.isRegularFile(job.input()) || !Files.isReadable(job.input())) {
+                return "Input file not found: " + job.input();
+            }
+            if (job.output().getParent() != null) {
+                Files.createDirectories(job.output().getParent());
+            }
+
+            final byte[] source = cache == null ? null : Files.readAllBytes(job.input());
+            final String key = cache == null ? null : CompileCache.key(options, source);
+            if (key != null && cache.copyTo(key, job.output())) {
+                if (stats != null) {
+                    final var hit = new CompilationStats();
+                    hit.cached();
+                    stats.add(hit);
+                }
+                return null;
+            }
+
+            final CompilerOptions fileOptions = options.forFile(job.input().toFile(), job.output());
+            final CompilationStats jobStats = stats == null ? null : new CompilationStats();
+            try {
+                final CodeSink sink = options.getLexer() == CompilerOptions.Lexer.PIPELINED
+                        ? CodeSink.toFileInBackground(job.output())
+                        : CodeSink.toFile(job.output());
+                final boolean parsed = source == null
+                        ? Compilation.compile(fileOptions, fileOptions.getInputFile(), sink, jobStats)
+                        : Compilation.compile(fileOptions, source, sink, jobStats);
+                if (!parsed) {
+                    return "Syntax error in " + job.input();
+                }
+                if (key != null) {
+                    cache.store(key, job.output());
+                }
+                return null;
+            } finally {
+                if (jobStats != null) {
+                    stats.add(jobStats);
+                }
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            return "Could not compile %s: %s".formatted(job.input(), ex.getMessage());
+        }
+    }
+
+    private static List<Path> walk(final Path base, final PathMatcher filter) throws IOException {
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile).filter(filter::matches).sorted().toList();
+        }
+    }
+
+    private static int firstWildcard(final String input) {
+        for (int i = 0; i < input.length(); i++) {
+            switch (input.charAt(i)) {
+                case '*', '?', '[', '{' -> {
+                    return i;
+                }
+                default -> {
+                }
+            }
+        }
+        return -1;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * Compile jobs[from...to): split in half until there are only a few left, so idle
+     * threads can steal the other half.
+     */
+    private final class CompileTask extends RecursiveTask<List<String>> {
+
+        private static final int THRESHOLD = 2;
+
+        private final List<Job> jobs;
+        private final int from;
+        private final int to;
+
+        CompileTask(final List<Job> jobs, final int from, final int to) {
+            this.jobs = jobs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<String> compute() {
+            if (to - from <= THRESHOLD) {
+                final List<String> failures = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    final String failure = BatchCompiler.this.compile(jobs.get(i));
+                    if (failure != null) {
+                        failures.add(failure);
+                    }
+                }
+                return failures;
+            }
+
+            final int middle = (from + to) >>> 1;
+            final var right = new CompileTask(jobs, middle, to);
+            right.fork();
+            final List<String> failures = new CompileTask(jobs, from, middle).compute();
+            failures.addAll(right.join());
+            return failures;
+        }
+    }
+}
@@ -0,0 +1,572 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles a program, from its {@link ControlFlowGraph}, to a JVM class and runs it, so that
+ * HotSpot JIT-compiles the program's loops like any other Java code.
+ * <p>
+ * The class has one method,
+ * <pre>
+ *     static void run(ProgramInput in, ProgramOutput out, double[] slots)
+ * </pre>
+ * in which every variable and (packed) temporary is a {@code double} local, the blocks' exits
+ * are plain branches, and {@code read}/{@code write} call {@link ProgramInput} and
+ * {@link ProgramOutput}. On the way out the variables are copied into {@code slots}, also when
+ * the program fails part way, as the interpreter's are.
+ * <p>
+ * The class file is written by hand (Java 17 has no class file API). It is a version 49 (Java 5)
+ * class, the last version the JVM verifies without StackMapTable frames, so no frames have to be
+ * computed. It is loaded as a hidden class next to this one, which gives it access to the
+ * package-private runtime and lets it be unloaded with its {@link MethodHandle}.
+ * <p>
+ * A method's code is limited to 64 KB, so a very long program doesn't fit: {@link #compile}
+ * then throws, and the program has to be interpreted.
+ */
+final class BytecodeBackend {
+
+    // The hidden class's name (the JVM appends a suffix to make it unique).
+    static final String CLASS_NAME = "compiler/CompiledProgram";
+
+    private static final String METHOD_NAME = "run";
+    private static final String METHOD_DESCRIPTOR = "(Lcompiler/ProgramInput;Lcompiler/ProgramOutput;[D)V";
+    private static final MethodType METHOD_TYPE =
+            MethodType.methodType(void.class, ProgramInput.class, ProgramOutput.class, double[].class);
+
+    private static final int CLASS_FILE_VERSION = 49;
+    private static final int MAX_CODE_SIZE = 65535;
+
+    // Locals 0-2 are the parameters; variable k lives in locals 3 + 2k and 4 + 2k, the
+    // temporaries after the variables.
+    private static final int FIRST_VARIABLE = 3;
+
+    // Opcodes.
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DSTORE = 0x39;
+    private static final int DASTORE = 0x52;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int ATHROW = 0xbf;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int WIDE = 0xc4;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private BytecodeBackend() {
+    }
+
+    /**
+     * Generate the class file for a program.
+     *
+     * @param graph the program's control-flow graph
+     * @return the class file
+     * @throws IllegalArgumentException if the program doesn't fit in one method
+     */
+    static byte[] compile(final ControlFlowGraph graph) {
+        return new ClassWriter(graph).write();
+    }
+
+    /**
+     * Load a class made by {@link #compile}.
+     *
+     * @param classFile the class file
+     * @return its {@code run} method
+     */
+    static MethodHandle load(final byte[] classFile) {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return lookup.findStatic(lookup.lookupClass(), METHOD_NAME, METHOD_TYPE);
+        } catch (IllegalAccessException | NoSuchMethodException ex) {
+            throw new IllegalStateException("Could not load the compiled program", ex);
+        }
+    }
+
+    /**
+     * Run a loaded program. The output is flushed even if the program fails.
+     *
+     * @param run   the method returned by {@link #load}
+     * @param in    where {@code read} reads from
+     * @param out   where {@code write} writes to
+     * @param slots receives the variables' final values
+     * @throws ProgramException if the program fails
+     */
+    static void run(final MethodHandle run, final ProgramInput in, final ProgramOutput out, final double[] slots) {
+        try {
+            run.invokeExact(in, out, slots);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            out.flush();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * The constant pool: entries are added on first use and shared after that.
+     */
+    private static final class ConstantPool {
+
+        private static final int UTF8 = 1;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<Object, Integer> entries = new HashMap<>();
+
+        // Entry 0 is unused.
+        private int count = 1;
+
+        int utf8(final String text) {
+            return this.entry("U" + text, 1, () -> {
+                out.writeByte(UTF8);
+                out.writeUTF(text);
+            });
+        }
+
+        int type(final String internalName) {
+            final int name = this.utf8(internalName);
+            return this.entry("C" + internalName, 1, () -> {
+                out.writeByte(CLASS);
+                out.writeShort(name);
+            });
+        }
+
+        int method(final String owner, final String name, final String descriptor) {
+            final int ownerIndex = this.type(owner);
+            final int nameIndex = this.utf8(name);
+            final int descriptorIndex = this.utf8(descriptor);
+            final int nameAndType = this.entry("N" + name + descriptor, 1, () -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return this.entry("M" + owner + '.' + name + descriptor, 1, () -> {
+                out.writeByte(METHOD_REF);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        // A double takes two entries.
+        int number(final double value) {
+            return this.entry(Double.doubleToRawLongBits(value), 2, () -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(value);
+            });
+        }
+
+        int count() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+
+        private int entry(final Object key, final int size, final Writer writer) {
+            final Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            entries.put(key, count);
+            count += size;
+            if (count > 0xFFFF) {
+                throw new IllegalArgumentException("Too many constants for one class.");
+            }
+            return count - size;
+        }
+    }
+
+    /*
+     * One pass over the blocks, writing the method's code; jumps are patched at the end, when
+     * every block's position is known.
+     */
+    private static final class ClassWriter {
+
+        private final ControlFlowGraph graph;
+        private final ConstantPool pool = new ConstantPool();
+        private final int[] packed;
+        private final int[] positions;
+
+        private byte[] code = new byte[1024];
+        private int length;
+        private int stack;
+        private int maxStack;
+
+        // The positions of the jumps, and the block each goes to.
+        private int[] jumps = new int[16];
+        private int[] targets = new int[16];
+        private int jumpCount;
+
+        private final int readNumber;
+        private final int writeNumber;
+
+        ClassWriter(final ControlFlowGraph graph) {
+            this.graph = graph;
+            this.packed = graph.packTemporaries();
+            this.positions = new int[graph.blockCount()];
+            this.readNumber = pool.method("compiler/ProgramInput", "readNumber", "()D");
+            this.writeNumber = pool.method("compiler/ProgramOutput", "writeNumber", "(D)V");
+        }
+
+        byte[] write() {
+            final int variables = graph.variableCount();
+            int temporaries = 0;
+            for (final int temporary : packed) {
+                temporaries = Math.max(temporaries, temporary + 1);
+            }
+            final long maxLocals = FIRST_VARIABLE + 2L * (variables + temporaries);
+            if (maxLocals > 0xFFFF) {
+                throw new IllegalArgumentException("Too many variables for one method: " + variables
+                        + " and " + temporaries + " temporaries");
+            }
+
+            // Every variable starts at 0.
+            for (int slot = 0; slot < variables; slot++) {
+                this.op(DCONST_0, 2);
+                this.local(DSTORE, slot, -2);
+            }
+
+            final int bodyStart = length;
+            for (int block = 0; block < graph.blockCount(); block++) {
+                positions[block] = length;
+                for (int i = graph.first(block); i < graph.end(block); i++) {
+                    this.instruction(i);
+                }
+                this.exit(block);
+            }
+            final int bodyEnd = length;
+            for (int j = 0; j < jumpCount; j++) {
+                this.patch(jumps[j], positions[targets[j]]);
+            }
+
+            // If the body throws, hand the variables back all the same and rethrow.
+            final boolean handler = bodyEnd > bodyStart && variables > 0;
+            final int handlerStart = length;
+            if (handler) {
+                stack = 1;
+                maxStack = Math.max(maxStack, stack);
+                this.storeVariables();
+                this.op(ATHROW, -1);
+            }
+
+            if (length > MAX_CODE_SIZE) {
+                throw new IllegalArgumentException("The program is too long for one JVM method ("
+                        + length + " bytes of code).");
+            }
+
+            final int thisClass = pool.type(CLASS_NAME);
+            final int superClass = pool.type("java/lang/Object");
+            final int methodName = pool.utf8(METHOD_NAME);
+            final int methodDescriptor = pool.utf8(METHOD_DESCRIPTOR);
+            final int codeAttribute = pool.utf8("Code");
+
+            final var bytes = new ByteArrayOutputStream(length + 1024);
+            try (var out = new DataOutputStream(bytes)) {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(CLASS_FILE_VERSION);
+                out.writeShort(pool.count());
+                out.write(pool.toByteArray());
+                out.writeShort(ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0); // interfaces
+                out.writeShort(0); // fields
+
+                out.writeShort(1); // methods
+                out.writeShort(ACC_PUBLIC | ACC_STATIC);
+                out.writeShort(methodName);
+                out.writeShort(methodDescriptor);
+                out.writeShort(1); // attributes
+                out.writeShort(codeAttribute);
+                out.writeInt(12 + length + (handler ? 8 : 0));
+                out.writeShort(maxStack);
+                out.writeShort((int) maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                if (handler) {
+                    out.writeShort(1); // exception table: any throwable in the body
+                    out.writeShort(bodyStart);
+                    out.writeShort(bodyEnd);
+                    out.writeShort(handlerStart);
+                    out.writeShort(0);
+                } else {
+                    out.writeShort(0);
+                }
+                out.writeShort(0); // code attributes
+
+                out.writeShort(0); // class attributes
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return bytes.toByteArray();
+        }
+
+        //////////////////////////////////////////////////////////////////////////////////////////////////////
+
+        private void instruction(final int i) {
+            switch (graph.opcode(i)) {
+                case ControlFlowGraph.COPY -> {
+                    this.load(graph.left(i));
+                    this.store(graph.result(i));
+                }
+                case ControlFlowGraph.READ -> {
+                    this.op(ALOAD_0, 1);
+                    this.invoke(readNumber, 1);
+                    this.store(graph.result(i));
+                }
+                case ControlFlowGraph.WRITE -> {
+                    this.op(ALOAD_1, 1);
+                    this.load(graph.left(i));
+                    this.invoke(writeNumber, -3);
+                }
+                default -> {
+                    this.load(graph.left(i));
+                    this.load(graph.right(i));
+                    this.op(switch (graph.opcode(i)) {
+                        case ControlFlowGraph.ADD -> DADD;
+                        case ControlFlowGraph.SUBTRACT -> DSUB;
+                        case ControlFlowGraph.MULTIPLY -> DMUL;
+                        default -> DDIV;
+                    }, -2);
+                    this.store(graph.result(i));
+                }
+            }
+        }
+
+        // No jump to the next block; a branch whose "true" block is next is turned around.
+        private void exit(final int block) {
+            final int following = block + 1;
+            switch (graph.exit(block)) {
+                case ControlFlowGraph.GOTO -> {
+                    if (graph.next(block) != following) {
+                        this.jump(GOTO, graph.next(block));
+                    }
+                }
+                case ControlFlowGraph.BRANCH -> {
+                    if (graph.next(block) == following) {
+                        this.branch(block, false, graph.otherwise(block));
+                    } else {
+                        this.branch(block, true, graph.next(block));
+                        if (graph.otherwise(block) != following) {
+                            this.jump(GOTO, graph.otherwise(block));
+                        }
+                    }
+                }
+                default -> {
+                    this.storeVariables();
+                    this.op(RETURN, 0);
+                }
+            }
+        }
+
+        /**
+         * Compare and branch, with the same NaN behaviour as Java's operators (dcmpg for &lt;
+         * and &lt;=, dcmpl for the rest).
+         *
+         * @param block  the block whose exit this is
+         * @param when   branch if the relation is this
+         * @param target the block to branch to
+         */
+        private void branch(final int block, final boolean when, final int target) {
+            this.load(graph.testLeft(block));
+            this.load(graph.testRight(block));
+
+            final int compare;
+            final int ifTrue;
+            final int ifFalse;
+            switch (graph.relation(block)) {
+                case LESS -> {
+                    compare = DCMPG;
+                    ifTrue = IFLT;
+                    ifFalse = IFGE;
+                }
+                case LESS_EQUAL -> {
+                    compare = DCMPG;
+                    ifTrue = IFLE;
+                    ifFalse = IFGT;
+                }
+                case GREATER -> {
+                    compare = DCMPL;
+                    ifTrue = IFGT;
+                    ifFalse = IFLE;
+                }
+                case GREATER_EQUAL -> {
+                    compare = DCMPL;
+                    ifTrue = IFGE;
+                    ifFalse = IFLT;
+                }
+                case EQUAL -> {
+                    compare = DCMPL;
+                    ifTrue = IFEQ;
+                    ifFalse = IFNE;
+                }
+                default -> {
+                    compare = DCMPL;
+                    ifTrue = IFNE;
+                    ifFalse = IFEQ;
+                }
+            }
+            this.op(compare, -3);
+            stack--;
+            this.jump(when ? ifTrue : ifFalse, target);
+        }
+
+        // slots[k] = variable k, for every variable.
+        private void storeVariables() {
+            for (int slot = 0; slot < graph.variableCount(); slot++) {
+                this.op(ALOAD_2, 1);
+                this.pushIndex(slot);
+                this.local(DLOAD, slot, 2);
+                this.op(DASTORE, -4);
+            }
+        }
+
+        private void load(final int operand) {
+            if (!ControlFlowGraph.isConstant(operand)) {
+                this.local(DLOAD, this.local(operand), 2);
+                return;
+            }
+            final double value = graph.constant(operand);
+            if (Double.doubleToRawLongBits(value) == 0) {
+                this.op(DCONST_0, 2);
+            } else if (value == 1) {
+                this.op(DCONST_1, 2);
+            } else {
+                this.op(LDC2_W, 2);
+                this.u2(pool.number(value));
+            }
+        }
+
+        private void store(final int operand) {
+            this.local(DSTORE, this.local(operand), -2);
+        }
+
+        // The variable number of a variable or temporary, for local().
+        private int local(final int operand) {
+            return graph.isTemporary(operand)
+                    ? graph.variableCount() + packed[operand - graph.variableCount()]
+                    : operand;
+        }
+
+        //////////////////////////////////////////////////////////////////////////////////////////////////////
+
+        // An instruction without operands, and what it does to the stack.
+        private void op(final int opcode, final int stackChange) {
+            this.u1(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        // dload/dstore of a variable.
+        private void local(final int opcode, final int slot, final int stackChange) {
+            final int local = FIRST_VARIABLE + 2 * slot;
+            if (local <= 0xFF) {
+                this.op(opcode, stackChange);
+                this.u1(local);
+            } else {
+                this.u1(WIDE);
+                this.op(opcode, stackChange);
+                this.u2(local);
+            }
+        }
+
+        // An array index (variables are limited to 32K by the locals anyway).
+        private void pushIndex(final int index) {
+            if (index <= 5) {
+                this.op(ICONST_0 + index, 1);
+            } else {
+                this.op(SIPUSH, 1);
+                this.u2(index);
+            }
+        }
+
+        private void invoke(final int method, final int stackChange) {
+            this.op(INVOKEVIRTUAL, stackChange);
+            this.u2(method);
+        }
+
+        // A jump to a block, patched once the block's position is known.
+        private void jump(final int opcode, final int block) {
+            if (jumpCount == jumps.length) {
+                jumps = Arrays.copyOf(jumps, jumpCount * 2);
+                targets = Arrays.copyOf(targets, jumpCount * 2);
+            }
+            jumps[jumpCount] = length;
+            targets[jumpCount++] = block;
+            this.u1(opcode);
+            this.u2(0);
+        }
+
+        private void patch(final int at, final int target) {
+            final int offset = target - at;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("The program is too long for one JVM method (a branch spans "
+                        + Math.abs(offset) + " bytes).");
+            }
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+        }
+
+        private void u1(final int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(final int value) {
+            this.u1(value >> 8);
+            this.u1(value);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Where the {@link CodeGenerator} sends its output.
+ * <p>
+ * The generator appends small pieces (quotes, node names, ids, labels) rather than formatting
+ * a whole line at a time, so a sink never sees a per-edge String. Sinks either stream the
+ * text straight out through a buffer ({@link #toFile}, {@link #toFileInBackground},
+ * {@link #toWriter}, {@link #toConsole}) or keep it ({@link #inMemory}); {@link #tee} does both.
+ * <p>
+ * I/O errors are rethrown as {@link UncheckedIOException}, since the parser has no business
+ * knowing about them.
+ */
+interface CodeSink extends Closeable {
+
+    CodeSink append(CharSequence text);
+
+    CodeSink append(char c);
+
+    CodeSink append(int number);
+
+    /**
+     * Push anything buffered to the underlying destination.
+     */
+    void flush();
+
+    /**
+     * Flush and release the underlying destination.
+     */
+    @Override
+    void close();
+
+    /**
+     * Everything written so far, if this sink keeps it.
+     *
+     * @return the output so far, or empty if the output was only streamed
+     */
+    default Optional<String> contents() {
+        return Optional.empty();
+    }
+
+    /**
+     * Write to both this sink and another one.
+     *
+     * @param other the second sink
+     * @return a sink writing to both
+     */
+    default CodeSink tee(final CodeSink other) {
+        return new TeeCodeSink(this, other);
+    }
+
+    static CodeSink inMemory() {
+        return new MemoryCodeSink();
+    }
+
+    static CodeSink toWriter(final Writer writer) {
+        return new StreamingCodeSink(writer, true);
+    }
+
+    /**
+     * Stream to a file through a {@link FileChannel}, replacing the file if it exists.
+     *
+     * @param path the output file
+     * @return the sink
+     * @throws IOException if the file can't be opened
+     */
+    static CodeSink toFile(final Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new StreamingCodeSink(Channels.newWriter(channel, StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Stream to a file like {@link #toFile}, but encode and write the text on a thread of its
+     * own (see {@link BackgroundWriter}), so that the code generator doesn't wait for the disk.
+     *
+     * @param path the output file
+     * @return the sink
+     * @throws IOException if the file can't be opened
+     */
+    static CodeSink toFileInBackground(final Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new StreamingCodeSink(new BackgroundWriter(Channels.newWriter(channel, StandardCharsets.UTF_8)), true);
+    }
+
+    /**
+     * Echo to a console stream. Closing the sink flushes, but leaves the stream open.
+     *
+     * @param console usually {@code System.out}
+     * @return the sink
+     */
+    static CodeSink toConsole(final PrintStream console) {
+        return new StreamingCodeSink(new OutputStreamWriter(console, StandardCharsets.UTF_8), false);
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A sink that batches output in a private (unsynchronized) char buffer and hands it to a
+ * {@link Writer} one large chunk at a time.
+ */
+final class StreamingCodeSink implements CodeSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final boolean closeWriter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+
+    StreamingCodeSink(final Writer writer, final boolean closeWriter) {
+        this.writer = writer;
+        this.closeWriter = closeWriter;
+    }
+
+    @Override
+    public CodeSink append(final CharSequence text) {
+        if (text instanceof String string) {
+            int offset = 0;
+            final int length = string.length();
+
+            while (offset < length) {
+                if (count == BUFFER_SIZE) {
+                    this.drain();
+                }
+                final int chunk = Math.min(length - offset, BUFFER_SIZE - count);
+                string.getChars(offset, offset + chunk, buffer, count);
+                count += chunk;
+                offset += chunk;
+            }
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                this.append(text.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final char c) {
+        if (count == BUFFER_SIZE) {
+            this.drain();
+        }
+        buffer[count++] = c;
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final int number) {
+        // Node ids are never negative; anything else goes the slow way.
+        if (number < 0) {
+            return this.append(Integer.toString(number));
+        }
+
+        int digits = 1;
+        for (int rest = number / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        if (count + digits > BUFFER_SIZE) {
+            this.drain();
+        }
+
+        int value = number;
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        this.drain();
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.flush();
+        if (closeWriter) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private void drain() {
+        if (count == 0) {
+            return;
+        }
+        try {
+            writer.write(buffer, 0, count);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        count = 0;
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A sink that keeps everything (what {@link CodeGenerator} always used to do).
+ */
+final class MemoryCodeSink implements CodeSink {
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Override
+    public CodeSink append(final CharSequence text) {
+        buffer.append(text);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final char c) {
+        buffer.append(c);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final int number) {
+        buffer.append(number);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to do.
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do; the contents stay available.
+    }
+
+    @Override
+    public Optional<String> contents() {
+        return Optional.of(buffer.toString());
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A sink that writes to two others.
+ */
+final class TeeCodeSink implements CodeSink {
+
+    private final CodeSink first;
+    private final CodeSink second;
+
+    TeeCodeSink(final CodeSink first, final CodeSink second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public CodeSink append(final CharSequence text) {
+        first.append(text);
+        second.append(text);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final char c) {
+        first.append(c);
+        second.append(c);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final int number) {
+        first.append(number);
+        second.append(number);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        first.flush();
+        second.flush();
+    }
+
+    @Override
+    public void close() {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+
+    @Override
+    public Optional<String> contents() {
+        return first.contents().or(second::contents);
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A sink that passes everything on to another one, counting the characters into
+ * {@link CompilationStats} on the way (for {@code --stats} and the Emit event).
+ */
+final class CountingCodeSink implements CodeSink {
+
+    private final CodeSink sink;
+    private final CompilationStats stats;
+
+    CountingCodeSink(final CodeSink sink, final CompilationStats stats) {
+        this.sink = sink;
+        this.stats = stats;
+    }
+
+    @Override
+    public CodeSink append(final CharSequence text) {
+        stats.chars(text.length());
+        sink.append(text);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final char c) {
+        stats.chars(1);
+        sink.append(c);
+        return this;
+    }
+
+    @Override
+    public CodeSink append(final int number) {
+        stats.chars(digits(number));
+        sink.append(number);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        sink.flush();
+    }
+
+    @Override
+    public void close() {
+        sink.close();
+    }
+
+    @Override
+    public Optional<String> contents() {
+        return sink.contents();
+    }
+
+    // The length of the number in decimal, sign included.
+    private static int digits(final int number) {
+        int length = number < 0 ? 2 : 1;
+        for (long n = Math.abs((long) number); n >= 10; n /= 10) {
+            length++;
+        }
+        return length;
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A writer that hands its chunks to a thread of its own, which passes them on to another
+ * writer (see {@link CodeSink#toFileInBackground}).
+ * <p>
+ * At most a few chunks wait in the queue; beyond that, writing blocks until the thread catches
+ * up. {@link #flush()} waits until everything written so far is out. If the other writer fails,
+ * the rest of the output is dropped and the failure is rethrown by the next call.
+ */
+final class BackgroundWriter extends Writer {
+
+    // How many chunks the code generator may be ahead of the disk.
+    private static final int QUEUE_SIZE = 4;
+
+    // Markers in the queue.
+    private static final char[] FLUSH = new char[0];
+    private static final char[] CLOSE = new char[0];
+
+    private final Writer writer;
+    private final BlockingQueue<char[]> chunks = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Semaphore flushed = new Semaphore(0);
+    private final Thread thread;
+    private volatile Exception failure;
+    private boolean closed;
+
+    BackgroundWriter(final Writer writer) {
+        this.writer = writer;
+        this.thread = new Thread(this::drain, "writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length) throws IOException {
+        this.check();
+        if (length > 0) {
+            this.enqueue(Arrays.copyOfRange(chars, offset, offset + length));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.check();
+        this.enqueue(FLUSH);
+        try {
+            flushed.acquire();
+        } catch (InterruptedException ex) {
+            throw interrupted();
+        }
+        this.check();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        this.enqueue(CLOSE);
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            throw interrupted();
+        }
+        this.check();
+    }
+
+    private void enqueue(final char[] chunk) throws IOException {
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException ex) {
+            throw interrupted();
+        }
+    }
+
+    private void check() throws IOException {
+        final Exception cause = failure;
+        if (cause instanceof IOException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        if (cause != null) {
+            throw new IOException("The output couldn't be written", cause);
+        }
+    }
+
+    private static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Interrupted while writing the output");
+    }
+
+    // The writer thread: write the chunks in order until the writer is closed.
+    private void drain() {
+        try {
+            while (true) {
+                final char[] chunk = chunks.take();
+                try {
+                    if (chunk == CLOSE) {
+                        writer.close();
+                        return;
+                    }
+                    if (failure == null) {
+                        if (chunk == FLUSH) {
+                            writer.flush();
+                        } else {
+                            writer.write(chunk);
+                        }
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                } finally {
+                    if (chunk == FLUSH) {
+                        flushed.release();
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Nobody else knows about this thread, so nobody interrupts it.
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One run of the compiler: lexer, parser and code generator, put together as the
+ * {@link CompilerOptions} say.
+ * <p>
+ * Everything a compilation touches (the lexer, the parser, the code generator and its node
+ * numbering, the settings) belongs to that compilation alone, so any number of them can run at
+ * the same time in one JVM.
+ * <p>
+ * With a {@link CompilationStats}, or while Flight Recorder is recording, each phase is
+ * measured and reported as a {@link CompilerEvents} event; otherwise nothing is measured.
+ */
+final class Compilation {
+
+    private Compilation() {
+    }
+
+    /**
+     * Compile a file into a sink. The sink is closed afterwards.
+     *
+     * @param options   the compiler settings
+     * @param inputFile the program
+     * @param sink      where the generated code goes
+     * @return true if the program parsed, false if there was a syntax error
+     * @throws IOException if the file can't be read
+     */
+    static boolean compile(final CompilerOptions options, final File inputFile, final CodeSink sink)
+            throws IOException {
+        return compile(options, inputFile, sink, null);
+    }
+
+    /**
+     * Compile a file into a sink, measuring each phase. The sink is closed afterwards.
+     *
+     * @param options   the compiler settings
+     * @param inputFile the program
+     * @param sink      where the generated code goes
+     * @param stats     receives the measurements, or null
+     * @return true if the program parsed, false if there was a syntax error
+     * @throws IOException if the file can't be read
+     */
+    static boolean compile(final CompilerOptions options, final File inputFile, final CodeSink sink,
+                           final CompilationStats stats) throws IOException {
+        if (options.getLexer() == CompilerOptions.Lexer.STREAMING) {
+            final FileChannel channel;
+            try {
+                channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+            } catch (IOException ex) {
+                abandon(sink, ex);
+                throw ex;
+            }
+            try (channel) {
+                return compile(options, channel, sink, stats);
+            }
+        }
+        if (options.getLexer() == CompilerOptions.Lexer.PIPELINED) {
+            final PipelinedLexer lexer;
+            try {
+                lexer = PipelinedLexer.lex(inputFile.toPath());
+            } catch (IOException | RuntimeException ex) {
+                abandon(sink, ex);
+                throw ex;
+            }
+            return compilePipelined(options, lexer, sink, stats);
+        }
+
+        final CompilationStats measured = measure(stats);
+        final LexicalAnalyzer lexer;
+        try {
+            lexer = lex(options, inputFile.toPath(), measured);
+        } catch (IOException | RuntimeException ex) {
+            abandon(sink, ex);
+            throw ex;
+        }
+        return !generate(options, lexer, sink, measured).hasErrors();
+    }
+
+    /**
+     * Compile source that is already in memory into a sink, measuring each phase. The sink is
+     * closed afterwards.
+     *
+     * @param options the compiler settings
+     * @param source  the UTF-8 encoded program
+     * @param sink    where the generated code goes
+     * @param stats   receives the measurements, or null (only measured for Flight Recorder, then)
+     * @return true if the program parsed, false if there was a syntax error
+     */
+    static boolean compile(final CompilerOptions options, final byte[] source, final CodeSink sink,
+                           final CompilationStats stats) {
+        if (options.getLexer() == CompilerOptions.Lexer.STREAMING) {
+            return compile(options, Channels.newChannel(new ByteArrayInputStream(source)), sink, stats);
+        }
+        if (options.getLexer() == CompilerOptions.Lexer.PIPELINED) {
+            return compilePipelined(options, PipelinedLexer.lex(source), sink, stats);
+        }
+        final CompilationStats measured = measure(stats);
+        return !generate(options, lex(options, source, measured), sink, measured).hasErrors();
+    }
+
+    /**
+     * Compile a program read from a channel (e.g. the standard input) while it is parsed, with
+     * a {@link StreamingLexer}. The sink is closed afterwards; the channel isn't. The lexing
+     * happens during the parse, so its time counts as parse time.
+     *
+     * @param options the compiler settings (the code is generated while parsing)
+     * @param source  the UTF-8 encoded program
+     * @param sink    where the generated code goes
+     * @param stats   receives the measurements, or null
+     * @return true if the program parsed, false if there was a syntax error
+     */
+    static boolean compile(final CompilerOptions options, final ReadableByteChannel source, final CodeSink sink,
+                           final CompilationStats stats) {
+        final CompilationStats measured = measure(stats);
+        final StreamingLexer lexer;
+        try {
+            // Reads up to the first token already.
+            lexer = new StreamingLexer(source);
+        } catch (RuntimeException ex) {
+            abandon(sink, ex);
+            throw ex;
+        }
+        final boolean parsed = !generate(options, lexer, sink, measured).hasErrors();
+
+        if (measured != null) {
+            lexed(lexer.getBytesRead(), lexer.getTokenCount(), 0, measured);
+        }
+        return parsed;
+    }
+
+    // Parse while the lexer thread scans, then stop it. Its time overlaps the parse time.
+    private static boolean compilePipelined(final CompilerOptions options, final PipelinedLexer lexer,
+                                            final CodeSink sink, final CompilationStats stats) {
+        final CompilationStats measured = measure(stats);
+        final boolean parsed;
+        try (lexer) {
+            parsed = !generate(options, lexer, sink, measured).hasErrors();
+        }
+
+        if (measured != null) {
+            lexed(lexer.getSourceSize(), lexer.getTokenCount(), lexer.getLexNanos(), measured);
+        }
+        return parsed;
+    }
+
+    // The program couldn't be read, so it never got to generate(): close the sink here.
+    private static void abandon(final CodeSink sink, final Exception failure) {
+        try {
+            sink.close();
+        } catch (RuntimeException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    // Parse and generate into the sink, then close it; measured unless stats is null.
+    private static Diagnostics generate(final CompilerOptions options, final TokenStream lexer,
+                                        final CodeSink sink, final CompilationStats stats) {
+        if (stats == null) {
+            final CodeGenerator codeGenerator = new CodeGenerator(sink);
+            try {
+                return generate(options, lexer, codeGenerator);
+            } finally {
+                codeGenerator.close();
+            }
+        }
+
+        final CodeGenerator codeGenerator = new CodeGenerator(new CountingCodeSink(sink, stats));
+        final long emitNanos = stats.getEmitNanos();
+        final long emittedChars = stats.getEmittedChars();
+        final var event = new CompilerEvents.Emit();
+        final Diagnostics diagnostics;
+
+        try {
+            if (!options.isBuildTree()) {
+                event.begin();
+                diagnostics = parse(options, lexer, new InstrumentedListener(codeGenerator, stats, true), stats);
+            } else {
+                final ParseTreeBuilder treeBuilder = new ParseTreeBuilder(buffered(lexer));
+                diagnostics = parse(options, lexer, new InstrumentedListener(treeBuilder, stats, false), stats);
+
+                event.begin();
+                final long start = System.nanoTime();
+                DotEmitter.emit(treeBuilder.getTree(), codeGenerator, options.isPositions());
+                stats.emitted(System.nanoTime() - start);
+            }
+        } finally {
+            final long start = System.nanoTime();
+            codeGenerator.close();
+            stats.emitted(System.nanoTime() - start);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.chars = stats.getEmittedChars() - emittedChars;
+            event.emitTime = stats.getEmitNanos() - emitNanos;
+            event.commit();
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Compile the program supplied by the lexical analyzer.
+     *
+     * @param options       the compiler settings
+     * @param lexer         the tokenized program
+     * @param codeGenerator where the generated code goes
+     * @return true if the program parsed, false if there was a syntax error
+     */
+    static boolean compile(final CompilerOptions options, final TokenStream lexer,
+                           final CodeGenerator codeGenerator) {
+        return !generate(options, lexer, codeGenerator).hasErrors();
+    }
+
+    /**
+     * Compile a program into memory, as {@link #compile(CompilerOptions, byte[], CodeSink, CompilationStats)}
+     * does, but hand back the syntax errors rather than only log them (e.g. for a
+     * {@link CompileServer} client). Measured only while Flight Recorder is recording.
+     *
+     * @param options the compiler settings (the sequential lexer is always used)
+     * @param source  the UTF-8 encoded program
+     * @param sink    where the generated code goes; it is closed afterwards
+     * @return the syntax errors, none if the program parsed
+     */
+    static Diagnostics diagnose(final CompilerOptions options, final byte[] source, final CodeSink sink) {
+        final CompilationStats measured = measure(null);
+        return generate(options, lex(options, source, measured), sink, measured);
+    }
+
+    private static Diagnostics generate(final CompilerOptions options, final TokenStream lexer,
+                                        final CodeGenerator codeGenerator) {
+        if (!options.isBuildTree()) {
+            return parse(options, lexer, codeGenerator);
+        }
+
+        // Parse into an in-memory tree first, then generate the code from it.
+        final ParseTreeBuilder treeBuilder = new ParseTreeBuilder(buffered(lexer));
+        final Diagnostics diagnostics = parse(options, lexer, treeBuilder);
+        DotEmitter.emit(treeBuilder.getTree(), codeGenerator, options.isPositions());
+        return diagnostics;
+    }
+
+    /**
+     * Parse the program supplied by the lexical analyzer into a tree, e.g. to run it. Syntax
+     * errors are logged; the tree then ends at the first one.
+     *
+     * @param options the compiler settings (which parser)
+     * @param lexer   the tokenized program
+     * @return the parse tree
+     */
+    static ParseTree parseTree(final CompilerOptions options, final LexicalAnalyzer lexer) {
+        final ParseTreeBuilder treeBuilder = new ParseTreeBuilder(lexer);
+        parse(options, lexer, treeBuilder);
+        return treeBuilder.getTree();
+    }
+
+    /**
+     * Lex and parse a file into a tree, measuring both phases.
+     *
+     * @param options   the compiler settings (which parser)
+     * @param inputFile the program
+     * @param stats     receives the measurements, or null
+     * @return the parse tree
+     * @throws IOException if the file can't be read
+     */
+    static ParseTree parseTree(final CompilerOptions options, final File inputFile, final CompilationStats stats)
+            throws IOException {
+        final CompilationStats measured = measure(stats);
+        final LexicalAnalyzer lexer = lex(options, inputFile.toPath(), measured);
+        if (measured == null) {
+            return parseTree(options, lexer);
+        }
+
+        final ParseTreeBuilder treeBuilder = new ParseTreeBuilder(lexer);
+        parse(options, lexer, new InstrumentedListener(treeBuilder, measured, false), measured);
+        return treeBuilder.getTree();
+    }
+
+    /**
+     * Scan a file into tokens with the lexer the options select.
+     *
+     * @param options the compiler settings (which lexer)
+     * @param file    the program
+     * @param stats   receives the measurements, or null
+     * @return the lexer
+     * @throws IOException if the file can't be read
+     */
+    static LexicalAnalyzer lex(final CompilerOptions options, final Path file, final CompilationStats stats)
+            throws IOException {
+        if (options.getLexer() != CompilerOptions.Lexer.PARALLEL) {
+            return lex(options, Files.readAllBytes(file), stats);
+        }
+        if (stats == null) {
+            return ParallelLexer.lex(file);
+        }
+
+        final var event = new CompilerEvents.Lex();
+        event.begin();
+        final long start = System.nanoTime();
+        return lexed(ParallelLexer.lex(file), start, event, stats);
+    }
+
+    /**
+     * Scan source into tokens with the lexer the options select.
+     *
+     * @param options the compiler settings (which lexer)
+     * @param source  the UTF-8 encoded program
+     * @param stats   receives the measurements, or null
+     * @return the lexer
+     */
+    static LexicalAnalyzer lex(final CompilerOptions options, final byte[] source, final CompilationStats stats) {
+        final boolean parallel = options.getLexer() == CompilerOptions.Lexer.PARALLEL;
+        if (stats == null) {
+            return parallel ? ParallelLexer.lex(source) : new LexicalAnalyzer(source);
+        }
+
+        final var event = new CompilerEvents.Lex();
+        event.begin();
+        final long start = System.nanoTime();
+        return lexed(parallel ? ParallelLexer.lex(source) : new LexicalAnalyzer(source), start, event, stats);
+    }
+
+    // Account for a lexer that started scanning at start.
+    private static LexicalAnalyzer lexed(final LexicalAnalyzer lexer, final long start, final CompilerEvents.Lex event,
+                                         final CompilationStats stats) {
+        final long nanos = System.nanoTime() - start;
+        event.end();
+
+        final int sourceBytes = lexer.getTokens().source().length;
+        final int tokens = lexer.getTokens().size();
+        stats.lexed(sourceBytes, tokens, nanos);
+        if (event.shouldCommit()) {
+            event.sourceBytes = sourceBytes;
+            event.tokens = tokens;
+            event.commit();
+        }
+        return lexer;
+    }
+
+    // Account for a lexer that scanned while the parser ran (no Lex event duration of its own).
+    private static void lexed(final long sourceBytes, final int tokens, final long nanos,
+                              final CompilationStats stats) {
+        stats.lexed(sourceBytes, tokens, nanos);
+        final var event = new CompilerEvents.Lex();
+        if (event.shouldCommit()) {
+            event.sourceBytes = sourceBytes;
+            event.tokens = tokens;
+            event.commit();
+        }
+    }
+
+    // The caller's stats, new ones if only Flight Recorder is looking, or null if nobody is.
+    private static CompilationStats measure(final CompilationStats stats) {
+        if (stats != null) {
+            return stats;
+        }
+        return CompilerEvents.isRecording() ? new CompilationStats() : null;
+    }
+
+    // A tree refers to the tokens by index, so only a lexer that keeps them all can build one
+    // (CompilerOptions allows --tree with no other).
+    private static LexicalAnalyzer buffered(final TokenStream lexer) {
+        if (lexer instanceof LexicalAnalyzer buffered) {
+            return buffered;
+        }
+        throw new IllegalArgumentException("A parse tree needs a lexer that keeps its tokens.");
+    }
+
+    // Run the selected parser.
+    private static Diagnostics parse(final CompilerOptions options, final TokenStream lexer,
+                                     final ParseTreeListener listener) {
+        if (options.isTableDriven()) {
+            final var parser = new TableDrivenParser(lexer, listener);
+            parser.analyze();
+            return parser.getDiagnostics();
+        }
+        final var parser = new Parser(lexer, listener);
+        parser.analyze();
+        return parser.getDiagnostics();
+    }
+
+    // Run the selected parser, measured; the time the listener spent emitting isn't parse time.
+    private static Diagnostics parse(final CompilerOptions options, final TokenStream lexer,
+                                     final InstrumentedListener listener, final CompilationStats stats) {
+        final var event = new CompilerEvents.Parse();
+        final long[] nodes = CompilerEvents.isRecording() ? snapshot(stats) : null;
+        final long emitNanos = stats.getEmitNanos();
+        final long totalNodes = stats.totalNodes();
+
+        event.begin();
+        final long start = System.nanoTime();
+        final Diagnostics diagnostics;
+        if (options.isTableDriven()) {
+            final var parser = new TableDrivenParser(lexer, listener);
+            parser.analyze();
+            diagnostics = parser.getDiagnostics();
+        } else {
+            final var parser = new Parser(lexer, listener);
+            parser.analyze();
+            diagnostics = parser.getDiagnostics();
+        }
+        final long nanos = System.nanoTime() - start;
+        event.end();
+
+        final long emitted = stats.getEmitNanos() - emitNanos;
+        stats.parsed(nanos - emitted, diagnostics.count());
+        if (event.shouldCommit()) {
+            event.parser = options.isTableDriven() ? "table" : "recursive";
+            event.nodes = stats.totalNodes() - totalNodes;
+            event.syntaxErrors = diagnostics.count();
+            event.emitTime = emitted;
+            event.commit();
+        }
+        if (nodes != null) {
+            commitRules(stats, nodes);
+        }
+        return diagnostics;
+    }
+
+    private static long[] snapshot(final CompilationStats stats) {
+        final long[] nodes = new long[Grammar.EMPTY + 1];
+        for (int symbol = 0; symbol < nodes.length; symbol++) {
+            nodes[symbol] = stats.nodes(symbol);
+        }
+        return nodes;
+    }
+
+    // One ParseRule event for each grammar symbol that made nodes since the snapshot.
+    private static void commitRules(final CompilationStats stats, final long[] before) {
+        for (int symbol = 0; symbol < before.length; symbol++) {
+            final long count = stats.nodes(symbol) - before[symbol];
+            if (count == 0) {
+                continue;
+            }
+            final var event = new CompilerEvents.ParseRule();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            event.rule = symbol == Grammar.EMPTY ? "EMPTY"
+                    : Grammar.isTerminal(symbol) ? Grammar.token(symbol).name()
+                    : Grammar.nonTerminal(symbol).name();
+            event.nodes = count;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * Counters and timers for the phases of a compilation: how much was lexed, how many parse
+ * tree nodes each grammar rule made, how much code was generated, and how long each phase
+ * took. {@code --stats} prints them as JSON at exit; the same numbers go into the
+ * {@link CompilerEvents} when Flight Recorder is recording.
+ * <p>
+ * When the code is generated while parsing (no {@code --tree}), the time spent in the
+ * {@link CodeGenerator} is measured call by call and counted as emitting, not parsing.
+ * <p>
+ * One compilation fills one instance, from one thread. A batch adds each compilation's
+ * numbers into a total with {@link #add}.
+ */
+final class CompilationStats {
+
+    private long compilations;
+    private long cacheHits;
+    private long sourceBytes;
+    private long tokens;
+    private long lexNanos;
+    private long parseNanos;
+    private long emitNanos;
+    private long emittedChars;
+    private long syntaxErrors;
+
+    // Nodes by grammar symbol (tokens, rules, EMPTY), and the lexeme leaves under the tokens.
+    private final long[] nodes = new long[Grammar.EMPTY + 1];
+    private long lexemes;
+
+    void lexed(final long sourceBytes, final int tokens, final long nanos) {
+        this.compilations++;
+        this.sourceBytes += sourceBytes;
+        this.tokens += tokens;
+        this.lexNanos += nanos;
+    }
+
+    /**
+     * Count a compilation answered from the {@link CompileCache}: nothing was lexed or parsed.
+     */
+    void cached() {
+        this.compilations++;
+        this.cacheHits++;
+    }
+
+    void parsed(final long nanos, final int syntaxErrors) {
+        this.parseNanos += nanos;
+        this.syntaxErrors += syntaxErrors;
+    }
+
+    void emitted(final long nanos) {
+        this.emitNanos += nanos;
+    }
+
+    /**
+     * Count a node.
+     *
+     * @param symbol its grammar symbol (see {@link Grammar#symbol})
+     */
+    void node(final int symbol) {
+        nodes[symbol]++;
+    }
+
+    void lexeme() {
+        lexemes++;
+    }
+
+    void chars(final int count) {
+        emittedChars += count;
+    }
+
+    long getEmitNanos() {
+        return emitNanos;
+    }
+
+    long getEmittedChars() {
+        return emittedChars;
+    }
+
+    long nodes(final int symbol) {
+        return nodes[symbol];
+    }
+
+    /**
+     * @return every node: the grammar symbols' and the lexemes
+     */
+    long totalNodes() {
+        long total = lexemes;
+        for (final long count : nodes) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Add another compilation's numbers to these (for a batch, from any thread).
+     *
+     * @param other the other compilation's numbers
+     */
+    synchronized void add(final CompilationStats other) {
+        compilations += other.compilations;
+        cacheHits += other.cacheHits;
+        sourceBytes += other.sourceBytes;
+        tokens += other.tokens;
+        lexNanos += other.lexNanos;
+        parseNanos += other.parseNanos;
+        emitNanos += other.emitNanos;
+        emittedChars += other.emittedChars;
+        syntaxErrors += other.syntaxErrors;
+        for (int symbol = 0; symbol < nodes.length; symbol++) {
+            nodes[symbol] += other.nodes[symbol];
+        }
+        lexemes += other.lexemes;
+    }
+
+    /**
+     * @return the numbers as a JSON object, times in milliseconds
+     */
+    synchronized String toJson() {
+        final StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"compilations\": ").append(compilations).append(",\n");
+        json.append("  \"cacheHits\": ").append(cacheHits).append(",\n");
+        json.append("  \"lex\": {\"ms\": ").append(millis(lexNanos))
+                .append(", \"sourceBytes\": ").append(sourceBytes)
+                .append(", \"tokens\": ").append(tokens).append("},\n");
+        json.append("  \"parse\": {\"ms\": ").append(millis(parseNanos))
+                .append(", \"syntaxErrors\": ").append(syntaxErrors)
+                .append(", \"nodes\": ").append(this.totalNodes()).append(",\n");
+
+        // Rules first, then tokens, then the leaves; only the ones that made nodes.
+        json.append("    \"nodesByRule\": {");
+        String separator = "";
+        for (final NonTerminal rule : NonTerminal.values()) {
+            final long count = nodes[Grammar.symbol(rule)];
+            if (count > 0) {
+                json.append(separator).append('"').append(rule.name()).append("\": ").append(count);
+                separator = ", ";
+            }
+        }
+        json.append("},\n    \"nodesByToken\": {");
+        separator = "";
+        for (final Token token : Token.values()) {
+            final long count = nodes[Grammar.symbol(token)];
+            if (count > 0) {
+                json.append(separator).append('"').append(token.name()).append("\": ").append(count);
+                separator = ", ";
+            }
+        }
+        json.append("},\n    \"lexemes\": ").append(lexemes)
+                .append(", \"empty\": ").append(nodes[Grammar.EMPTY]).append("},\n");
+
+        json.append("  \"emit\": {\"ms\": ").append(millis(emitNanos))
+                .append(", \"chars\": ").append(emittedChars).append("}\n");
+        return json.append('}').toString();
+    }
+
+    // Milliseconds with three decimals.
+    private static String millis(final long nanos) {
+        return String.format(java.util.Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,411 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A directory of generated code, looked up by the SHA-256 of everything the code depends on:
+ * the source bytes, the compiler itself (see {@link #compilerVersion()}) and the output
+ * settings ({@code --parser}, {@code --tree}, {@code --positions}, the line separator).
+ * <p>
+ * A hit skips the lexer, the parser and the code generator: the stored code is copied to the
+ * output file or the console with {@link FileChannel#transferTo}, which lets the kernel move it
+ * without it ever entering the JVM. It's only {@link #read} into a String when the caller needs
+ * the text itself (for the GraphViz viewer). Only programs that compiled are stored, so a syntax
+ * error is still reported every time.
+ * <p>
+ * Entries are {@code <dir>/<first two hex digits>/<rest of the hash>.dot}. Each is written to a
+ * temporary file and renamed into place, so a reader in any process sees a whole entry or
+ * none. A hit touches the entry's modification time, and once the directory grows past its
+ * limit the least recently used entries are deleted. Adding and evicting entries happens
+ * under an exclusive lock on {@code <dir>/cache.lock}, which also keeps the running total of
+ * the entries' sizes, so that parallel builds sharing a cache agree on it; lookups take no
+ * lock (an entry evicted meanwhile is simply a miss).
+ */
+final class CompileCache {
+
+    static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final String ENTRY_EXTENSION = ".dot";
+    private static final String LOCK_FILE = "cache.lock";
+
+    // Evict down to this share of the limit, so that the next few stores don't evict again.
+    private static final double EVICT_TO = 0.9;
+
+    private static volatile byte[] compilerVersion;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * @param directory the cache directory (created if need be)
+     * @param maxSize   how many bytes of entries to keep
+     * @throws IOException if the directory can't be created
+     */
+    CompileCache(final Path directory, final long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The key of a program's generated code.
+     *
+     * @param options the settings it's compiled with
+     * @param source  the UTF-8 encoded program
+     * @return the key
+     */
+    static String key(final CompilerOptions options, final byte[] source) {
+        final MessageDigest digest = sha256();
+        digest.update(compilerVersion());
+        digest.update((byte) ((options.isTableDriven() ? 1 : 0) | (options.isBuildTree() ? 2 : 0)
+                | (options.isPositions() ? 4 : 0)));
+        digest.update(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        digest.update(source);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Copy a program's code from the cache.
+     *
+     * @param key    the program's {@link #key}
+     * @param output where the code goes
+     * @return true on a hit, false if the code isn't in the cache
+     * @throws IOException if the code can't be copied
+     */
+    private boolean copyTo(final String key, final WritableByteChannel output) throws IOException {
+        final Path entry = this.entry(key);
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            this.touch(entry);
+            transfer(channel, output);
+        } catch (NoSuchFileException ex) {
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Copy a program's code from the cache into a file, replacing it.
+     *
+     * @param key    the program's {@link #key}
+     * @param output the file
+     * @return true on a hit, false if the code isn't in the cache (the file is left alone)
+     * @throws IOException if the code can't be copied
+     */
+    boolean copyTo(final String key, final Path output) throws IOException {
+        if (!Files.exists(this.entry(key))) {
+            misses.incrementAndGet();
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return this.copyTo(key, channel);
+        }
+    }
+
+    /**
+     * Copy a program's code from the cache to the standard output.
+     *
+     * @param key the program's {@link #key}
+     * @return true on a hit, false if the code isn't in the cache
+     * @throws IOException if the code can't be copied
+     */
+    boolean copyToConsole(final String key) throws IOException {
+        System.out.flush();
+        return this.copyTo(key, console());
+    }
+
+    /**
+     * Copy a file to the standard output the way a hit is, e.g. the output file a hit was just
+     * copied into.
+     *
+     * @param file the file
+     * @throws IOException if the file can't be copied
+     */
+    static void copyToConsole(final Path file) throws IOException {
+        System.out.flush();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, console());
+        }
+    }
+
+    /**
+     * Look a program's code up without copying it anywhere, e.g. when nothing is shown.
+     *
+     * @param key the program's {@link #key}
+     * @return true on a hit, false if the code isn't in the cache
+     */
+    boolean contains(final String key) {
+        final Path entry = this.entry(key);
+        if (!Files.exists(entry)) {
+            misses.incrementAndGet();
+            return false;
+        }
+        this.touch(entry);
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * A program's code, if it's in the cache.
+     *
+     * @param key the program's {@link #key}
+     * @return the code, or null on a miss
+     * @throws IOException if the code can't be read
+     */
+    String read(final String key) throws IOException {
+        final Path entry = this.entry(key);
+        try {
+            final String code = Files.readString(entry);
+            this.touch(entry);
+            hits.incrementAndGet();
+            return code;
+        } catch (NoSuchFileException ex) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store a program's code, copied from the file it was generated into.
+     *
+     * @param key  the program's {@link #key}
+     * @param code the generated file
+     * @throws IOException if the code can't be stored
+     */
+    void store(final String key, final Path code) throws IOException {
+        final Path temporary = this.temporary(key);
+        try (FileChannel in = FileChannel.open(code, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            transfer(in, out);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        this.add(key, temporary);
+    }
+
+    /**
+     * Store a program's code, generated into memory.
+     *
+     * @param key  the program's {@link #key}
+     * @param code the generated code
+     * @throws IOException if the code can't be stored
+     */
+    void store(final String key, final String code) throws IOException {
+        final Path temporary = this.temporary(key);
+        try {
+            Files.writeString(temporary, code);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        this.add(key, temporary);
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Path entry(final String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_EXTENSION);
+    }
+
+    // A new file next to where the entry goes, so that renaming it is atomic.
+    private Path temporary(final String key) throws IOException {
+        final Path parent = Files.createDirectories(this.entry(key).getParent());
+        return Files.createTempFile(parent, key.substring(2, 10), ".tmp");
+    }
+
+    // Mark an entry as used; losing the race against an eviction doesn't matter.
+    private void touch(final Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            // Evicted meanwhile, or read-only: it just ages.
+        }
+    }
+
+    // Rename the entry into place and account for it, evicting old entries if the cache is full.
+    private void add(final String key, final Path temporary) throws IOException {
+        final long size = Files.size(temporary);
+
+        // One thread per JVM at a time, whichever cache it uses: a JVM can't hold two overlapping
+        // locks on one file.
+        synchronized (CompileCache.class) {
+            try (FileChannel lockFile = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Released when the file is closed.
+                lockFile.lock();
+                if (Files.exists(this.entry(key))) {
+                    // Another thread or process stored the same code first.
+                    Files.delete(temporary);
+                    return;
+                }
+                Files.move(temporary, this.entry(key), StandardCopyOption.ATOMIC_MOVE);
+
+                long total = readTotal(lockFile) + size;
+                if (total > maxSize) {
+                    total = this.evict((long) (maxSize * EVICT_TO));
+                }
+                writeTotal(lockFile, total);
+            }
+        }
+    }
+
+    // Delete the least recently used entries until the rest fit in the given size; their total.
+    private long evict(final long size) throws IOException {
+        record Entry(Path path, long size, long used) {
+        }
+
+        final List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            for (final Path path : (Iterable<Path>) paths::iterator) {
+                if (path.getFileName().toString().endsWith(ENTRY_EXTENSION)) {
+                    try {
+                        entries.add(new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                    } catch (NoSuchFileException ex) {
+                        // Gone already.
+                    }
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::used));
+
+        long total = 0;
+        for (final Entry entry : entries) {
+            total += entry.size();
+        }
+        for (int i = 0; i < entries.size() && total > size; i++) {
+            try {
+                Files.deleteIfExists(entries.get(i).path());
+                total -= entries.get(i).size();
+            } catch (IOException ex) {
+                // Still open somewhere (Windows); it goes next time.
+            }
+        }
+        return total;
+    }
+
+    private static void transfer(final FileChannel from, final WritableByteChannel to) throws IOException {
+        final long size = from.size();
+        for (long position = 0; position < size; ) {
+            position += from.transferTo(position, size - position, to);
+        }
+    }
+
+    // The standard output as a channel; not to be closed, that would close the standard output.
+    private static WritableByteChannel console() {
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+
+    private static long readTotal(final FileChannel lockFile) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && lockFile.read(buffer, buffer.position()) > 0) {
+            // Keep reading.
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    private static void writeTotal(final FileChannel lockFile, final long total) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, total);
+        while (buffer.hasRemaining()) {
+            lockFile.write(buffer, buffer.position());
+        }
+    }
+
+    /**
+     * A fingerprint of the compiler's own code, so that a new build of the compiler never
+     * reuses code generated by an old one: the jar's bytes, or the names, sizes and times of
+     * the class files when running from a directory.
+     *
+     * @return the fingerprint (computed once per JVM)
+     */
+    static byte[] compilerVersion() {
+        byte[] version = compilerVersion;
+        if (version == null) {
+            final MessageDigest digest = sha256();
+            try {
+                fingerprint(codeLocation(), digest);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            compilerVersion = version = digest.digest();
+        }
+        return version;
+    }
+
+    // The jar or directory the compiler was loaded from (the executable, for a native image).
+    private static Path codeLocation() {
+        final var codeSource = CompileCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                return Path.of(codeSource.getLocation().toURI());
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                // Not a file: fall back to the executable.
+            }
+        }
+        return Path.of(ProcessHandle.current().info().command().orElseThrow(
+                () -> new IllegalStateException("Can't tell which compiler is running")));
+    }
+
+    private static void fingerprint(final Path location, final MessageDigest digest) throws IOException {
+        if (!Files.isDirectory(location)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            try (FileChannel channel = FileChannel.open(location, StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    digest.update(buffer.flip());
+                    buffer.clear();
+                }
+            }
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(location)) {
+            for (final Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                digest.update(location.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(Files.size(path))
+                        .putLong(Files.getLastModifiedTime(path).toMillis()).flip());
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Every JVM has SHA-256", ex);
+        }
+    }
+}
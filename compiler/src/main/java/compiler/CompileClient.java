@@ -0,0 +1,128 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The client side of the {@link CompileServer} protocol ({@code MAIN --client}).
+ * <p>
+ * A client keeps its connection open, so an editor that compiles on every save can send all
+ * of its requests over one connection.
+ */
+final class CompileClient implements Closeable {
+
+    /**
+     * The server's answer.
+     *
+     * @param status {@link CompileServer#OK}, {@link CompileServer#SYNTAX_ERROR},
+     *               {@link CompileServer#BUSY} or {@link CompileServer#BAD_REQUEST}
+     * @param body   the generated code, or the error message
+     * @param errors the syntax errors, one per line (empty unless SYNTAX_ERROR)
+     */
+    record Response(byte status, byte[] body, String errors) {
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connect to a server.
+     *
+     * @param address a port on the loopback interface, or the path of a Unix domain socket
+     * @throws IOException if no server is listening there
+     */
+    CompileClient(final String address) throws IOException {
+        final SocketAddress socketAddress = CompileServer.address(address);
+
+        this.channel = socketAddress instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        this.channel.connect(socketAddress);
+        CompileServer.noDelay(this.channel);
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Have the server compile a program.
+     *
+     * @param options the parser settings to compile it with
+     * @param source  the UTF-8 encoded program
+     * @return the server's answer
+     * @throws IOException if the connection fails
+     */
+    Response compile(final CompilerOptions options, final byte[] source) throws IOException {
+        return this.compile(options, source, false);
+    }
+
+    /**
+     * Have the server compile a program, maybe as the next version of the one sent before on
+     * this connection.
+     *
+     * @param options     the parser settings to compile it with (ignored if incremental)
+     * @param source      the UTF-8 encoded program
+     * @param incremental only scan, parse and generate again what changed since this
+     *                    connection's previous incremental request (see {@link CompileServer})
+     * @return the server's answer
+     * @throws IOException if the connection fails
+     */
+    Response compile(final CompilerOptions options, final byte[] source, final boolean incremental)
+            throws IOException {
+        int flags = 0;
+        if (incremental) {
+            flags |= CompileServer.FLAG_INCREMENTAL;
+        }
+        if (options.isTableDriven()) {
+            flags |= CompileServer.FLAG_TABLE;
+        }
+        if (options.isBuildTree()) {
+            flags |= CompileServer.FLAG_TREE;
+        }
+        if (options.isPositions()) {
+            flags |= CompileServer.FLAG_POSITIONS;
+        }
+
+        out.writeInt(CompileServer.MAGIC);
+        out.writeByte(flags);
+        out.writeInt(source.length);
+        out.write(source);
+        out.flush();
+
+        final byte status = in.readByte();
+        final byte[] body = this.readBytes();
+        final String errors = status == CompileServer.SYNTAX_ERROR
+                ? new String(this.readBytes(), StandardCharsets.UTF_8)
+                : "";
+        return new Response(status, body, errors);
+    }
+
+    private byte[] readBytes() throws IOException {
+        final int length = in.readInt();
+        final byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("The server closed the connection.");
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
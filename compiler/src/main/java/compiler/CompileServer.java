@@ -0,0 +1,448 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A long-running compiler ({@code MAIN --server}), so that each compile doesn't pay for JVM
+ * startup and run the lexer and parsers cold: once the JIT has compiled them, a small program
+ * takes well under a millisecond.
+ * <p>
+ * The server listens on a loopback port or a Unix domain socket. A client connects and sends
+ * any number of requests on the connection, each answered in turn:
+ * <pre>
+ *     request:  int MAGIC, byte flags (FLAG_TABLE | FLAG_TREE | FLAG_POSITIONS | FLAG_INCREMENTAL), int length, byte[length] source
+ *     response: byte status (OK, SYNTAX_ERROR, BUSY, BAD_REQUEST), int length, byte[length] body
+ *               and, for SYNTAX_ERROR only: int length, byte[length] errors
+ * </pre>
+ * All ints are big-endian. The body is the generated code (UTF-8), or an error message for
+ * BUSY and BAD_REQUEST. A SYNTAX_ERROR body is the generated code up to the error, as
+ * {@link MAIN} would have written it, and the errors are the syntax errors, one per line, as
+ * {@link Diagnostics#describe(int)} puts them.
+ * <p>
+ * With FLAG_INCREMENTAL, each request is the next version of the same program: the connection
+ * keeps an {@link IncrementalParser}, so only what changed since the previous request is
+ * scanned, parsed and generated again (the other flags are ignored). Node ids in the output
+ * then stay the same from one version to the next, but differ from a fresh compile's.
+ * <p>
+ * Each connection has a thread of its own that only reads requests and writes responses (it
+ * needs little stack, and mostly waits for its client). The compiling is done by a fixed number
+ * of threads, one request at a time, so a client that keeps its connection open between
+ * requests holds none of them. Once they're all busy, requests wait in a bounded queue; when
+ * that's full too, the request is answered BUSY (and the connection stays open), so that a burst
+ * of requests can't pile up without limit. A client that sends nothing for the idle timeout is
+ * hung up on, and so is one past the connection limit, after a BUSY answer.
+ */
+final class CompileServer implements Closeable {
+
+    static final int MAGIC = 0x444F5431; // "DOT1"
+
+    static final int FLAG_TABLE = 1;
+    static final int FLAG_TREE = 2;
+    static final int FLAG_INCREMENTAL = 4;
+    static final int FLAG_POSITIONS = 8;
+
+    static final byte OK = 0;
+    static final byte SYNTAX_ERROR = 1;
+    static final byte BUSY = 2;
+    static final byte BAD_REQUEST = 3;
+
+    // The largest program a client may send.
+    static final int MAX_SOURCE_SIZE = 64 * 1024 * 1024;
+
+    // The recursive parser needs a deep stack for deeply nested programs and long expressions (like "java -Xss").
+    private static final long WORKER_STACK_SIZE = 256L * 1024 * 1024;
+
+    // A connection thread only reads and writes frames.
+    private static final long CONNECTION_STACK_SIZE = 256L * 1024;
+
+    // How many clients may be connected at once: well under the usual limit of 1024 open files.
+    static final int MAX_CONNECTIONS = 512;
+
+    // How long to wait before accepting again after accept() failed, e.g. out of file descriptors.
+    private static final long ACCEPT_BACK_OFF_MILLIS = 100;
+
+    // Compiled a few times at startup so that the first clients get JIT-compiled code.
+    private static final String WARM_UP_PROGRAM = """
+            read n
+            sum := 0
+            i := 1
+            while i <= n do
+              if i != 0 then sum := sum + (i * 2) / 1 else sum := sum - 1 fi
+              do i := i + 1 until i >= 0
+            od
+            write sum
+            """;
+    private static final int WARM_UP_ROUNDS = 2_000;
+
+    private static final Logger LOGGER = Logger.getLogger(CompileServer.class.getName());
+
+    private final ServerSocketChannel channel;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    // Hangs up on clients that have been idle for idleTimeout seconds.
+    private final ScheduledExecutorService timer;
+    private final long idleTimeout;
+
+    // The Unix domain socket's file, removed when the server closes (null for a port).
+    private final Path socketFile;
+
+    /**
+     * Start listening (but not yet serving, see {@link #serve()}).
+     *
+     * @param options the server's address, threads, queue size and idle timeout
+     * @throws IOException if the address can't be bound
+     */
+    CompileServer(final CompilerOptions options) throws IOException {
+        final SocketAddress address = address(options.getServerAddress());
+
+        if (address instanceof UnixDomainSocketAddress unixAddress) {
+            this.socketFile = unixAddress.getPath();
+            removeStaleSocket(this.socketFile);
+            this.channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            this.socketFile = null;
+            this.channel = ServerSocketChannel.open();
+        }
+        this.channel.bind(address, options.getQueueSize());
+
+        final var threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(options.getThreads(), options.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(options.getQueueSize()),
+                task -> {
+                    final var thread = new Thread(null, task, "compile-" + threadCount.incrementAndGet(),
+                            WORKER_STACK_SIZE);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            final var thread = new Thread(task, "idle-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.idleTimeout = options.getIdleTimeout();
+    }
+
+    /**
+     * @return where the server listens
+     */
+    SocketAddress getAddress() throws IOException {
+        return channel.getLocalAddress();
+    }
+
+    /**
+     * Warm up, then accept connections until the server is closed. A connection that can't be
+     * set up is dropped, and a failing accept() (e.g. out of file descriptors) is retried after a
+     * pause, so neither stops the server.
+     */
+    void serve() {
+        warmUp();
+        // Logging loads what it needs (e.g. time zone data) now, while files can still be opened.
+        LOGGER.info(() -> "Serving with " + workers.getCorePoolSize() + " compile threads");
+
+        while (true) {
+            final SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException ex) {
+                // close() was called.
+                return;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Could not accept a connection", ex);
+                try {
+                    Thread.sleep(ACCEPT_BACK_OFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            if (!connections.tryAcquire()) {
+                Connection.reject(client, "The server has too many connections.");
+                continue;
+            }
+            try {
+                noDelay(client);
+                final var thread = new Thread(null, new Connection(client),
+                        "connection-" + connectionCount.incrementAndGet(), CONNECTION_STACK_SIZE);
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Could not set up a connection", ex);
+                connections.release();
+                try {
+                    client.close();
+                } catch (IOException closeFailure) {
+                    ex.addSuppressed(closeFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting connections; requests already being compiled are allowed to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+            workers.shutdown();
+            timer.shutdownNow();
+        } finally {
+            if (socketFile != null) {
+                Files.deleteIfExists(socketFile);
+            }
+        }
+    }
+
+    /**
+     * A port number means that port on the loopback interface, anything else is the path of a
+     * Unix domain socket.
+     *
+     * @param address the address given on the command line
+     * @return the socket address
+     */
+    static SocketAddress address(final String address) {
+        if (!address.isEmpty() && address.chars().allMatch(Character::isDigit)) {
+            try {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Not a port: " + address);
+            }
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    /**
+     * Compile a program the way {@link MAIN} would, into memory.
+     *
+     * @param flags  FLAG_TABLE, FLAG_TREE and/or FLAG_POSITIONS
+     * @param source the UTF-8 encoded program
+     * @param output receives the generated code
+     * @return the syntax errors, none if the program parsed
+     */
+    static Diagnostics compile(final int flags, final byte[] source, final CodeSink output) {
+        final CompilerOptions options = CompilerOptions.forRequest((flags & FLAG_TABLE) != 0, (flags & FLAG_TREE) != 0,
+                (flags & FLAG_POSITIONS) != 0);
+        return Compilation.diagnose(options, source, output);
+    }
+
+    /**
+     * Send small requests and responses right away: without this, a loopback TCP connection
+     * holds back the end of each message until the previous packet is acknowledged, which
+     * costs a delayed ACK (~40 ms) per request.
+     *
+     * @param channel a connected socket (Unix domain sockets are left alone)
+     */
+    static void noDelay(final SocketChannel channel) throws IOException {
+        if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void warmUp() {
+        final byte[] program = WARM_UP_PROGRAM.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            compile(i % 2 == 0 ? 0 : FLAG_TABLE, program, CodeSink.toWriter(Writer.nullWriter()));
+        }
+    }
+
+    // A socket file left behind by a server that died is removed; one that's still in use isn't.
+    private static void removeStaleSocket(final Path socketFile) throws IOException {
+        if (!Files.exists(socketFile)) {
+            return;
+        }
+
+        boolean inUse;
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socketFile)).close();
+            inUse = true;
+        } catch (IOException ex) {
+            inUse = false;
+        }
+        if (inUse) {
+            throw new IOException("A server is already listening on " + socketFile);
+        }
+        Files.deleteIfExists(socketFile);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * One client connection: read its requests and answer them until it hangs up, has the
+     * compiling done by the workers.
+     */
+    private final class Connection implements Runnable {
+
+        private final SocketChannel client;
+
+        // The program of the last FLAG_INCREMENTAL request; only one request at a time uses it.
+        private IncrementalParser session;
+
+        Connection(final SocketChannel client) {
+            this.client = client;
+        }
+
+        @Override
+        public void run() {
+            try (client) {
+                final var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+                final var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+                while (this.answer(in, out)) {
+                    out.flush();
+                }
+                out.flush();
+            } catch (IOException | UncheckedIOException ex) {
+                LOGGER.log(Level.FINE, "Connection lost", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connections.release();
+            }
+        }
+
+        // Read, compile and answer one request; false once the client is done.
+        private boolean answer(final DataInputStream in, final DataOutputStream out)
+                throws IOException, InterruptedException {
+            // Hang up (the read then fails) if the request doesn't arrive in time.
+            final ScheduledFuture<?> timeout = timer.schedule(this::hangUp, idleTimeout, TimeUnit.SECONDS);
+            final int flags;
+            final byte[] source;
+            try {
+                final int magic;
+                try {
+                    magic = in.readInt();
+                } catch (EOFException ex) {
+                    return false;
+                }
+
+                flags = in.readUnsignedByte();
+                final int length = in.readInt();
+                if (magic != MAGIC || length < 0 || length > MAX_SOURCE_SIZE) {
+                    respond(out, BAD_REQUEST, "Not a compile request, or the program is too long.");
+                    return false;
+                }
+
+                source = in.readNBytes(length);
+                if (source.length != length) {
+                    return false;
+                }
+            } finally {
+                timeout.cancel(false);
+            }
+
+            final CodeSink output = CodeSink.inMemory();
+            final Callable<Diagnostics> request = (flags & FLAG_INCREMENTAL) != 0
+                    ? () -> this.compileIncrementally(source, output)
+                    : () -> compile(flags, source, output);
+            final Diagnostics diagnostics;
+            try {
+                diagnostics = workers.submit(request).get();
+            } catch (RejectedExecutionException ex) {
+                respond(out, BUSY, "The server is busy.");
+                return true;
+            } catch (ExecutionException ex) {
+                // Start the next incremental request from scratch.
+                session = null;
+                respond(out, BAD_REQUEST, "Could not compile the program: " + ex.getCause());
+                return true;
+            }
+
+            if (diagnostics.hasErrors()) {
+                respond(out, SYNTAX_ERROR, output.contents().orElseThrow());
+                writeText(out, diagnostics.describeAll());
+            } else {
+                respond(out, OK, output.contents().orElseThrow());
+            }
+            return true;
+        }
+
+        private Diagnostics compileIncrementally(final byte[] source, final CodeSink output) {
+            if (session == null) {
+                session = new IncrementalParser(source);
+            } else {
+                session.update(source);
+            }
+
+            final var codeGenerator = new CodeGenerator(output);
+            try {
+                session.emit(codeGenerator);
+            } finally {
+                codeGenerator.close();
+            }
+            return session.getDiagnostics();
+        }
+
+        private void hangUp() {
+            try {
+                client.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Could not hang up on an idle client", ex);
+            }
+        }
+
+        // Tell a client that can't be served to try again later.
+        static void reject(final SocketChannel client, final String message) {
+            try (client) {
+                final var out = new DataOutputStream(Channels.newOutputStream(client));
+                respond(out, BUSY, message);
+                out.flush();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Could not turn a client away", ex);
+            }
+        }
+
+        private static void respond(final DataOutputStream out, final byte status, final String body)
+                throws IOException {
+            out.writeByte(status);
+            writeText(out, body);
+        }
+
+        private static void writeText(final DataOutputStream out, final String text) throws IOException {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The compiler's Flight Recorder events, one per phase of a {@link Compilation} plus one per
+ * grammar rule, under "Compiler" in JDK Mission Control. Record them with e.g.
+ * <pre>
+ *     java -XX:StartFlightRecording:filename=compile.jfr ... compiler.MAIN ...
+ *     jfr print --events 'compiler.*' compile.jfr
+ * </pre>
+ * When nothing is recording, an event costs next to nothing, and the per-rule counting
+ * behind {@link ParseRule} is skipped altogether (see {@link #isRecording()}).
+ */
+final class CompilerEvents {
+
+    private static final String CATEGORY = "Compiler";
+
+    private CompilerEvents() {
+    }
+
+    /**
+     * @return true if Flight Recorder wants the compiler's events
+     */
+    static boolean isRecording() {
+        return new Parse().isEnabled();
+    }
+
+    @Name("compiler.Lex")
+    @Label("Lex")
+    @Category(CATEGORY)
+    @Description("The source scanned into tokens")
+    @StackTrace(false)
+    static final class Lex extends Event {
+
+        @Label("Source Size")
+        @DataAmount
+        long sourceBytes;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("compiler.Parse")
+    @Label("Parse")
+    @Category(CATEGORY)
+    @Description("The tokens parsed; when the code is generated while parsing, this includes the Emit Time")
+    @StackTrace(false)
+    static final class Parse extends Event {
+
+        @Label("Parser")
+        String parser;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Syntax Errors")
+        int syntaxErrors;
+
+        @Label("Emit Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long emitTime;
+    }
+
+    @Name("compiler.ParseRule")
+    @Label("Parse Rule")
+    @Category(CATEGORY)
+    @Description("The nodes one grammar rule (or token) made in one parse")
+    @StackTrace(false)
+    static final class ParseRule extends Event {
+
+        @Label("Rule")
+        String rule;
+
+        @Label("Nodes")
+        long nodes;
+    }
+
+    @Name("compiler.Emit")
+    @Label("Emit")
+    @Category(CATEGORY)
+    @Description("The GraphViz code generated")
+    @StackTrace(false)
+    static final class Emit extends Event {
+
+        @Label("Characters")
+        long chars;
+
+        @Label("Emit Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long emitTime;
+    }
+}
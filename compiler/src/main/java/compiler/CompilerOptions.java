@@ -0,0 +1,549 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The command line of {@link MAIN}.
+ * <p>
+ * Usage: {@code MAIN [-o <output file>] [-q] [--headless] [--lexer sequential|parallel|streaming|pipelined] [--parser recursive|table] [--tree] [--positions] [--stats] [--cache <dir> [--cache-size <MB>]] <input file>}
+ * <br>
+ * or: {@code MAIN --batch [--threads <n>] [-o <output dir>] [--lexer sequential|parallel|streaming|pipelined] [--parser recursive|table] [--tree] [--positions] [--stats] [--cache <dir> [--cache-size <MB>]] <input>...}
+ * <br>
+ * or: {@code MAIN --server <port|socket file> [--threads <n>] [--queue <n>] [--idle-timeout <seconds>]}
+ * <br>
+ * or: {@code MAIN --client <port|socket file> [-o <output file>] [-q] [--parser recursive|table] [--tree] [--positions] [--incremental] <input file>}
+ * <br>
+ * or: {@code MAIN --run [--backend interpreter|vm|bytecode] [--dump-class <file>] [--dump-ir <file>] [--dump-cfg <file>] [-O0|-O1|-O2] [--lexer sequential|parallel] [--parser recursive|table] [--stats] <program file>}
+ * An input file of {@code -} is the standard input (not for {@code --run} or {@code --batch}).
+ * <ul>
+ *     <li>{@code -o, --output}: stream the generated code into a file instead of keeping it in memory.</li>
+ *     <li>{@code -q, --quiet}: don't echo the generated code to the console.</li>
+ *     <li>{@code --headless}: never show the Graphviz prompt, so no desktop (AWT/Swing) class is
+ *     ever loaded. This is the default when there's no display, see {@link Headless}.</li>
+ *     <li>{@code --lexer}: scan the source in one pass (default), or memory-map it and scan it in
+ *     chunks on all cores, see {@link ParallelLexer}; or scan it token by token while parsing, in
+ *     constant memory, see {@link StreamingLexer} (not with {@code --tree}, {@code --positions},
+ *     {@code --cache} or {@code --run}); or scan it on a thread of its own while parsing, and write
+ *     the output file on another one, see {@link PipelinedLexer} (not with {@code --tree},
+ *     {@code --positions} or {@code --run}). The tokens are the same.</li>
+ *     <li>{@code --parser}: the recursive-descent {@link Parser} (default) or the
+ *     non-recursive {@link TableDrivenParser}, for programs too long for the call stack.</li>
+ *     <li>{@code --tree}: build the whole {@link ParseTree} first and generate the code from it
+ *     afterwards, instead of generating it while parsing.</li>
+ *     <li>{@code --positions}: give each lexeme in the output its line and column, as a tooltip
+ *     (implies {@code --tree}).</li>
+ *     <li>{@code --batch}: compile many programs in parallel, see {@link BatchCompiler}. Each input
+ *     may be a file, a directory (its {@code .txt} files) or a glob pattern; {@code -o} names the
+ *     output directory.</li>
+ *     <li>{@code --threads}: how many programs a batch or a server compiles at once (default: one per CPU).</li>
+ *     <li>{@code --server}: keep running and compile the programs sent by clients, see {@link CompileServer}.
+ *     A number is a port on the loopback interface, anything else the path of a Unix domain socket.</li>
+ *     <li>{@code --queue}: how many requests a server keeps waiting once all its threads are
+ *     busy; any more are answered BUSY (default: 64).</li>
+ *     <li>{@code --idle-timeout}: how long a server waits for a client's next request before it
+ *     hangs up (default: 60 seconds).</li>
+ *     <li>{@code --client}: have a running server compile the input file, see {@link CompileClient}.</li>
+ *     <li>{@code --incremental}: ask the server to compile the input as the next version of the
+ *     program on the connection, see {@link CompileServer} (only with {@code --client}, and not
+ *     with {@code --parser table}, {@code --tree} or {@code --positions}, which it ignores).</li>
+ *     <li>{@code --run}: run the program instead of drawing it, see {@link Interpreter}; it reads
+ *     standard input and writes standard output.</li>
+ *     <li>{@code --backend}: how {@code --run} runs the program: walk it with the {@link Interpreter}
+ *     (default), compile it for the {@link RegisterMachine}, or compile it to a JVM class with the
+ *     {@link BytecodeBackend}.</li>
+ *     <li>{@code --dump-class}: also write the generated class file (implies {@code --backend bytecode}).</li>
+ *     <li>{@code --dump-ir}: also write the program's three-address code, see {@link ControlFlowGraph}.</li>
+ *     <li>{@code --dump-cfg}: also write the program's control-flow graph in DOT.</li>
+ *     <li>{@code -O1}, {@code -O2} (or {@code -O}): optimize the program before running it, see
+ *     {@link Optimizer}; {@code -O0} (default) doesn't. The optimized program runs on the
+ *     {@code vm} backend unless another one is given (not the interpreter, which can't run it).</li>
+ *     <li>{@code --stats}: at exit, print what each phase (lexing, parsing, emitting) did and how
+ *     long it took, as JSON on standard error, see {@link CompilationStats}. A program copied
+ *     from the cache counts as a compilation and a cache hit, with nothing lexed or parsed.</li>
+ *     <li>{@code --cache}: keep the code of every program that compiled in this directory, and
+ *     copy it from there instead of compiling the same program again, see {@link CompileCache}.</li>
+ *     <li>{@code --cache-size}: how many megabytes the cache may grow to before the least recently
+ *     used code is deleted (default: 256).</li>
+ * </ul>
+ */
+final class CompilerOptions {
+
+    /**
+     * How {@code --run} runs a program.
+     */
+    enum Backend {
+        INTERPRETER, VM, BYTECODE
+    }
+
+    /**
+     * How the source is scanned into tokens.
+     */
+    enum Lexer {
+        SEQUENTIAL, PARALLEL, STREAMING, PIPELINED
+    }
+
+    // The input file name that stands for the standard input.
+    static final String STANDARD_INPUT = "-";
+
+    static final String USAGE = "Usage: MAIN [-o <output file>] [-q] [--headless] [--lexer sequential|parallel|streaming|pipelined] [--parser recursive|table] [--tree] [--positions] [--stats] [--cache <dir> [--cache-size <MB>]] <input file>"
+            + System.lineSeparator()
+            + "   or: MAIN --batch [--threads <n>] [-o <output dir>] [--lexer sequential|parallel|streaming|pipelined] [--parser recursive|table] [--tree] [--positions] [--stats] [--cache <dir> [--cache-size <MB>]] <input>..."
+            + System.lineSeparator()
+            + "   or: MAIN --server <port|socket file> [--threads <n>] [--queue <n>] [--idle-timeout <seconds>]"
+            + System.lineSeparator()
+            + "   or: MAIN --client <port|socket file> [-o <output file>] [-q] [--parser recursive|table] [--tree] [--positions] [--incremental] <input file>"
+            + System.lineSeparator()
+            + "   or: MAIN --run [--backend interpreter|vm|bytecode] [--dump-class <file>] [--dump-ir <file>] [--dump-cfg <file>] [-O0|-O1|-O2] [--lexer sequential|parallel] [--parser recursive|table] [--stats] <program file>";
+
+    private final List<String> inputs = new ArrayList<>();
+    private File inputFile;
+    private Path outputFile;
+    private boolean echo = true;
+    private Lexer lexer = Lexer.SEQUENTIAL;
+    private boolean tableDriven;
+    private boolean buildTree;
+    private boolean positions;
+    private boolean promptForGraphviz = MAIN.PROMPT_FOR_GRAPHVIZ && !Headless.isHeadless();
+    private boolean batch;
+    private boolean run;
+    private Backend backend;
+    private int optimizationLevel;
+    private Path classFile;
+    private Path irFile;
+    private Path cfgFile;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String serverAddress;
+    private String clientAddress;
+    private boolean incremental;
+    private int queueSize = 64;
+    private int idleTimeout = 60;
+    private boolean stats;
+    private Path cacheDirectory;
+    private long cacheSize = CompileCache.DEFAULT_MAX_SIZE;
+
+    private CompilerOptions() {
+    }
+
+    /**
+     * Parse the command line.
+     *
+     * @param args the arguments given to main
+     * @return the options
+     * @throws IllegalArgumentException if the command line doesn't make sense.
+     */
+    static CompilerOptions parse(final String[] args) {
+        final var options = new CompilerOptions();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o", "--output" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing file name after " + args[i - 1]);
+                    }
+                    options.outputFile = Path.of(args[i]);
+                }
+                case "-q", "--quiet" -> options.echo = false;
+                case "--headless" -> options.promptForGraphviz = false;
+                case "--tree" -> options.buildTree = true;
+                case "--positions" -> {
+                    // Positions come from the tree's token indexes.
+                    options.positions = true;
+                    options.buildTree = true;
+                }
+                case "--batch" -> options.batch = true;
+                case "--incremental" -> options.incremental = true;
+                case "--stats" -> options.stats = true;
+                case "--run" -> options.run = true;
+                case "--backend" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing backend name after --backend");
+                    }
+                    options.backend = switch (args[i]) {
+                        case "interpreter" -> Backend.INTERPRETER;
+                        case "vm" -> Backend.VM;
+                        case "bytecode" -> Backend.BYTECODE;
+                        default -> throw new IllegalArgumentException("Unknown backend: " + args[i]);
+                    };
+                }
+                case "--dump-class" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing file name after --dump-class");
+                    }
+                    options.classFile = Path.of(args[i]);
+                    options.backend = Backend.BYTECODE;
+                }
+                case "-O" -> options.optimizationLevel = Optimizer.MAX_LEVEL;
+                case "-O0", "-O1", "-O2" -> options.optimizationLevel = args[i].charAt(2) - '0';
+                case "--cache" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing directory after --cache");
+                    }
+                    options.cacheDirectory = Path.of(args[i]);
+                }
+                case "--cache-size" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing size after --cache-size");
+                    }
+                    options.cacheSize = parseMegabytes(args[i]);
+                }
+                case "--dump-ir" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing file name after --dump-ir");
+                    }
+                    options.irFile = Path.of(args[i]);
+                }
+                case "--dump-cfg" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing file name after --dump-cfg");
+                    }
+                    options.cfgFile = Path.of(args[i]);
+                }
+                case "--threads" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing thread count after --threads");
+                    }
+                    options.threads = parseCount(args[i]);
+                }
+                case "--queue" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing queue size after --queue");
+                    }
+                    options.queueSize = parseCount(args[i]);
+                }
+                case "--idle-timeout" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing seconds after --idle-timeout");
+                    }
+                    options.idleTimeout = parseCount(args[i]);
+                }
+                case "--server", "--client" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing port or socket file after " + args[i - 1]);
+                    }
+                    if (args[i - 1].equals("--server")) {
+                        options.serverAddress = args[i];
+                    } else {
+                        options.clientAddress = args[i];
+                    }
+                }
+                case "--lexer" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing lexer name after --lexer");
+                    }
+                    options.lexer = switch (args[i]) {
+                        case "sequential" -> Lexer.SEQUENTIAL;
+                        case "parallel" -> Lexer.PARALLEL;
+                        case "streaming" -> Lexer.STREAMING;
+                        case "pipelined" -> Lexer.PIPELINED;
+                        default -> throw new IllegalArgumentException("Unknown lexer: " + args[i]);
+                    };
+                }
+                case "--parser" -> {
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException("Missing parser name after --parser");
+                    }
+                    options.tableDriven = switch (args[i]) {
+                        case "recursive" -> false;
+                        case "table" -> true;
+                        default -> throw new IllegalArgumentException("Unknown parser: " + args[i]);
+                    };
+                }
+                default -> {
+                    if (args[i].startsWith("-") && args[i].length() > 1) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    options.inputs.add(args[i]);
+                }
+            }
+        }
+
+        if (options.optimizationLevel > 0 && options.backend == Backend.INTERPRETER) {
+            // The interpreter walks the program's tree, not the optimized graph.
+            throw new IllegalArgumentException("-O1 and -O2 can't be combined with --backend interpreter.");
+        }
+        if (options.cacheDirectory != null && (options.serverAddress != null || options.clientAddress != null
+                || options.run)) {
+            throw new IllegalArgumentException("--cache can't be combined with --server, --client or --run.");
+        }
+        if (options.lexer == Lexer.STREAMING && (options.buildTree || options.cacheDirectory != null || options.run)) {
+            // Each of them needs the whole token stream, or the whole source.
+            throw new IllegalArgumentException("--lexer streaming can't be combined with --tree, --positions, --cache or --run.");
+        }
+        if (options.lexer == Lexer.PIPELINED && (options.buildTree || options.run)) {
+            // Both need the whole token stream.
+            throw new IllegalArgumentException("--lexer pipelined can't be combined with --tree, --positions or --run.");
+        }
+        if (options.stats && (options.serverAddress != null || options.clientAddress != null)) {
+            // A server's compilations show up as Flight Recorder events instead.
+            throw new IllegalArgumentException("--stats can't be combined with --server or --client.");
+        }
+        if (options.incremental && (options.clientAddress == null || options.tableDriven || options.buildTree)) {
+            // An incremental request is always parsed the one way.
+            throw new IllegalArgumentException("--incremental needs --client, and can't be combined with --parser table, --tree or --positions.");
+        }
+        if (options.serverAddress != null) {
+            if (options.batch || options.run || options.clientAddress != null || !options.inputs.isEmpty()) {
+                throw new IllegalArgumentException("A server takes no input files.");
+            }
+            options.echo = false;
+            options.promptForGraphviz = false;
+            return options;
+        }
+        if (options.inputs.isEmpty()) {
+            throw new IllegalArgumentException("Must Provide an input filename!!");
+        }
+        if (options.inputs.contains(STANDARD_INPUT) && (options.run || options.batch)) {
+            throw new IllegalArgumentException("--run and --batch can't read the program from the standard input.");
+        }
+        if (options.run) {
+            if (options.batch || options.clientAddress != null) {
+                throw new IllegalArgumentException("--run compiles nothing; it can't be combined with --batch or --client.");
+            }
+            // The program's output is the only output.
+            options.echo = false;
+            options.promptForGraphviz = false;
+        }
+        if (options.clientAddress != null) {
+            if (options.batch) {
+                throw new IllegalArgumentException("--client and --batch can't be combined.");
+            }
+            // The server has the output; there's nothing here to show in Graphviz.
+            options.promptForGraphviz = false;
+        }
+        if (options.batch) {
+            // Nobody is watching a batch: every program goes into its own file.
+            options.echo = false;
+            options.promptForGraphviz = false;
+        } else {
+            if (options.inputs.size() > 1) {
+                throw new IllegalArgumentException("Only one input file may be given (or use --batch).");
+            }
+            options.inputFile = new File(options.inputs.get(0));
+        }
+        return options;
+    }
+
+    /**
+     * The same settings, for compiling one more program into its own output (e.g. one file
+     * of a batch). The copy never echoes to the console or prompts for Graphviz.
+     *
+     * @param inputFile  the program
+     * @param outputFile where its code goes (null to keep it in memory)
+     * @return the options for that one compilation
+     */
+    CompilerOptions forFile(final File inputFile, final Path outputFile) {
+        final var options = new CompilerOptions();
+        options.inputs.add(inputFile.getPath());
+        options.inputFile = inputFile;
+        options.outputFile = outputFile;
+        options.echo = false;
+        options.lexer = lexer;
+        options.tableDriven = tableDriven;
+        options.buildTree = buildTree;
+        options.positions = positions;
+        options.promptForGraphviz = false;
+        options.threads = 1;
+        return options;
+    }
+
+    /**
+     * The settings a client asked the {@link CompileServer} to compile a program with.
+     *
+     * @param tableDriven use the {@link TableDrivenParser}
+     * @param buildTree   build the {@link ParseTree} first
+     * @param positions   give each lexeme its line and column (implies buildTree)
+     * @return the options for that one compilation
+     */
+    static CompilerOptions forRequest(final boolean tableDriven, final boolean buildTree, final boolean positions) {
+        final var options = new CompilerOptions();
+        options.echo = false;
+        options.tableDriven = tableDriven;
+        options.buildTree = buildTree || positions;
+        options.positions = positions;
+        options.promptForGraphviz = false;
+        options.threads = 1;
+        return options;
+    }
+
+    /**
+     * @return the single input file (null in batch mode, see {@link #getInputs()}).
+     */
+    File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * @return true if the program is read from the standard input ({@code -})
+     */
+    boolean isStandardInput() {
+        return inputFile != null && inputFile.getPath().equals(STANDARD_INPUT);
+    }
+
+    /**
+     * @return the inputs as given on the command line: files, directories or glob patterns.
+     */
+    List<String> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    /**
+     * @return the file to stream the output into, or null to keep it in memory. In batch mode,
+     * the directory to write the outputs into (null to write each one next to its input).
+     */
+    Path getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return true to print the {@link CompilationStats} at exit
+     */
+    boolean isStats() {
+        return stats;
+    }
+
+    /**
+     * @return the directory of the {@link CompileCache}, or null not to cache
+     */
+    Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * @return how many bytes the cache may grow to
+     */
+    long getCacheSize() {
+        return cacheSize;
+    }
+
+    Lexer getLexer() {
+        return lexer;
+    }
+
+    boolean isEcho() {
+        return echo;
+    }
+
+    boolean isTableDriven() {
+        return tableDriven;
+    }
+
+    boolean isBuildTree() {
+        return buildTree;
+    }
+
+    boolean isPositions() {
+        return positions;
+    }
+
+    boolean isPromptForGraphviz() {
+        return promptForGraphviz;
+    }
+
+    boolean isBatch() {
+        return batch;
+    }
+
+    boolean isRun() {
+        return run;
+    }
+
+    Backend getBackend() {
+        if (backend != null) {
+            return backend;
+        }
+        return optimizationLevel > 0 ? Backend.VM : Backend.INTERPRETER;
+    }
+
+    /**
+     * @return the {@code -O} level, 0 to {@link Optimizer#MAX_LEVEL}
+     */
+    int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * @return where to write the class file of a program run by the bytecode backend, or null
+     */
+    Path getClassFile() {
+        return classFile;
+    }
+
+    /**
+     * @return where to write the three-address code of a program being run, or null
+     */
+    Path getIrFile() {
+        return irFile;
+    }
+
+    /**
+     * @return where to write the control-flow graph (DOT) of a program being run, or null
+     */
+    Path getCfgFile() {
+        return cfgFile;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the port or socket file to serve on, or null if this isn't a server.
+     */
+    String getServerAddress() {
+        return serverAddress;
+    }
+
+    /**
+     * @return the port or socket file of the server to send the input to, or null to compile it here.
+     */
+    String getClientAddress() {
+        return clientAddress;
+    }
+
+    /**
+     * @return true to send the input as the next version of the program on the connection
+     */
+    boolean isIncremental() {
+        return incremental;
+    }
+
+    int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return how many seconds a server waits for a client's next request
+     */
+    int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private static long parseMegabytes(final String text) {
+        try {
+            final long megabytes = Long.parseLong(text);
+            if (megabytes > 0 && megabytes <= Long.MAX_VALUE >> 20) {
+                return megabytes << 20;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Not a size in megabytes: " + text);
+    }
+
+    private static int parseCount(final String text) {
+        try {
+            final int count = Integer.parseInt(text);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Not a thread count: " + text);
+    }
+}
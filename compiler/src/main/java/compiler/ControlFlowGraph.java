@@ -0,0 +1,601 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import compiler.Program.Assign;
+import compiler.Program.Binary;
+import compiler.Program.Condition;
+import compiler.Program.Constant;
+import compiler.Program.DoUntil;
+import compiler.Program.Expression;
+import compiler.Program.If;
+import compiler.Program.Read;
+import compiler.Program.Relation;
+import compiler.Program.Statement;
+import compiler.Program.Variable;
+import compiler.Program.While;
+import compiler.Program.Write;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A program as three-address code in basic blocks: the stage between the {@link Program}
+ * built from the parse tree and whatever analyses, optimizes or runs it.
+ * <p>
+ * An instruction is an opcode, a result and up to two operands ({@code %t3 = a * 2},
+ * {@code x = %t3}, {@code read x}, {@code write %t3}). An operand is an int: a variable
+ * (0 to {@link #variableCount()} - 1, the program's slots), a temporary (the numbers after
+ * the variables) or a constant (negative: constant c is {@code -1 - c}). Every temporary is
+ * the result of exactly one instruction and is used in the same block.
+ * <p>
+ * A block is a run of instructions and an exit: a {@link #GOTO} to one block, a
+ * {@link #BRANCH} on a relation between two operands to one of two blocks, or the
+ * {@link #HALT} at the end of the program. Block 0 is the entry. Loops are laid out as
+ * {@code while}/{@code do ... until} run, the test after the body, so the blocks' order is a
+ * good order to generate code in.
+ * <p>
+ * Everything is stored in flat int arrays, one entry per instruction or per block, not in
+ * an object per node: a program of a few thousand statements is a few arrays of a few
+ * thousand ints, and the passes over it are loops over those arrays.
+ */
+final class ControlFlowGraph {
+
+    // Instructions: result = left op right, result = left, result = read, write left.
+    static final int ADD = 0;
+    static final int SUBTRACT = 1;
+    static final int MULTIPLY = 2;
+    static final int DIVIDE = 3;
+    static final int COPY = 4;
+    static final int READ = 5;
+    static final int WRITE = 6;
+
+    // Block exits.
+    static final int GOTO = 0;
+    static final int BRANCH = 1;
+    static final int HALT = 2;
+
+    /**
+     * The operand of an instruction that doesn't have one.
+     */
+    static final int NONE = Integer.MIN_VALUE;
+
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+    private static final String[] RELATIONS = {"<", ">", "<=", ">=", "=", "!="};
+    private static final Relation[] RELATION_VALUES = Relation.values();
+
+    private final String[] variables;
+    private final double[] constants;
+    private final int temporaryCount;
+
+    // Per instruction.
+    private final int[] opcodes;
+    private final int[] results;
+    private final int[] lefts;
+    private final int[] rights;
+
+    // Per block: its instructions are first(b) to end(b) - 1.
+    private final int[] firsts;
+    private final int[] ends;
+    private final int[] exits;
+    private final int[] relations;
+    private final int[] testLefts;
+    private final int[] testRights;
+    private final int[] nexts;
+    private final int[] otherwises;
+
+    /**
+     * A graph from its arrays, which it keeps (see {@link #from} and {@link Optimizer}).
+     */
+    ControlFlowGraph(final String[] variables, final double[] constants, final int temporaryCount,
+                     final int[] opcodes, final int[] results, final int[] lefts, final int[] rights,
+                     final int[] firsts, final int[] ends, final int[] exits, final int[] relations,
+                     final int[] testLefts, final int[] testRights, final int[] nexts, final int[] otherwises) {
+        this.variables = variables;
+        this.constants = constants;
+        this.temporaryCount = temporaryCount;
+        this.opcodes = opcodes;
+        this.results = results;
+        this.lefts = lefts;
+        this.rights = rights;
+        this.firsts = firsts;
+        this.ends = ends;
+        this.exits = exits;
+        this.relations = relations;
+        this.testLefts = testLefts;
+        this.testRights = testRights;
+        this.nexts = nexts;
+        this.otherwises = otherwises;
+    }
+
+    /**
+     * Lower a program to three-address code.
+     *
+     * @param program the program
+     * @return its control-flow graph
+     */
+    static ControlFlowGraph from(final Program program) {
+        return new Builder(program).build();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the program's variables, by slot
+     */
+    String[] getVariables() {
+        return variables;
+    }
+
+    int variableCount() {
+        return variables.length;
+    }
+
+    int temporaryCount() {
+        return temporaryCount;
+    }
+
+    int constantCount() {
+        return constants.length;
+    }
+
+    static boolean isConstant(final int operand) {
+        return operand < 0;
+    }
+
+    boolean isTemporary(final int operand) {
+        return operand >= variables.length;
+    }
+
+    /**
+     * @param operand a constant operand
+     * @return its value
+     */
+    double constant(final int operand) {
+        return constants[-1 - operand];
+    }
+
+    /**
+     * @return the constant pool: constant operand c is {@code getConstants()[-1 - c]}
+     */
+    double[] getConstants() {
+        return constants;
+    }
+
+    int instructionCount() {
+        return opcodes.length;
+    }
+
+    int opcode(final int instruction) {
+        return opcodes[instruction];
+    }
+
+    /**
+     * @return the variable or temporary the instruction sets, or {@link #NONE} for a write
+     */
+    int result(final int instruction) {
+        return results[instruction];
+    }
+
+    /**
+     * @return the first operand, or {@link #NONE} for a read
+     */
+    int left(final int instruction) {
+        return lefts[instruction];
+    }
+
+    /**
+     * @return the second operand of an arithmetic instruction, otherwise {@link #NONE}
+     */
+    int right(final int instruction) {
+        return rights[instruction];
+    }
+
+    int blockCount() {
+        return firsts.length;
+    }
+
+    /**
+     * @return the block's first instruction
+     */
+    int first(final int block) {
+        return firsts[block];
+    }
+
+    /**
+     * @return one past the block's last instruction
+     */
+    int end(final int block) {
+        return ends[block];
+    }
+
+    /**
+     * @return {@link #GOTO}, {@link #BRANCH} or {@link #HALT}
+     */
+    int exit(final int block) {
+        return exits[block];
+    }
+
+    /**
+     * @return the relation a {@link #BRANCH} tests
+     */
+    Relation relation(final int block) {
+        return RELATION_VALUES[relations[block]];
+    }
+
+    int testLeft(final int block) {
+        return testLefts[block];
+    }
+
+    int testRight(final int block) {
+        return testRights[block];
+    }
+
+    /**
+     * @return where a {@link #GOTO} goes, or where a {@link #BRANCH} goes if the relation holds
+     */
+    int next(final int block) {
+        return nexts[block];
+    }
+
+    /**
+     * @return where a {@link #BRANCH} goes if the relation doesn't hold
+     */
+    int otherwise(final int block) {
+        return otherwises[block];
+    }
+
+    /**
+     * Give the temporaries numbers from 0 up that a backend can use as registers or locals:
+     * temporaries that are never needed at the same time share a number. A temporary is
+     * needed from the instruction that sets it to its last use, and since it is only used in
+     * its own block, numbering starts over in every block.
+     *
+     * @return each temporary's number (temporary t is index t - {@link #variableCount()}); the
+     * largest + 1 is how many a backend needs
+     */
+    int[] packTemporaries() {
+        final int first = variables.length;
+        final int[] packed = new int[temporaryCount];
+        final int[] lastUse = new int[temporaryCount];
+        Arrays.fill(lastUse, -1);
+        int[] free = new int[8];
+
+        for (int block = 0; block < this.blockCount(); block++) {
+            for (int i = firsts[block]; i < ends[block]; i++) {
+                if (lefts[i] >= first) {
+                    lastUse[lefts[i] - first] = i;
+                }
+                if (rights[i] >= first) {
+                    lastUse[rights[i] - first] = i;
+                }
+            }
+            if (testLefts[block] >= first) {
+                lastUse[testLefts[block] - first] = ends[block];
+            }
+            if (testRights[block] >= first) {
+                lastUse[testRights[block] - first] = ends[block];
+            }
+
+            int freeCount = 0;
+            int next = 0;
+            for (int i = firsts[block]; i < ends[block]; i++) {
+                // An instruction reads its operands before it sets its result, which can reuse one.
+                for (int operand = 0; operand < 2; operand++) {
+                    final int used = operand == 0 ? lefts[i] : rights[i];
+                    if (used >= first && lastUse[used - first] == i && (operand == 0 || rights[i] != lefts[i])) {
+                        final int temporary = used - first;
+                        if (freeCount == free.length) {
+                            free = Arrays.copyOf(free, freeCount * 2);
+                        }
+                        free[freeCount++] = packed[temporary];
+                    }
+                }
+                if (results[i] >= first) {
+                    final int result = results[i] - first;
+                    packed[result] = freeCount > 0 ? free[--freeCount] : next++;
+                    if (lastUse[result] < 0) {
+                        // Never used: free again straight away.
+                        if (freeCount == free.length) {
+                            free = Arrays.copyOf(free, freeCount * 2);
+                        }
+                        free[freeCount++] = packed[result];
+                    }
+                }
+            }
+        }
+        return packed;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the code, block by block:
+     * <pre>
+     * B0:
+     *     read n
+     *     %t0 = n * 2
+     *     if %t0 &gt; 10 goto B1 else B2
+     * </pre>
+     */
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder();
+        final String eol = System.lineSeparator();
+        for (int block = 0; block < this.blockCount(); block++) {
+            text.append('B').append(block).append(':').append(eol);
+            for (int i = firsts[block]; i < ends[block]; i++) {
+                text.append("    ").append(this.instruction(i)).append(eol);
+            }
+            text.append("    ").append(this.exitText(block)).append(eol);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the graph in DOT, one box per block, its branches' edges labelled {@code T} and {@code F}
+     */
+    String toDot() {
+        final StringBuilder dot = new StringBuilder("digraph ControlFlowGraph {\n");
+        dot.append("\tnode [shape=box, fontname=\"monospace\"];\n");
+        for (int block = 0; block < this.blockCount(); block++) {
+            dot.append("\tB").append(block).append(" [label=\"B").append(block).append(":\\l");
+            for (int i = firsts[block]; i < ends[block]; i++) {
+                dot.append(this.instruction(i)).append("\\l");
+            }
+            dot.append(this.exitText(block)).append("\\l\"];\n");
+        }
+        for (int block = 0; block < this.blockCount(); block++) {
+            if (exits[block] == GOTO) {
+                dot.append("\tB").append(block).append(" -> B").append(nexts[block]).append(";\n");
+            } else if (exits[block] == BRANCH) {
+                dot.append("\tB").append(block).append(" -> B").append(nexts[block]).append(" [label=\"T\"];\n");
+                dot.append("\tB").append(block).append(" -> B").append(otherwises[block]).append(" [label=\"F\"];\n");
+            }
+        }
+        return dot.append("}\n").toString();
+    }
+
+    private String instruction(final int i) {
+        return switch (opcodes[i]) {
+            case COPY -> this.operand(results[i]) + " = " + this.operand(lefts[i]);
+            case READ -> "read " + this.operand(results[i]);
+            case WRITE -> "write " + this.operand(lefts[i]);
+            default -> this.operand(results[i]) + " = " + this.operand(lefts[i]) + ' ' + OPERATORS[opcodes[i]]
+                    + ' ' + this.operand(rights[i]);
+        };
+    }
+
+    private String exitText(final int block) {
+        return switch (exits[block]) {
+            case GOTO -> "goto B" + nexts[block];
+            case BRANCH -> "if " + this.operand(testLefts[block]) + ' ' + RELATIONS[relations[block]] + ' '
+                    + this.operand(testRights[block]) + " goto B" + nexts[block] + " else B" + otherwises[block];
+            default -> "halt";
+        };
+    }
+
+    // A variable by name, a temporary as %t<n>, a constant as its value.
+    private String operand(final int operand) {
+        if (isConstant(operand)) {
+            return ProgramOutput.format(this.constant(operand));
+        } else if (this.isTemporary(operand)) {
+            return "%t" + (operand - variables.length);
+        }
+        return variables[operand];
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * Lowering, in one pass over the program: instructions are appended to the current block
+     * until a loop or an if ends it, so each block's instructions are contiguous. Block numbers
+     * are handed out as blocks are started; exits pointing forward are filled in once their
+     * target has a number.
+     */
+    private static final class Builder {
+
+        private final Program program;
+        private final Map<Long, Integer> constantOperands = new HashMap<>();
+
+        private double[] constants = new double[8];
+        private int constantCount;
+        private int temporaryCount;
+
+        private int[] opcodes = new int[64];
+        private int[] results = new int[64];
+        private int[] lefts = new int[64];
+        private int[] rights = new int[64];
+        private int instructionCount;
+
+        private int[] firsts = new int[16];
+        private int[] ends = new int[16];
+        private int[] exits = new int[16];
+        private int[] relations = new int[16];
+        private int[] testLefts = new int[16];
+        private int[] testRights = new int[16];
+        private int[] nexts = new int[16];
+        private int[] otherwises = new int[16];
+        private int blockCount;
+
+        // The block being filled.
+        private int current;
+
+        Builder(final Program program) {
+            this.program = program;
+        }
+
+        ControlFlowGraph build() {
+            this.startBlock();
+            this.statements(program.getBody());
+            this.endBlock(HALT);
+
+            final int n = instructionCount;
+            final int b = blockCount;
+            return new ControlFlowGraph(program.getVariables(), Arrays.copyOf(constants, constantCount),
+                    temporaryCount, Arrays.copyOf(opcodes, n), Arrays.copyOf(results, n), Arrays.copyOf(lefts, n),
+                    Arrays.copyOf(rights, n), Arrays.copyOf(firsts, b), Arrays.copyOf(ends, b),
+                    Arrays.copyOf(exits, b), Arrays.copyOf(relations, b), Arrays.copyOf(testLefts, b),
+                    Arrays.copyOf(testRights, b), Arrays.copyOf(nexts, b), Arrays.copyOf(otherwises, b));
+        }
+
+        private void statements(final Statement[] statements) {
+            for (final Statement statement : statements) {
+                this.statement(statement);
+            }
+        }
+
+        private void statement(final Statement statement) {
+            if (statement instanceof Assign assign) {
+                if (assign.value() instanceof Binary binary) {
+                    this.binary(assign.slot(), binary);
+                } else {
+                    this.emit(COPY, assign.slot(), this.operand(assign.value()), NONE);
+                }
+            } else if (statement instanceof Read read) {
+                this.emit(READ, read.slot(), NONE, NONE);
+            } else if (statement instanceof Write write) {
+                this.emit(WRITE, NONE, this.operand(write.value()), NONE);
+            } else if (statement instanceof While loop) {
+                // goto test; body: ...; test: if condition goto body else after
+                final int entry = this.endBlock(GOTO);
+                final int body = this.startBlock();
+                this.statements(loop.body());
+                final int bodyEnd = this.endBlock(GOTO);
+                final int test = this.startBlock();
+                nexts[entry] = test;
+                nexts[bodyEnd] = test;
+                final int exit = this.branch(loop.condition(), body);
+                final int after = this.startBlock();
+                otherwises[exit] = after;
+            } else if (statement instanceof DoUntil loop) {
+                // body: ...; if condition goto after else body
+                final int entry = this.endBlock(GOTO);
+                final int body = this.startBlock();
+                nexts[entry] = body;
+                this.statements(loop.body());
+                final int exit = this.branch(loop.condition(), -1);
+                final int after = this.startBlock();
+                otherwises[exit] = body;
+                nexts[exit] = after;
+            } else if (statement instanceof If branch) {
+                // if condition goto then else otherwise; then: ... goto after; otherwise: ... goto after
+                final int test = this.branch(branch.condition(), -1);
+                final int then = this.startBlock();
+                nexts[test] = then;
+                this.statements(branch.then());
+                final int thenEnd = this.endBlock(GOTO);
+                int otherwiseEnd = -1;
+                if (branch.otherwise().length > 0) {
+                    final int otherwise = this.startBlock();
+                    otherwises[test] = otherwise;
+                    this.statements(branch.otherwise());
+                    otherwiseEnd = this.endBlock(GOTO);
+                }
+                final int after = this.startBlock();
+                nexts[thenEnd] = after;
+                if (otherwiseEnd >= 0) {
+                    nexts[otherwiseEnd] = after;
+                } else {
+                    otherwises[test] = after;
+                }
+            }
+        }
+
+        // target = left op right, the operands' own operations first.
+        private void binary(final int target, final Binary binary) {
+            final int left = this.operand(binary.left());
+            final int right = this.operand(binary.right());
+            this.emit(opcode(binary), target, left, right);
+        }
+
+        // Temporaries are numbered in the order they are set.
+        private int operand(final Expression expression) {
+            if (expression instanceof Variable variable) {
+                return variable.slot();
+            } else if (expression instanceof Constant constant) {
+                return this.constant(constant.value());
+            }
+            final Binary binary = (Binary) expression;
+            final int left = this.operand(binary.left());
+            final int right = this.operand(binary.right());
+            final int temporary = program.getSlotCount() + temporaryCount++;
+            this.emit(opcode(binary), temporary, left, right);
+            return temporary;
+        }
+
+        private static int opcode(final Binary binary) {
+            return switch (binary.operator()) {
+                case ADD -> ADD;
+                case SUBTRACT -> SUBTRACT;
+                case MULTIPLY -> MULTIPLY;
+                case DIVIDE -> DIVIDE;
+            };
+        }
+
+        // End the current block with a branch on the condition; returns the block.
+        private int branch(final Condition condition, final int next) {
+            final int left = this.operand(condition.left());
+            final int right = this.operand(condition.right());
+            relations[current] = condition.relation().ordinal();
+            testLefts[current] = left;
+            testRights[current] = right;
+            nexts[current] = next;
+            return this.endBlock(BRANCH);
+        }
+
+        private int constant(final double value) {
+            return -1 - constantOperands.computeIfAbsent(Double.doubleToRawLongBits(value), bits -> {
+                if (constantCount == constants.length) {
+                    constants = Arrays.copyOf(constants, constantCount * 2);
+                }
+                constants[constantCount] = value;
+                return constantCount++;
+            });
+        }
+
+        private void emit(final int opcode, final int result, final int left, final int right) {
+            if (instructionCount == opcodes.length) {
+                final int capacity = instructionCount * 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                results = Arrays.copyOf(results, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+            }
+            opcodes[instructionCount] = opcode;
+            results[instructionCount] = result;
+            lefts[instructionCount] = left;
+            rights[instructionCount] = right;
+            instructionCount++;
+        }
+
+        // Start a new block and make it the current one; it may grow the arrays.
+        private int startBlock() {
+            if (blockCount == firsts.length) {
+                final int capacity = blockCount * 2;
+                firsts = Arrays.copyOf(firsts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                exits = Arrays.copyOf(exits, capacity);
+                relations = Arrays.copyOf(relations, capacity);
+                testLefts = Arrays.copyOf(testLefts, capacity);
+                testRights = Arrays.copyOf(testRights, capacity);
+                nexts = Arrays.copyOf(nexts, capacity);
+                otherwises = Arrays.copyOf(otherwises, capacity);
+            }
+            firsts[blockCount] = instructionCount;
+            testLefts[blockCount] = NONE;
+            testRights[blockCount] = NONE;
+            nexts[blockCount] = -1;
+            otherwises[blockCount] = -1;
+            current = blockCount++;
+            return current;
+        }
+
+        // Close the current block; its successors are filled in by the caller.
+        private int endBlock(final int exit) {
+            ends[current] = instructionCount;
+            exits[current] = exit;
+            return current;
+        }
+    }
+}
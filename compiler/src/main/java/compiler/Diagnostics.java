@@ -0,0 +1,136 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The syntax errors found in one parse, in the order they were found.
+ * <p>
+ * The parsers don't stop at the first error: they skip to the next statement boundary (see
+ * {@link #isSynchronizing(Token)}), or to the {@code do} or {@code then} after a bad condition,
+ * and carry on, so a single run reports every error. An
+ * error at the same token as the one before it is the previous error's fallout, not a new
+ * one, and is dropped.
+ * <p>
+ * Errors are kept as a message, a token index, a line and a column each, in growing arrays;
+ * recording one allocates nothing else. The line and column come from the lexer when the error
+ * is recorded, since a {@link StreamingLexer} has forgotten them by the time it is shown.
+ */
+final class Diagnostics {
+
+    private static final GrammarAnalysis GRAMMAR = GrammarAnalysis.LANGUAGE;
+
+    private final TokenStream lexer;
+
+    private String[] messages = new String[4];
+    private int[] tokens = new int[4];
+    private int[] lines = new int[4];
+    private int[] columns = new int[4];
+    private int count;
+
+    /**
+     * @param lexer the tokens being parsed
+     */
+    Diagnostics(final TokenStream lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * Record a syntax error.
+     *
+     * @param token   the index of the token where it was found
+     * @param message the error message
+     * @return false if the error was dropped as fallout of the previous one
+     */
+    boolean report(final int token, final String message) {
+        if (count > 0 && token <= tokens[count - 1]) {
+            return false;
+        }
+        if (count == messages.length) {
+            messages = Arrays.copyOf(messages, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+            columns = Arrays.copyOf(columns, count * 2);
+        }
+        messages[count] = message;
+        tokens[count] = token;
+        lines[count] = lexer.line(token);
+        columns[count] = lexer.column(token);
+        count++;
+        return true;
+    }
+
+    boolean hasErrors() {
+        return count > 0;
+    }
+
+    int count() {
+        return count;
+    }
+
+    String message(final int error) {
+        return messages[error];
+    }
+
+    /**
+     * @return the index of the token where the error was found
+     */
+    int token(final int error) {
+        return tokens[error];
+    }
+
+    /**
+     * @return the line the error was found on
+     */
+    int line(final int error) {
+        return lines[error];
+    }
+
+    /**
+     * @return the column the error was found at
+     */
+    int column(final int error) {
+        return columns[error];
+    }
+
+    /**
+     * @return the error message, prefixed with where the error was found
+     */
+    String describe(final int error) {
+        return String.format("Line %d, column %d: %s", this.line(error), this.column(error), messages[error]);
+    }
+
+    /**
+     * @return every error, as {@link #describe(int)} puts it, one per line
+     */
+    String describeAll() {
+        final var text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(this.describe(i)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Log every error, the way {@link Parser#analyze()} always has.
+     */
+    void log() {
+        final Logger logger = Logger.getAnonymousLogger();
+        for (int i = 0; i < count; i++) {
+            logger.severe(String.format("%s\n", this.describe(i)));
+        }
+    }
+
+    /**
+     * After an error, tokens are skipped up to one of these: one that can start a statement,
+     * end a statement list ({@code od}, {@code fi}, {@code until}, {@code else}) or end the
+     * program, i.e. FIRST(STMT) and FOLLOW(STMT).
+     *
+     * @param token the current token
+     * @return true if parsing can pick up again at this token
+     */
+    static boolean isSynchronizing(final Token token) {
+        return GRAMMAR.inFirst(NonTerminal.STMT, token) || GRAMMAR.inFollow(NonTerminal.STMT, token);
+    }
+}
@@ -0,0 +1,56 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * Takes the place of a parser's listener once the first syntax error has ended the tree, so
+ * the parser can look for more errors without adding anything after it.
+ */
+final class DiscardingListener implements ParseTreeListener {
+
+    static final DiscardingListener INSTANCE = new DiscardingListener();
+
+    private static final TreeNode NODE = new TreeNode("", ParseTree.NONE);
+
+    private DiscardingListener() {
+    }
+
+    @Override
+    public TreeNode writeHeader(final String nodeString) {
+        return NODE;
+    }
+
+    @Override
+    public TreeNode addNonTerminalToTree(final TreeNode parentNode, final NonTerminal symbol) {
+        return NODE;
+    }
+
+    @Override
+    public TreeNode addTokenToTree(final TreeNode parentNode, final Token token) {
+        return NODE;
+    }
+
+    @Override
+    public void addTerminalToTree(final TreeNode fromNode, final String lexeme) {
+        // Discarded.
+    }
+
+    @Override
+    public void addEmptyToTree(final TreeNode fromNode) {
+        // Discarded.
+    }
+
+    @Override
+    public void syntaxError(final String err, final TreeNode fromNode) throws ParseException {
+        throw new ParseException(err);
+    }
+
+    @Override
+    public void writeFooter() {
+        // Discarded.
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is buffered.
+    }
+}
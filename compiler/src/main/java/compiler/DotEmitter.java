@@ -0,0 +1,87 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * Writes a {@link ParseTree} as GraphViz, as a pass of its own.
+ * <p>
+ * The output is the same as the {@link CodeGenerator} produces while parsing: the nodes are
+ * numbered in creation order, so writing one edge per node in index order reproduces the
+ * on-the-fly output line for line.
+ * <p>
+ * Optionally, each lexeme also gets its source position as a tooltip (shown by the SVG
+ * output), e.g. {@code tooltip="line 3, column 7"}.
+ */
+final class DotEmitter {
+
+    private DotEmitter() {
+    }
+
+    /**
+     * Emit the tree.
+     *
+     * @param tree          the parse tree
+     * @param codeGenerator where to write it
+     */
+    static void emit(final ParseTree tree, final CodeGenerator codeGenerator) {
+        emit(tree, codeGenerator, false);
+    }
+
+    /**
+     * Emit the tree.
+     *
+     * @param tree          the parse tree
+     * @param codeGenerator where to write it
+     * @param positions     give each lexeme its line and column
+     */
+    static void emit(final ParseTree tree, final CodeGenerator codeGenerator, final boolean positions) {
+        codeGenerator.writeHeader(tree.name(0), 0);
+
+        final TokenBuffer tokens = tree.getTokens();
+        for (int node = 1; node < tree.size(); node++) {
+            if (positions && tree.isLexeme(node)) {
+                final int parent = tree.parent(node);
+                final int offset = tokens.offset(tree.tokenIndex(node));
+                final String name = tree.name(node);
+                codeGenerator.writeEdge(tree.name(parent), parent, name, node, name, "oval",
+                        tokens.lines().line(offset), tokens.lines().column(offset));
+            } else {
+                emitEdge(tree, node, tree.name(node), codeGenerator);
+            }
+        }
+
+        if (tree.getSyntaxError() != null) {
+            final int node = tree.getSyntaxErrorNode();
+            codeGenerator.writeSyntaxError(tree.name(node), node, tree.getSyntaxError());
+        } else {
+            codeGenerator.writeFooter();
+        }
+        codeGenerator.flush();
+    }
+
+    /**
+     * Emit the edge from a node's parent to the node.
+     *
+     * @param tree          the parse tree
+     * @param node          the node
+     * @param name          its name (for a LEXEME, the text of its token)
+     * @param codeGenerator where to write it
+     */
+    static void emitEdge(final ParseTree tree, final int node, final String name, final CodeGenerator codeGenerator) {
+        final int parent = tree.parent(node);
+
+        final String label;
+        final String shape;
+        if (tree.isLexeme(node)) {
+            label = name;
+            shape = "oval";
+        } else if (tree.isEmpty(node)) {
+            label = "&epsilon;";
+            shape = "none";
+        } else {
+            label = name;
+            shape = "rect";
+        }
+
+        codeGenerator.writeEdge(tree.name(parent), parent, name, node, label, shape);
+    }
+}
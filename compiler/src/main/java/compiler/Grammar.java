@@ -0,0 +1,157 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static compiler.NonTerminal.*;
+
+/**
+ * The grammar of the language, as data.
+ * <p>
+ * These are the productions listed at the top of {@link Parser}, written down the way the
+ * recursive-descent parser actually builds its parse tree, so that a table-driven parser
+ * working from them produces exactly the same tree:
+ * <ul>
+ *     <li>The alternatives of a rule are tried by lookahead; the LAST alternative is the
+ *     fallback that is used when no other alternative starts with the lookahead (the
+ *     "else" branch of the recursive parser).</li>
+ *     <li>A {@link #sibling} symbol is attached to the parent of the rule's node instead of
+ *     the rule's node (the recursive parser's {@code STMT_LIST(parentNode)} and
+ *     {@code FACTOR_TAIL(parentNode)} calls).</li>
+ *     <li>A {@link #peek} terminal is checked but not consumed or added to the tree (the
+ *     end-of-input check in {@code PROGRAM}).</li>
+ * </ul>
+ * Symbols are encoded as ints: terminals are {@link Token} ordinals, non-terminals follow
+ * them, then {@link #EMPTY}; the flags live above {@link #SYMBOL_MASK}.
+ */
+final class Grammar {
+
+    static final int TERMINAL_COUNT = Token.values().length;
+    static final int NON_TERMINAL_COUNT = NonTerminal.values().length;
+
+    // An epsilon production, shown in the tree as an "EMPTY" node.
+    static final int EMPTY = TERMINAL_COUNT + NON_TERMINAL_COUNT;
+
+    static final int SYMBOL_MASK = 0xFFFF;
+    static final int SIBLING = 1 << 16;
+    static final int PEEK = 1 << 17;
+
+    private static final NonTerminal[] NON_TERMINALS = NonTerminal.values();
+
+    /**
+     * The language accepted by {@link Parser}.
+     */
+    static final Grammar LANGUAGE = new Grammar(PROGRAM)
+            // <PROGRAM> ::= <STMT_LIST> $$
+            .rule(PROGRAM, symbol(STMT_LIST), peek(Token.$$))
+            // <STMT_LIST> ::= <STMT> <STMT_LIST> | <EMPTY>
+            .rule(STMT_LIST, symbol(STMT), symbol(STMT_LIST_TAIL))
+            .rule(STMT_LIST_TAIL, sibling(STMT_LIST))
+            .rule(STMT_LIST_TAIL, EMPTY)
+            // <STMT> ::= <ID> := <EXPR> | read <ID> | write <EXPR> | <WHILE_STMT> | <DO_STMT> | <IF_STMT>
+            .rule(STMT, symbol(Token.UNKNOWN), symbol(Token.ASSIGNMENT), symbol(EXPR))
+            .rule(STMT, symbol(Token.READ), symbol(Token.UNKNOWN))
+            .rule(STMT, symbol(Token.WRITE), symbol(EXPR))
+            .rule(STMT, symbol(WHILE_STMT))
+            .rule(STMT, symbol(IF_STMT))
+            .rule(STMT, symbol(DO_STMT))
+            .rule(STMT)
+            // <EXPR> ::= <TERM> <TERM_TAIL>
+            .rule(EXPR, symbol(TERM), symbol(TERM_TAIL))
+            // <TERM_TAIL> ::= <ADD_OP> <TERM> <TERM_TAIL> | <EMPTY>
+            .rule(TERM_TAIL, symbol(Token.ADD_OP), symbol(TERM), symbol(TERM_TAIL))
+            .rule(TERM_TAIL, EMPTY)
+            // <TERM> ::= <FACTOR> <FACTOR_TAIL>
+            .rule(TERM, symbol(FACTOR), symbol(FACTOR_TAIL))
+            // <FACTOR_TAIL> ::= <MULT_OP> <FACTOR> <FACTOR_TAIL> | <EMPTY>
+            .rule(FACTOR_TAIL, symbol(Token.MULT_OP), symbol(FACTOR), sibling(FACTOR_TAIL))
+            .rule(FACTOR_TAIL, EMPTY)
+            // <FACTOR> ::= ( <EXPR> ) | <ID> | <NUMBER>
+            .rule(FACTOR, symbol(Token.LEFTP), symbol(EXPR), symbol(Token.RIGHTP))
+            .rule(FACTOR, symbol(Token.UNKNOWN))
+            .rule(FACTOR, symbol(Token.NUMBER))
+            // <CONDITION> ::= <EXPR> <RELATION> <EXPR>
+            .rule(CONDITION, symbol(EXPR), symbol(Token.RELATION), symbol(EXPR))
+            // <WHILE_STATEMENT> ::= <WHILE> <CONDITION> <DO> <STMT_LIST> <OD>
+            .rule(WHILE_STMT, symbol(Token.WHILE), symbol(CONDITION), symbol(Token.DO), symbol(STMT_LIST),
+                    symbol(Token.OD))
+            // <DO_STATEMENT> ::= <DO> <STMT_LIST> <UNTIL> <CONDITION>
+            .rule(DO_STMT, symbol(Token.DO), symbol(STMT_LIST), symbol(Token.UNTIL), symbol(CONDITION))
+            // <IF_STMT> ::= <IF> <CONDITION> <THEN> <STMT_LIST> <IF_TAIL>
+            .rule(IF_STMT, symbol(Token.IF), symbol(CONDITION), symbol(Token.THEN), symbol(STMT_LIST),
+                    symbol(IF_TAIL))
+            // <IF_TAIL> ::= <ELSE> <STMT_LIST> <FI> | <FI>
+            .rule(IF_TAIL, symbol(Token.ELSE), symbol(STMT_LIST), symbol(Token.FI))
+            .rule(IF_TAIL, symbol(Token.FI));
+
+    /**
+     * A single alternative of a rule.
+     *
+     * @param head the rule's non-terminal
+     * @param body the encoded symbols, left to right (empty for a silent epsilon)
+     */
+    record Production(NonTerminal head, int[] body) {
+    }
+
+    private final NonTerminal start;
+    private final Map<NonTerminal, List<Production>> rules = new EnumMap<>(NonTerminal.class);
+
+    private Grammar(final NonTerminal start) {
+        this.start = start;
+    }
+
+    // Add an alternative to a rule (in order; the last one added is the fallback).
+    private Grammar rule(final NonTerminal head, final int... body) {
+        rules.computeIfAbsent(head, x -> new ArrayList<>()).add(new Production(head, body));
+        return this;
+    }
+
+    NonTerminal getStart() {
+        return start;
+    }
+
+    /**
+     * @param head a non-terminal
+     * @return the alternatives of its rule, in order (empty if it has no rule)
+     */
+    List<Production> alternatives(final NonTerminal head) {
+        return Collections.unmodifiableList(rules.getOrDefault(head, List.of()));
+    }
+
+    static int symbol(final Token token) {
+        return token.ordinal();
+    }
+
+    static int symbol(final NonTerminal nonTerminal) {
+        return TERMINAL_COUNT + nonTerminal.ordinal();
+    }
+
+    static int sibling(final NonTerminal nonTerminal) {
+        return symbol(nonTerminal) | SIBLING;
+    }
+
+    static int peek(final Token token) {
+        return symbol(token) | PEEK;
+    }
+
+    static boolean isTerminal(final int code) {
+        return (code & SYMBOL_MASK) < TERMINAL_COUNT;
+    }
+
+    static boolean isNonTerminal(final int code) {
+        final int symbol = code & SYMBOL_MASK;
+        return symbol >= TERMINAL_COUNT && symbol < EMPTY;
+    }
+
+    static Token token(final int code) {
+        return Token.fromOrdinal(code & SYMBOL_MASK);
+    }
+
+    static NonTerminal nonTerminal(final int code) {
+        return NON_TERMINALS[(code & SYMBOL_MASK) - TERMINAL_COUNT];
+    }
+}
@@ -0,0 +1,293 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FIRST and FOLLOW sets of a {@link Grammar}, computed once, plus its LL(1) conflicts.
+ * <p>
+ * The sets are stored as bitmasks over the {@link Token} ordinals, so "can this token start a
+ * &lt;STMT&gt;?" is one shift and one AND. {@link EnumSet} copies are available for anything
+ * that wants to look at them.
+ * <p>
+ * Conflicts come in two kinds:
+ * <ul>
+ *     <li>FIRST/FIRST: two alternatives start with the same token. The table can't tell them
+ *     apart; these are reported as warnings.</li>
+ *     <li>FIRST/FOLLOW (and FOLLOW/FOLLOW): an alternative that derives epsilon competes with
+ *     another alternative on a token that may follow the rule. The parsers resolve these
+ *     greedily (an alternative is taken on its FIRST set, the rule's fallback on anything
+ *     else, like the recursive parser's "if" before its "else"), so they are only reported
+ *     at {@link Level#FINE}.</li>
+ * </ul>
+ */
+final class GrammarAnalysis {
+
+    /**
+     * The analysis of the language accepted by {@link Parser}; conflicts are logged when it's built.
+     */
+    static final GrammarAnalysis LANGUAGE = new GrammarAnalysis(Grammar.LANGUAGE).report();
+
+    private final Grammar grammar;
+    private final long[] first = new long[Grammar.NON_TERMINAL_COUNT];
+    private final long[] follow = new long[Grammar.NON_TERMINAL_COUNT];
+    private final boolean[] nullable = new boolean[Grammar.NON_TERMINAL_COUNT];
+
+    private final List<String> conflicts = new ArrayList<>();
+    private final List<String> resolvedConflicts = new ArrayList<>();
+
+    GrammarAnalysis(final Grammar grammar) {
+        if (Grammar.TERMINAL_COUNT > Long.SIZE) {
+            throw new IllegalStateException("Too many tokens for a 64 bit token set.");
+        }
+
+        this.grammar = grammar;
+        this.computeFirstSets();
+        this.computeFollowSets();
+        this.findConflicts();
+    }
+
+    Grammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * @return true if the token can start the non-terminal.
+     */
+    boolean inFirst(final NonTerminal symbol, final Token token) {
+        return (first[symbol.ordinal()] & bit(token)) != 0;
+    }
+
+    /**
+     * @return true if the token can come right after the non-terminal.
+     */
+    boolean inFollow(final NonTerminal symbol, final Token token) {
+        return (follow[symbol.ordinal()] & bit(token)) != 0;
+    }
+
+    boolean isNullable(final NonTerminal symbol) {
+        return nullable[symbol.ordinal()];
+    }
+
+    EnumSet<Token> first(final NonTerminal symbol) {
+        return toSet(first[symbol.ordinal()]);
+    }
+
+    EnumSet<Token> follow(final NonTerminal symbol) {
+        return toSet(follow[symbol.ordinal()]);
+    }
+
+    /**
+     * FIRST of a sequence of symbols (e.g. the body of a production), as a token bitmask.
+     *
+     * @param body the encoded symbols
+     * @return the tokens that can start it
+     */
+    long firstOf(final int[] body) {
+        return this.firstOf(body, 0);
+    }
+
+    /**
+     * @param body the encoded symbols
+     * @return true if the sequence can derive epsilon
+     */
+    boolean isNullable(final int[] body) {
+        return this.isNullable(body, 0);
+    }
+
+    /**
+     * @return the FIRST/FIRST conflicts (empty for an LL(1) grammar)
+     */
+    List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return the FIRST/FOLLOW conflicts, which the parsers resolve greedily
+     */
+    List<String> getResolvedConflicts() {
+        return Collections.unmodifiableList(resolvedConflicts);
+    }
+
+    static long bit(final Token token) {
+        return 1L << token.ordinal();
+    }
+
+    static EnumSet<Token> toSet(final long tokens) {
+        final EnumSet<Token> set = EnumSet.noneOf(Token.class);
+        for (final Token token : Token.values()) {
+            if ((tokens & bit(token)) != 0) {
+                set.add(token);
+            }
+        }
+        return set;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // FIRST(X) and nullable(X) for every non-terminal, iterated to a fixed point.
+    private void computeFirstSets() {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            for (final NonTerminal head : NonTerminal.values()) {
+                final int index = head.ordinal();
+                for (final Grammar.Production production : grammar.alternatives(head)) {
+                    final long tokens = first[index] | this.firstOf(production.body(), 0);
+                    if (tokens != first[index]) {
+                        first[index] = tokens;
+                        changed = true;
+                    }
+                    if (!nullable[index] && this.isNullable(production.body(), 0)) {
+                        nullable[index] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // FOLLOW(X) for every non-terminal, iterated to a fixed point. The start symbol is
+    // followed by the end of input.
+    private void computeFollowSets() {
+        follow[grammar.getStart().ordinal()] |= bit(Token.$$);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final NonTerminal head : NonTerminal.values()) {
+                for (final Grammar.Production production : grammar.alternatives(head)) {
+                    final int[] body = production.body();
+
+                    for (int i = 0; i < body.length; i++) {
+                        if (!Grammar.isNonTerminal(body[i])) {
+                            continue;
+                        }
+
+                        final int index = Grammar.nonTerminal(body[i]).ordinal();
+                        long tokens = follow[index] | this.firstOf(body, i + 1);
+                        if (this.isNullable(body, i + 1)) {
+                            tokens |= follow[head.ordinal()];
+                        }
+                        if (tokens != follow[index]) {
+                            follow[index] = tokens;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void findConflicts() {
+        for (final NonTerminal head : NonTerminal.values()) {
+            final List<Grammar.Production> alternatives = grammar.alternatives(head);
+
+            for (int i = 0; i < alternatives.size(); i++) {
+                final int[] body = alternatives.get(i).body();
+
+                for (int j = i + 1; j < alternatives.size(); j++) {
+                    final long overlap = this.firstOf(body) & this.firstOf(alternatives.get(j).body());
+                    if (overlap != 0) {
+                        conflicts.add("FIRST/FIRST conflict in %s on %s between [%s] and [%s]".formatted(
+                                head.getLabel(), toSet(overlap), describe(body),
+                                describe(alternatives.get(j).body())));
+                    }
+                }
+
+                if (!this.isNullable(body)) {
+                    continue;
+                }
+                for (int j = i + 1; j < alternatives.size(); j++) {
+                    if (this.isNullable(alternatives.get(j).body())) {
+                        resolvedConflicts.add("FOLLOW/FOLLOW conflict in %s: [%s] and [%s] both derive epsilon, [%s] is taken on %s".formatted(
+                                head.getLabel(), describe(body), describe(alternatives.get(j).body()),
+                                describe(alternatives.get(alternatives.size() - 1).body()),
+                                toSet(follow[head.ordinal()])));
+                    }
+                }
+                for (int j = 0; j < alternatives.size(); j++) {
+                    final long overlap = j == i
+                            ? 0
+                            : this.firstOf(alternatives.get(j).body()) & follow[head.ordinal()];
+                    if (overlap != 0) {
+                        resolvedConflicts.add("FIRST/FOLLOW conflict in %s on %s: [%s] is taken over [%s]".formatted(
+                                head.getLabel(), toSet(overlap), describe(alternatives.get(j).body()),
+                                describe(body)));
+                    }
+                }
+            }
+        }
+    }
+
+    private GrammarAnalysis report() {
+        final Logger logger = Logger.getLogger(GrammarAnalysis.class.getName());
+
+        for (final String conflict : conflicts) {
+            logger.warning(conflict);
+        }
+        for (final String conflict : resolvedConflicts) {
+            logger.fine(conflict);
+        }
+        return this;
+    }
+
+    // FIRST of body[from...]: stops at the first symbol that can't derive epsilon.
+    private long firstOf(final int[] body, final int from) {
+        long tokens = 0;
+
+        for (int i = from; i < body.length; i++) {
+            final int code = body[i];
+            if (code == Grammar.EMPTY) {
+                continue;
+            }
+            if (Grammar.isTerminal(code)) {
+                return tokens | bit(Grammar.token(code));
+            }
+
+            final int index = Grammar.nonTerminal(code).ordinal();
+            tokens |= first[index];
+            if (!nullable[index]) {
+                return tokens;
+            }
+        }
+        return tokens;
+    }
+
+    private boolean isNullable(final int[] body, final int from) {
+        for (int i = from; i < body.length; i++) {
+            final int code = body[i];
+            if (code == Grammar.EMPTY) {
+                continue;
+            }
+            if (Grammar.isTerminal(code) || !nullable[Grammar.nonTerminal(code).ordinal()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(final int[] body) {
+        final var text = new StringBuilder();
+
+        for (final int code : body) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            if (code == Grammar.EMPTY) {
+                text.append("<EMPTY>");
+            } else if (Grammar.isTerminal(code)) {
+                text.append(Grammar.token(code).name());
+            } else {
+                text.append(Grammar.nonTerminal(code).getLabel());
+            }
+        }
+        return text.isEmpty() ? "epsilon" : text.toString();
+    }
+}
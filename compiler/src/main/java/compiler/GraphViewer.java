@@ -0,0 +1,86 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Code to invoke the online graph viewer.
+ */
+class GraphViewer {
+
+    /**
+     * To open a browser window...
+     * <p>
+     * FEEL FREE TO IGNORE THIS!!! It's just for opening the default browser, if
+     * desired.
+     */
+    static void openWebGraphViz(final String graph) {
+        /*
+         * Online/Web versions of Graphviz
+         * http://www.webgraphviz.com
+         * http://viz-js.com
+         * https://dreampuf.github.io/GraphvizOnline
+         */
+        final var WEBGRAPHVIZ_HOME = "https://dreampuf.github.io/GraphvizOnline/";
+
+        final var MSG = ("To visualize the output you may Copy/Paste the parser output into:%n" +
+                "%s%n" +
+                "(or any other online graphviz tool)").formatted(WEBGRAPHVIZ_HOME);
+
+        // For some reason, the URL encoder always uses "+" instead of "%20" for
+        // spaces...which are not always accepted.
+        String encodedURL = URLEncoder.encode(graph, StandardCharsets.UTF_8).replace("+", "%20");
+
+        // URI Length limit reached.
+        if (WEBGRAPHVIZ_HOME.length() + encodedURL.length() >= 32_000) {
+            System.err.println("Can't use remote graphviz; the output is too long for a \"GET\" Request");
+            System.err.println("But you can still manually Copy/Paste instead.");
+
+            return;
+        }
+
+        // Can we open a browser?
+        if (Desktop.isDesktopSupported()) {
+            // Try to set the default skin
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+                    | UnsupportedLookAndFeelException e) {
+                // Ignore the error, but notify.
+                System.out.println("Using Default Skin");
+            }
+
+            // Open the default browser with the url:
+            try {
+                final URL webGraphvizURI = new URL(WEBGRAPHVIZ_HOME + "#" + encodedURL);
+                final Desktop desktop = Desktop.getDesktop();
+
+                // Can we launch a browser?
+                if (desktop.isSupported(Desktop.Action.BROWSE)) {
+                    final var response = JOptionPane.showConfirmDialog(
+                            null,
+                            String.format("%s%n%nOpen %s?", MSG, WEBGRAPHVIZ_HOME),
+                            "Open Web Graphviz Page",
+                            JOptionPane.YES_NO_OPTION);
+
+                    // Open Browser?
+                    if (response == JOptionPane.YES_OPTION) {
+                        desktop.browse(webGraphvizURI.toURI());
+                    } else {
+                        System.out.println(MSG);
+                    }
+                }
+            } catch (IOException | URISyntaxException ex) {
+                java.util.logging.Logger.getAnonymousLogger()
+                        .log(java.util.logging.Level.WARNING, "Could not open browser (URL \"GET\" May be too long!!!)",
+                                ex);
+            }
+        }
+    }
+}
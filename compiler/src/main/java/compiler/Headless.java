@@ -0,0 +1,50 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Locale;
+
+/**
+ * Whether there's a desktop to show the {@link GraphViewer} on, decided without loading a
+ * single AWT or Swing class.
+ * <p>
+ * The command line compiler only ever touches {@link GraphViewer} (and through it the
+ * desktop classes) when the Graphviz prompt is actually shown, so a headless run starts as fast
+ * as it can and suits a class data sharing archive, e.g.
+ * <pre>
+ *     java -XX:ArchiveClassesAtExit=compiler.jsa -jar compiler.jar --headless -q program.txt
+ *     java -XX:SharedArchiveFile=compiler.jsa -jar compiler.jar --headless -q program.txt
+ * </pre>
+ * For a native image (the {@code native} profile), {@code -Dcompiler.headless=true} is set at
+ * build time and this class is initialized then, so {@link #IMAGE} is a constant and the GUI
+ * is left out of the image altogether.
+ */
+final class Headless {
+
+    /**
+     * True when the compiler was built without its GUI (see native-image.properties).
+     */
+    static final boolean IMAGE = Boolean.getBoolean("compiler.headless");
+
+    private Headless() {
+    }
+
+    /**
+     * @return true if nothing should be shown on a desktop: a headless build, an explicit
+     * {@code -Djava.awt.headless=true}, or a Unix box with no X11/Wayland display (e.g. CI).
+     */
+    static boolean isHeadless() {
+        if (IMAGE || Boolean.getBoolean("java.awt.headless")) {
+            return true;
+        }
+
+        final String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.startsWith("windows") || os.startsWith("mac")) {
+            return false;
+        }
+        return isUnset(System.getenv("DISPLAY")) && isUnset(System.getenv("WAYLAND_DISPLAY"));
+    }
+
+    private static boolean isUnset(final String value) {
+        return value == null || value.isBlank();
+    }
+}
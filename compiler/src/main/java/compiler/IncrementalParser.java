@@ -0,0 +1,564 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a program's tokens, {@link ParseTree} and generated code between edits, and redoes
+ * only the part an edit touched.
+ * <p>
+ * An edit goes through three steps:
+ * <ol>
+ *     <li>Only the lines the edit touched are scanned again (no token or comment ever spans a
+ *     line break, so a line start is always a safe place to start scanning) and the new
+ *     tokens are spliced into the {@link TokenBuffer}.</li>
+ *     <li>Only the statements around the tokens whose kinds changed are parsed again, by the
+ *     {@link TableDrivenParser}: starting with the innermost statement list
+ *     ({@code PROGRAM}, {@code WHILE_STMT}, {@code DO_STMT}, {@code IF_STMT} or the
+ *     {@code else} part) that contains the change, statements are parsed from the one before
+ *     the change until the parser is back in step with the old tree, i.e. it stops right where
+ *     an unchanged old statement starts (or where the list ends). The new statements replace
+ *     the old ones in the tree; everything else stays as it was. If that doesn't work out (the
+ *     edit changed the structure, or has a syntax error) the next enclosing list is tried, and
+ *     finally the whole program is parsed again, which also reports the syntax error.</li>
+ *     <li>The code of each top level statement is kept, so only the statements that changed
+ *     are generated again; the rest of the output is copied.</li>
+ * </ol>
+ * An edit that only changes names or numbers (not token kinds) is never parsed at all.
+ * <p>
+ * The tree stores how many tokens each subtree holds instead of absolute token positions, so
+ * inserting or deleting tokens only updates the ancestors of the change. Node ids are
+ * arena indexes and never change: an edited program's output numbers its nodes differently
+ * from a fresh compile, but each unchanged node keeps its id from one version to the next.
+ */
+final class IncrementalParser {
+
+    /**
+     * What an edit cost.
+     *
+     * @param relexedTokens the tokens scanned again
+     * @param reparsedNodes the parse tree nodes built again
+     * @param fullReparse   true if the whole program had to be parsed again
+     */
+    record Edit(int relexedTokens, int reparsedNodes, boolean fullReparse) {
+    }
+
+    private static final GrammarAnalysis GRAMMAR = GrammarAnalysis.LANGUAGE;
+
+    private static final String ROOT_NAME = "PARSE TREE";
+
+    private static final int STMT_LIST = Grammar.symbol(NonTerminal.STMT_LIST);
+    private static final int IF_TAIL = Grammar.symbol(NonTerminal.IF_TAIL);
+
+    // Garbage left in the arena by edits before it's worth starting over.
+    private static final int MIN_GARBAGE = 4096;
+
+    // Compared from the end in blocks, to find the end of an edit quickly.
+    private static final int SUFFIX_BLOCK = 4096;
+
+    private byte[] source;
+    private TokenBuffer tokens;
+    private ParseTree tree;
+
+    // The syntax errors of the last full parse: after one with errors, the next edit is parsed in full too.
+    private Diagnostics diagnostics;
+
+    // Per node: how many tokens (LEXEME nodes) its subtree holds.
+    private int[] lexemes;
+
+    // Per top level STMT_LIST node: its generated code, once it has been generated.
+    private String[] generated;
+
+    // Nodes still in the tree (the rest of the arena is garbage).
+    private int liveNodes;
+
+    /**
+     * Parse a program.
+     *
+     * @param source the UTF-8 encoded program
+     */
+    IncrementalParser(final byte[] source) {
+        this.source = source;
+        this.reparseAll();
+    }
+
+    /**
+     * @return the current parse tree (its LEXEME nodes' token indexes are only right until the first edit)
+     */
+    ParseTree getTree() {
+        return tree;
+    }
+
+    TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    boolean hasSyntaxError() {
+        return tree.getSyntaxError() != null;
+    }
+
+    /**
+     * @return the syntax errors (none unless {@link #hasSyntaxError()})
+     */
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Bring the tree up to date with a new version of the program.
+     *
+     * @param newSource the whole edited program
+     * @return what the edit cost
+     */
+    Edit update(final byte[] newSource) {
+        final int prefix = Arrays.mismatch(source, newSource);
+        if (prefix < 0) {
+            return new Edit(0, 0, false);
+        }
+
+        final int suffix = commonSuffix(source, newSource, prefix);
+        return this.apply(newSource, prefix, source.length - suffix, newSource.length - suffix);
+    }
+
+    /**
+     * Write the generated code for the current version of the program.
+     *
+     * @param codeGenerator where to write it
+     */
+    void emit(final CodeGenerator codeGenerator) {
+        if (this.hasSyntaxError()) {
+            // Only a freshly parsed tree has an error, and its nodes are in output order.
+            DotEmitter.emit(tree, codeGenerator);
+            return;
+        }
+
+        codeGenerator.writeHeader(tree.name(0), 0);
+        final int program = tree.firstChild(0);
+        DotEmitter.emitEdge(tree, program, tree.name(program), codeGenerator);
+
+        int token = 0;
+        for (int unit = tree.firstChild(program); unit != ParseTree.NONE; unit = tree.nextSibling(unit)) {
+            if (generated[unit] == null) {
+                generated[unit] = this.generate(unit, token);
+            }
+            codeGenerator.writeGenerated(generated[unit]);
+            token += lexemes[unit];
+        }
+
+        codeGenerator.writeFooter();
+        codeGenerator.flush();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Source bytes [offset...oldEnd) became newSource[offset...newEnd).
+    private Edit apply(final byte[] newSource, final int offset, final int oldEnd, final int newEnd) {
+        if (this.hasSyntaxError()) {
+            this.source = newSource;
+            this.reparseAll();
+            return new Edit(tokens.size(), tree.size(), true);
+        }
+
+        // Scan the touched lines again.
+        final int lineStart = lineStart(newSource, offset);
+        final int oldLineEnd = lineEnd(source, oldEnd);
+        final int shift = newEnd - oldEnd;
+        final int from = tokens.firstStartingAt(lineStart);
+        final int to = tokens.firstStartingAt(oldLineEnd);
+        final TokenBuffer replacement = new LexicalAnalyzer(newSource, lineStart, oldLineEnd + shift).getTokens();
+
+        // Only the tokens whose kinds changed need parsing again.
+        int same = 0;
+        while (from + same < to && same < replacement.size() && tokens.token(from + same) == replacement.token(same)) {
+            same++;
+        }
+        int sameAtEnd = 0;
+        while (to - sameAtEnd > from + same && replacement.size() - sameAtEnd > same
+                && tokens.token(to - sameAtEnd - 1) == replacement.token(replacement.size() - sameAtEnd - 1)) {
+            sameAtEnd++;
+        }
+        final int damageStart = from + same;
+        final int damageEnd = to - sameAtEnd;
+        final int delta = replacement.size() - (to - from);
+
+        // The code of the statements holding these tokens will have to be generated again.
+        this.forget(from, to);
+
+        tokens.splice(from, to, replacement, newSource, shift);
+        this.source = newSource;
+
+        if (damageStart == damageEnd && delta == 0) {
+            return new Edit(replacement.size(), 0, false);
+        }
+
+        final int reparsed = this.reparse(damageStart, damageEnd, delta);
+        if (reparsed < 0) {
+            this.reparseAll();
+            return new Edit(replacement.size(), tree.size(), true);
+        }
+        if (tree.size() - liveNodes > Math.max(MIN_GARBAGE, liveNodes)) {
+            // Mostly garbage: start over with a compact tree.
+            this.reparseAll();
+        }
+        return new Edit(replacement.size(), reparsed, false);
+    }
+
+    /**
+     * Parse again the statements around old tokens {@code [damageStart...damageEnd)}, which
+     * were replaced by {@code (damageEnd - damageStart) + delta} new tokens.
+     *
+     * @return the number of nodes built, or -1 if the whole program must be parsed again
+     */
+    private int reparse(final int damageStart, final int damageEnd, final int delta) {
+        // The statement lists that contain the damage, outermost first.
+        int[] owners = new int[8];
+        int[] bases = new int[8];
+        int depth = 0;
+
+        int owner = tree.firstChild(0);
+        int base = 0;
+        while (owner != ParseTree.NONE) {
+            if (depth == owners.length) {
+                owners = Arrays.copyOf(owners, depth * 2);
+                bases = Arrays.copyOf(bases, depth * 2);
+            }
+            owners[depth] = owner;
+            bases[depth] = base;
+            depth++;
+
+            // Go down into a loop or if that holds the whole damage.
+            final int list = this.childListAt(owner, base, damageStart, damageEnd);
+            if (list == ParseTree.NONE) {
+                break;
+            }
+            final int listStart = bases[depth - 1] + this.tokensBefore(owner, list);
+            final int compound = tree.firstChild(tree.firstChild(list));
+
+            owner = ParseTree.NONE;
+            if (compound != ParseTree.NONE && tree.isNonTerminal(compound)) {
+                int position = listStart;
+                for (int child = compound; child != ParseTree.NONE; ) {
+                    if (this.listContains(child, position, damageStart, damageEnd)) {
+                        owner = child;
+                        base = position;
+                        break;
+                    }
+                    // The "else" part of an if.
+                    int next = ParseTree.NONE;
+                    position = listStart;
+                    for (int c = tree.firstChild(compound); c != ParseTree.NONE; c = tree.nextSibling(c)) {
+                        if (c != child && tree.symbol(c) == IF_TAIL) {
+                            next = c;
+                            break;
+                        }
+                        position += lexemes[c];
+                    }
+                    child = next;
+                }
+            }
+        }
+
+        // Innermost first.
+        for (int i = depth - 1; i >= 0; i--) {
+            final int built = this.reparseList(owners[i], bases[i], damageStart, damageEnd, delta);
+            if (built >= 0) {
+                return built;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse the statements of one list again, from the one before the damage until the parser
+     * is back in step with the old tree, and swap them in.
+     *
+     * @return the number of nodes built, or -1 if the new statements don't fit in this list
+     */
+    private int reparseList(final int owner, final int base, final int damageStart, final int damageEnd,
+                            final int delta) {
+        // The list's statements: node, the child before it, and its old token span.
+        int count = 0;
+        int[] nodes = new int[16];
+        int[] before = new int[16];
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+
+        int position = base;
+        int previous = ParseTree.NONE;
+        for (int child = tree.firstChild(owner); child != ParseTree.NONE; child = tree.nextSibling(child)) {
+            if (tree.symbol(child) == STMT_LIST) {
+                if (count == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, count * 2);
+                    before = Arrays.copyOf(before, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                nodes[count] = child;
+                before[count] = previous;
+                starts[count] = position;
+                ends[count] = position + lexemes[child];
+                count++;
+            }
+            position += lexemes[child];
+            previous = child;
+        }
+
+        // The first statement the damage can affect: its last decision looked at the token after it.
+        int first = 0;
+        while (first < count && ends[first] < damageStart) {
+            first++;
+        }
+        if (first == count) {
+            return -1;
+        }
+
+        final var lexer = new LexicalAnalyzer(tokens);
+        lexer.seek(starts[first]);
+        final var builder = new ParseTreeBuilder(lexer);
+        final TreeNode root = builder.writeHeader(ROOT_NAME);
+        final var parser = new TableDrivenParser(lexer, builder);
+        final int listEnd = ends[count - 1] + delta;
+
+        int last;
+        int next = first + 1;
+        try {
+            while (true) {
+                final TreeNode listNode = builder.addNonTerminalToTree(root, NonTerminal.STMT_LIST);
+                parser.parse(NonTerminal.STMT, listNode);
+                final int reached = lexer.getPosition();
+
+                if (reached > listEnd) {
+                    return -1;
+                }
+                if (!GRAMMAR.inFirst(NonTerminal.STMT, lexer.currentToken())) {
+                    // The list ends here; it has to end where it used to.
+                    builder.addEmptyToTree(listNode);
+                    if (reached != listEnd) {
+                        return -1;
+                    }
+                    last = count - 1;
+                    break;
+                }
+
+                // Back in step: an unchanged old statement starts here.
+                while (next < count && starts[next] + delta < reached) {
+                    next++;
+                }
+                if (next < count && starts[next] >= damageEnd && starts[next] + delta == reached) {
+                    last = next - 1;
+                    break;
+                }
+            }
+        } catch (ParseException ex) {
+            return -1;
+        }
+
+        // Swap the new statements in.
+        int removed = 0;
+        for (int i = first; i <= last; i++) {
+            removed += this.subtreeSize(nodes[i]);
+        }
+        tree.unlink(owner, before[first], nodes[last]);
+
+        final int firstNew = tree.size();
+        tree.graft(builder.getTree(), owner, before[first]);
+        this.countLexemes(firstNew);
+        for (int node = owner; node != ParseTree.NONE; node = tree.parent(node)) {
+            lexemes[node] += delta;
+        }
+
+        final int built = tree.size() - firstNew;
+        liveNodes += built - removed;
+        this.forgetUnitOf(owner);
+        return built;
+    }
+
+    // The STMT_LIST child of owner that holds tokens [damageStart...damageEnd), or NONE.
+    private int childListAt(final int owner, final int base, final int damageStart, final int damageEnd) {
+        int position = base;
+        for (int child = tree.firstChild(owner); child != ParseTree.NONE; child = tree.nextSibling(child)) {
+            final int end = position + lexemes[child];
+            if (tree.symbol(child) == STMT_LIST && position <= damageStart && damageStart < end && damageEnd <= end) {
+                return child;
+            }
+            position = end;
+        }
+        return ParseTree.NONE;
+    }
+
+    // True if owner's statement list covers tokens [damageStart...damageEnd).
+    private boolean listContains(final int owner, final int base, final int damageStart, final int damageEnd) {
+        int position = base;
+        int listStart = -1;
+        int listEnd = -1;
+        for (int child = tree.firstChild(owner); child != ParseTree.NONE; child = tree.nextSibling(child)) {
+            if (tree.symbol(child) == STMT_LIST) {
+                if (listStart < 0) {
+                    listStart = position;
+                }
+                listEnd = position + lexemes[child];
+            }
+            position += lexemes[child];
+        }
+        return listStart >= 0 && listStart <= damageStart && damageEnd <= listEnd;
+    }
+
+    // Tokens in the children of parent before child.
+    private int tokensBefore(final int parent, final int child) {
+        int count = 0;
+        for (int c = tree.firstChild(parent); c != child; c = tree.nextSibling(c)) {
+            count += lexemes[c];
+        }
+        return count;
+    }
+
+    private int subtreeSize(final int root) {
+        int count = 0;
+        int node = root;
+        while (true) {
+            count++;
+            if (tree.firstChild(node) != ParseTree.NONE) {
+                node = tree.firstChild(node);
+                continue;
+            }
+            while (node != root && tree.nextSibling(node) == ParseTree.NONE) {
+                node = tree.parent(node);
+            }
+            if (node == root) {
+                return count;
+            }
+            node = tree.nextSibling(node);
+        }
+    }
+
+    // Lexeme counts for nodes [firstNode...size); children always come after their parents.
+    private void countLexemes(final int firstNode) {
+        final int size = tree.size();
+        if (size > lexemes.length) {
+            final int capacity = size + (size >> 1);
+            lexemes = Arrays.copyOf(lexemes, capacity);
+            generated = Arrays.copyOf(generated, capacity);
+        }
+
+        for (int node = firstNode; node < size; node++) {
+            lexemes[node] = tree.isLexeme(node) ? 1 : 0;
+            generated[node] = null;
+        }
+        for (int node = size - 1; node > firstNode; node--) {
+            final int parent = tree.parent(node);
+            if (parent >= firstNode) {
+                lexemes[parent] += lexemes[node];
+            }
+        }
+    }
+
+    // Drop the generated code of the top level statements holding old tokens [from...to).
+    private void forget(final int from, final int to) {
+        final int program = tree.firstChild(0);
+        int position = 0;
+        for (int unit = tree.firstChild(program); unit != ParseTree.NONE && position < to; unit = tree.nextSibling(unit)) {
+            final int end = position + lexemes[unit];
+            if (from < end) {
+                generated[unit] = null;
+            }
+            position = end;
+        }
+    }
+
+    // Drop the generated code of the top level statement that holds node.
+    private void forgetUnitOf(final int node) {
+        final int program = tree.firstChild(0);
+        int unit = node;
+        while (unit != ParseTree.NONE && tree.parent(unit) != program) {
+            unit = tree.parent(unit);
+        }
+        if (unit != ParseTree.NONE) {
+            generated[unit] = null;
+        }
+    }
+
+    // The code of one top level statement, whose first token is firstToken.
+    private String generate(final int unit, final int firstToken) {
+        final var codeGenerator = new CodeGenerator(CodeSink.inMemory());
+        int token = firstToken;
+
+        int node = unit;
+        while (true) {
+            final String name = tree.isLexeme(node) ? tokens.lexeme(token++) : tree.name(node);
+            DotEmitter.emitEdge(tree, node, name, codeGenerator);
+
+            if (tree.firstChild(node) != ParseTree.NONE) {
+                node = tree.firstChild(node);
+                continue;
+            }
+            while (node != unit && tree.nextSibling(node) == ParseTree.NONE) {
+                node = tree.parent(node);
+            }
+            if (node == unit) {
+                return codeGenerator.getGeneratedCodeBuffer();
+            }
+            node = tree.nextSibling(node);
+        }
+    }
+
+    private void reparseAll() {
+        final var lexer = new LexicalAnalyzer(source);
+        final var builder = new ParseTreeBuilder(lexer);
+        final var parser = new TableDrivenParser(lexer, builder);
+        parser.analyze();
+
+        this.diagnostics = parser.getDiagnostics();
+        this.tokens = lexer.getTokens();
+        this.tree = builder.getTree();
+        this.lexemes = new int[tree.size()];
+        this.generated = new String[tree.size()];
+        this.liveNodes = tree.size();
+        for (int node = tree.size() - 1; node >= 0; node--) {
+            if (tree.isLexeme(node)) {
+                lexemes[node]++;
+            }
+            if (node > 0) {
+                lexemes[tree.parent(node)] += lexemes[node];
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static boolean isLineBreak(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    // The start of the line holding offset.
+    private static int lineStart(final byte[] source, int offset) {
+        while (offset > 0 && !isLineBreak(source[offset - 1])) {
+            offset--;
+        }
+        return offset;
+    }
+
+    // The line break ending the line holding offset (or the end of the source).
+    private static int lineEnd(final byte[] source, int offset) {
+        while (offset < source.length && !isLineBreak(source[offset])) {
+            offset++;
+        }
+        return offset;
+    }
+
+    // The length of the longest common suffix that doesn't reach into the first "prefix" bytes.
+    private static int commonSuffix(final byte[] a, final byte[] b, final int prefix) {
+        final int limit = Math.min(a.length, b.length) - prefix;
+        int suffix = 0;
+
+        // Whole blocks first (vectorized), then byte by byte.
+        while (suffix + SUFFIX_BLOCK <= limit
+                && Arrays.equals(a, a.length - suffix - SUFFIX_BLOCK, a.length - suffix,
+                b, b.length - suffix - SUFFIX_BLOCK, b.length - suffix)) {
+            suffix += SUFFIX_BLOCK;
+        }
+        while (suffix < limit && a[a.length - suffix - 1] == b[b.length - suffix - 1]) {
+            suffix++;
+        }
+        return suffix;
+    }
+}
@@ -0,0 +1,105 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * Passes a parser's nodes on to another listener, counting them by grammar symbol into
+ * {@link CompilationStats}, and, if the other listener generates code as it goes, timing it.
+ * <p>
+ * Only used when someone is looking ({@code --stats}, or Flight Recorder): otherwise the
+ * parsers talk to their listener directly.
+ */
+final class InstrumentedListener implements ParseTreeListener {
+
+    private static final int EMPTY = Grammar.EMPTY;
+
+    private final ParseTreeListener listener;
+    private final CompilationStats stats;
+    private final boolean emitting;
+
+    /**
+     * @param listener the listener to pass the nodes on to
+     * @param stats    where the counts (and times) go
+     * @param emitting true if the listener generates code, so that its time counts as emitting
+     */
+    InstrumentedListener(final ParseTreeListener listener, final CompilationStats stats, final boolean emitting) {
+        this.listener = listener;
+        this.stats = stats;
+        this.emitting = emitting;
+    }
+
+    @Override
+    public TreeNode writeHeader(final String nodeString) {
+        final long start = this.start();
+        final TreeNode root = listener.writeHeader(nodeString);
+        this.stop(start);
+        return root;
+    }
+
+    @Override
+    public TreeNode addNonTerminalToTree(final TreeNode parentNode, final NonTerminal symbol) {
+        stats.node(Grammar.symbol(symbol));
+        final long start = this.start();
+        final TreeNode node = listener.addNonTerminalToTree(parentNode, symbol);
+        this.stop(start);
+        return node;
+    }
+
+    @Override
+    public TreeNode addTokenToTree(final TreeNode parentNode, final Token token) {
+        stats.node(Grammar.symbol(token));
+        final long start = this.start();
+        final TreeNode node = listener.addTokenToTree(parentNode, token);
+        this.stop(start);
+        return node;
+    }
+
+    @Override
+    public void addTerminalToTree(final TreeNode fromNode, final String lexeme) {
+        stats.lexeme();
+        final long start = this.start();
+        listener.addTerminalToTree(fromNode, lexeme);
+        this.stop(start);
+    }
+
+    @Override
+    public void addEmptyToTree(final TreeNode fromNode) {
+        stats.node(EMPTY);
+        final long start = this.start();
+        listener.addEmptyToTree(fromNode);
+        this.stop(start);
+    }
+
+    @Override
+    public void syntaxError(final String err, final TreeNode fromNode) throws ParseException {
+        final long start = this.start();
+        try {
+            listener.syntaxError(err, fromNode);
+        } finally {
+            this.stop(start);
+        }
+    }
+
+    @Override
+    public void writeFooter() {
+        final long start = this.start();
+        listener.writeFooter();
+        this.stop(start);
+    }
+
+    @Override
+    public void flush() {
+        final long start = this.start();
+        listener.flush();
+        this.stop(start);
+    }
+
+    private long start() {
+        return emitting ? System.nanoTime() : 0;
+    }
+
+    private void stop(final long start) {
+        if (emitting) {
+            stats.emitted(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import compiler.Program.Assign;
+import compiler.Program.Binary;
+import compiler.Program.Condition;
+import compiler.Program.Constant;
+import compiler.Program.DoUntil;
+import compiler.Program.Expression;
+import compiler.Program.If;
+import compiler.Program.Read;
+import compiler.Program.Statement;
+import compiler.Program.Variable;
+import compiler.Program.While;
+import compiler.Program.Write;
+
+/**
+ * Runs a {@link Program} by walking its statements and expressions.
+ * <p>
+ * This is the reference for how the language behaves, and the baseline the faster backends
+ * are measured against. The variables live in one {@code double[]}, indexed by the slots the
+ * program was built with.
+ */
+final class Interpreter {
+
+    private final Program program;
+    private final ProgramInput in;
+    private final ProgramOutput out;
+    private final double[] slots;
+
+    /**
+     * @param program the program to run
+     * @param in      where {@code read} reads from
+     * @param out     where {@code write} writes to
+     */
+    Interpreter(final Program program, final ProgramInput in, final ProgramOutput out) {
+        this.program = program;
+        this.in = in;
+        this.out = out;
+        this.slots = new double[program.getSlotCount()];
+    }
+
+    /**
+     * Run the program to the end. The output is flushed even if the program fails.
+     *
+     * @throws ProgramException if the program fails
+     */
+    void run() {
+        try {
+            this.execute(program.getBody());
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the variables, by slot (after {@link #run()}: their final values)
+     */
+    double[] getSlots() {
+        return slots;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void execute(final Statement[] statements) {
+        for (final Statement statement : statements) {
+            if (statement instanceof Assign assign) {
+                slots[assign.slot()] = this.evaluate(assign.value());
+            } else if (statement instanceof While loop) {
+                while (this.test(loop.condition())) {
+                    this.execute(loop.body());
+                }
+            } else if (statement instanceof If branch) {
+                this.execute(this.test(branch.condition()) ? branch.then() : branch.otherwise());
+            } else if (statement instanceof DoUntil loop) {
+                do {
+                    this.execute(loop.body());
+                } while (!this.test(loop.condition()));
+            } else if (statement instanceof Write write) {
+                out.writeNumber(this.evaluate(write.value()));
+            } else if (statement instanceof Read read) {
+                slots[read.slot()] = in.readNumber();
+            }
+        }
+    }
+
+    private boolean test(final Condition condition) {
+        return condition.relation().test(this.evaluate(condition.left()), this.evaluate(condition.right()));
+    }
+
+    private double evaluate(final Expression expression) {
+        if (expression instanceof Variable variable) {
+            return slots[variable.slot()];
+        } else if (expression instanceof Constant constant) {
+            return constant.value();
+        }
+        final Binary binary = (Binary) expression;
+        return binary.operator().apply(this.evaluate(binary.left()), this.evaluate(binary.right()));
+    }
+}
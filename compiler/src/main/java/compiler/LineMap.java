@@ -0,0 +1,133 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Turns byte offsets in a source buffer into line and column numbers.
+ * <p>
+ * Tokens only carry their offsets (see {@link TokenBuffer}); this index of line starts is
+ * built in one scan of the source the first time a position is actually needed, e.g. for an
+ * error message, and a lookup is a binary search. A line ends at "\n", "\r\n" or "\r".
+ * Lines and columns count from 1, and columns count characters, not bytes. A column is
+ * counted from the previous one looked up when that is earlier on the same line, so looking up
+ * every token of a line in order costs one scan of the line, however long it is.
+ * <p>
+ * A lexer that sees the source only once, a piece at a time, counts as it goes with a
+ * {@link Counter} instead.
+ */
+final class LineMap {
+
+    private final byte[] source;
+    private final int[] lineStarts;
+    private final int lineCount;
+
+    // The last column looked up, which the next lookup further along the same line starts from.
+    private int cursorOffset;
+    private int cursorColumn = 1;
+
+    LineMap(final byte[] source) {
+        this.source = source;
+
+        int[] starts = new int[Math.max(16, source.length / 32)];
+        int count = 1;
+        for (int i = 0; i < source.length; i++) {
+            final byte b = source[i];
+            if (b == '\n' || (b == '\r' && (i + 1 == source.length || source[i + 1] != '\n'))) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = starts;
+        this.lineCount = count;
+    }
+
+    /**
+     * @param offset a byte offset in the source (the length of the source for its end)
+     * @return the line the offset is on
+     */
+    int line(final int offset) {
+        // The last line start at or before the offset.
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (lineStarts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * @param offset a byte offset in the source (the length of the source for its end)
+     * @return the column the offset is at
+     */
+    int column(final int offset) {
+        final int lineStart = lineStarts[this.line(offset) - 1];
+        int from = lineStart;
+        int column = 1;
+        if (cursorOffset >= lineStart && cursorOffset <= offset) {
+            from = cursorOffset;
+            column = cursorColumn;
+        }
+        for (int i = from; i < offset; i++) {
+            // Skip the continuation bytes of multi-byte UTF-8 characters.
+            if ((source[i] & 0xC0) != 0x80) {
+                column++;
+            }
+        }
+        cursorOffset = offset;
+        cursorColumn = column;
+        return column;
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    // ****************************************************************************************
+
+    /**
+     * Counts lines and columns forward through a source, by the same rules as the map: the
+     * line and column are those of the first byte not counted yet.
+     */
+    static final class Counter {
+
+        private int line = 1;
+        private int column = 1;
+        private boolean afterCarriageReturn;
+
+        /**
+         * Count {@code bytes[from...to)}, the next bytes of the source.
+         */
+        void count(final byte[] bytes, final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                final byte b = bytes[i];
+                if (b == '\n' || b == '\r') {
+                    // The "\n" of a "\r\n" doesn't start another line.
+                    if (b == '\r' || !afterCarriageReturn) {
+                        line++;
+                    }
+                    column = 1;
+                } else if ((b & 0xC0) != 0x80) {
+                    // Skip the continuation bytes of multi-byte UTF-8 characters.
+                    column++;
+                }
+                afterCarriageReturn = b == '\r';
+            }
+        }
+
+        int line() {
+            return line;
+        }
+
+        int column() {
+            return column;
+        }
+    }
+}
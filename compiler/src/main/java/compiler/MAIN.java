@@ -0,0 +1,965 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+
+package compiler;
+
+/*
+COURSE: COSC455003
+Assignment: Program 1
+
+ 
+Name: Kline, Justin
+*/
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.text.MessageFormat.format;
+
+/**
+ * COSC455 Programming Languages: Implementation and Design.
+ * <p>
+ * ************** NOTE: REQUIRES JAVA 17 OR ABOVE! ******************
+ * <p>
+ * DESIGN NOTE: It's generally bad to have a bunch of "top level classes" in one
+ * giant file.
+ * However, this was done here only to keep the example down to only files...
+ * One for the parser and
+ * one for everything else!
+ * <p>
+ * This syntax analyzer implements a top-down, left-to-right, recursive-descent
+ * parser based on the
+ * production rules for a simple English language provided by Weber in "Modern
+ * Programming
+ * Languages".
+ */
+public class MAIN {
+
+    // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+    // !!!!!!! Toggle to display Graphviz prompt. !!!!!!!
+
+    // NOTE: this is only the default; it can be overridden per compilation (see CompilerOptions).
+    public static final boolean PROMPT_FOR_GRAPHVIZ = true;
+
+    // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+
+    public static void main(String[] args) {
+        // Check for an input file argument
+        CompilerOptions options = null;
+
+        try {
+            options = CompilerOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(CompilerOptions.USAGE);
+            System.exit(1);
+        }
+
+        if (options.getServerAddress() != null) {
+            runServer(options);
+            return;
+        }
+
+        if (options.isBatch()) {
+            try {
+                final var batch = new BatchCompiler(options);
+                final BatchCompiler.Result result = batch.run();
+                printStats(batch.getStats());
+                System.exit(result.failed() == 0 ? 0 : 4);
+            } catch (IOException | UncheckedIOException ex) {
+                final String msg = format("Could not read the inputs!!! {0}", ex.getMessage());
+                Logger.getGlobal().log(Level.SEVERE, msg);
+                System.exit(3);
+            }
+        }
+
+        final File file = options.getInputFile();
+
+        if (!options.isStandardInput() && (!file.exists() || !file.isFile() || !file.canRead())) {
+            System.err.printf("Input file not found: %s%n", file.toPath());
+            System.exit(2);
+        }
+
+        if (options.isRun()) {
+            System.exit(runProgram(options));
+        }
+
+        if (options.getClientAddress() != null) {
+            System.exit(runClient(options));
+        }
+
+        try {
+            final String compiledCode = ScanAndParse(options);
+
+            // Display the graphviz test page, if desired (and if we still have the output).
+            // A headless build leaves the GUI out entirely (see Headless).
+            if (!Headless.IMAGE && options.isPromptForGraphviz() && compiledCode != null) {
+                GraphViewer.openWebGraphViz(compiledCode);
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            final String msg = format("Could not read the file!!! {0}", ex.getMessage());
+            Logger.getGlobal().log(Level.SEVERE, msg);
+            System.exit(3);
+        }
+    }
+
+    /**
+     * Compile the input file.
+     *
+     * @param options the command line options
+     * @return the generated code, or null if it was streamed to an output file.
+     */
+    private static String ScanAndParse(final CompilerOptions options) throws IOException {
+        // Copy the code compiled before, if it's in the cache.
+        final CompileCache cache = options.getCacheDirectory() == null
+                ? null
+                : new CompileCache(options.getCacheDirectory(), options.getCacheSize());
+        // The cache needs the whole source first, and so does any lexer but the streaming one reading stdin.
+        final boolean wholeSource = cache != null
+                || (options.isStandardInput() && options.getLexer() != CompilerOptions.Lexer.STREAMING);
+        final byte[] source = wholeSource ? readSource(options) : null;
+        final String key = cache == null ? null : CompileCache.key(options, source);
+        final CompilationStats stats = options.isStats() ? new CompilationStats() : null;
+        if (key != null) {
+            if (options.getOutputFile() != null) {
+                if (cache.copyTo(key, options.getOutputFile())) {
+                    if (options.isEcho()) {
+                        // Echo the copy: the cache entry may be evicted by now.
+                        CompileCache.copyToConsole(options.getOutputFile());
+                    }
+                    printCacheHit(stats);
+                    return null;
+                }
+            } else if (!Headless.IMAGE && options.isPromptForGraphviz()) {
+                // The viewer needs the code as text.
+                final String cached = cache.read(key);
+                if (cached != null) {
+                    if (options.isEcho()) {
+                        try (CodeSink console = CodeSink.toConsole(System.out)) {
+                            console.append(cached);
+                        }
+                    }
+                    printCacheHit(stats);
+                    return cached;
+                }
+            } else if (options.isEcho() ? cache.copyToConsole(key) : cache.contains(key)) {
+                printCacheHit(stats);
+                return null;
+            }
+        }
+
+        // Create the output: memory, a file and/or the console.
+        final CodeSink sink = openSink(options);
+
+        // Compile the program from the input file.
+        final boolean parsed;
+        if (source != null) {
+            parsed = Compilation.compile(options, source, sink, stats);
+        } else if (options.isStandardInput()) {
+            // Not closed: that would close the standard input.
+            parsed = Compilation.compile(options, new FileInputStream(FileDescriptor.in).getChannel(), sink, stats);
+        } else {
+            parsed = Compilation.compile(options, options.getInputFile(), sink, stats);
+        }
+        printStats(stats);
+
+        final String compiledCode = sink.contents().orElse(null);
+        if (key != null && parsed) {
+            if (compiledCode == null) {
+                cache.store(key, options.getOutputFile());
+            } else {
+                cache.store(key, compiledCode);
+            }
+        }
+        return compiledCode;
+    }
+
+    // Serve compile requests until the JVM is stopped.
+    private static void runServer(final CompilerOptions options) {
+        try (CompileServer server = new CompileServer(options)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ex) {
+                    Logger.getGlobal().log(Level.WARNING, "Could not stop the server", ex);
+                }
+            }));
+            System.out.printf("Listening on %s%n", server.getAddress());
+            server.serve();
+        } catch (IOException | IllegalArgumentException ex) {
+            final String msg = format("Could not start the server!!! {0}", ex.getMessage());
+            Logger.getGlobal().log(Level.SEVERE, msg);
+            System.exit(3);
+        }
+    }
+
+    // Have a server compile the input file; returns the exit code.
+    private static int runClient(final CompilerOptions options) {
+        try (CompileClient client = new CompileClient(options.getClientAddress())) {
+            final byte[] source = readSource(options);
+            final CompileClient.Response response = client.compile(options, source, options.isIncremental());
+
+            switch (response.status()) {
+                case CompileServer.OK, CompileServer.SYNTAX_ERROR -> {
+                    if (options.getOutputFile() != null) {
+                        Files.write(options.getOutputFile(), response.body());
+                    }
+                    if (options.isEcho()) {
+                        System.out.write(response.body());
+                        System.out.flush();
+                    }
+                    System.err.print(response.errors());
+                    return response.status() == CompileServer.OK ? 0 : 4;
+                }
+                default -> {
+                    System.err.println(response.text());
+                    return 5;
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            final String msg = format("Could not reach the server!!! {0}", ex.getMessage());
+            Logger.getGlobal().log(Level.SEVERE, msg);
+            return 3;
+        }
+    }
+
+    // Run the input file on the standard input and output; returns the exit code.
+    private static int runProgram(final CompilerOptions options) {
+        try {
+            final CompilationStats stats = options.isStats() ? new CompilationStats() : null;
+            final ParseTree tree = Compilation.parseTree(options, options.getInputFile(), stats);
+            printStats(stats);
+            if (tree.getSyntaxError() != null) {
+                return 4;
+            }
+
+            final Program program = Program.from(tree);
+            final ControlFlowGraph graph = lower(program, options);
+            if (options.getIrFile() != null || options.getCfgFile() != null) {
+                dumpGraph(graph, options);
+            }
+            final var in = new ProgramInput(System.in);
+            final var out = new ProgramOutput(System.out);
+
+            if (options.getBackend() == CompilerOptions.Backend.BYTECODE) {
+                final byte[] classFile = compileToClass(graph, options);
+                if (classFile != null) {
+                    final double[] slots = new double[program.getSlotCount()];
+                    BytecodeBackend.run(BytecodeBackend.load(classFile), in, out, slots);
+                    return 0;
+                }
+            } else if (options.getBackend() == CompilerOptions.Backend.VM) {
+                final RegisterMachine machine = RegisterMachine.compile(graph);
+                machine.run(machine.newRegisters(), in, out);
+                return 0;
+            }
+            new Interpreter(program, in, out).run();
+            return 0;
+        } catch (ProgramException ex) {
+            System.err.println(ex.getMessage());
+            return 6;
+        } catch (IOException | UncheckedIOException ex) {
+            final String msg = format("Could not run the program!!! {0}", ex.getMessage());
+            Logger.getGlobal().log(Level.SEVERE, msg);
+            return 3;
+        }
+    }
+
+    // The program's control-flow graph, optimized to the -O level; each pass's work goes to stderr.
+    private static ControlFlowGraph lower(final Program program, final CompilerOptions options) {
+        final ControlFlowGraph graph = ControlFlowGraph.from(program);
+        final int level = options.getOptimizationLevel();
+        if (level == 0) {
+            return graph;
+        }
+
+        final var optimizer = new Optimizer(graph);
+        final ControlFlowGraph optimized = optimizer.optimize(level);
+        for (final Optimizer.Pass pass : Optimizer.Pass.values()) {
+            if (pass.getLevel() <= level) {
+                System.err.println(format("-O{0}: {1} removed {2,number,#} instruction(s)", level, pass.getTitle(),
+                        optimizer.removed(pass)));
+            }
+        }
+        System.err.println(format("-O{0}: {1,number,#} instruction(s) in {2,number,#} block(s), from {3,number,#} in {4,number,#}", level,
+                optimized.instructionCount(), optimized.blockCount(), graph.instructionCount(), graph.blockCount()));
+        return optimized;
+    }
+
+    // --dump-ir and --dump-cfg.
+    private static void dumpGraph(final ControlFlowGraph graph, final CompilerOptions options) throws IOException {
+        if (options.getIrFile() != null) {
+            Files.writeString(options.getIrFile(), graph.toString());
+        }
+        if (options.getCfgFile() != null) {
+            Files.writeString(options.getCfgFile(), graph.toDot());
+        }
+    }
+
+    // The program as a class file (also written to --dump-class), or null if it's too long for one.
+    private static byte[] compileToClass(final ControlFlowGraph graph, final CompilerOptions options)
+            throws IOException {
+        final byte[] classFile;
+        try {
+            classFile = BytecodeBackend.compile(graph);
+        } catch (IllegalArgumentException ex) {
+            Logger.getGlobal().log(Level.WARNING, format("{0} Interpreting it instead.", ex.getMessage()));
+            return null;
+        }
+
+        if (options.getClassFile() != null) {
+            Files.write(options.getClassFile(), classFile);
+        }
+        return classFile;
+    }
+
+    // The whole input file, or standard input.
+    private static byte[] readSource(final CompilerOptions options) throws IOException {
+        return options.isStandardInput()
+                ? System.in.readAllBytes()
+                : Files.readAllBytes(options.getInputFile().toPath());
+    }
+
+    // --stats, on stderr.
+    private static void printStats(final CompilationStats stats) {
+        if (stats != null) {
+            System.err.println(stats.toJson());
+        }
+    }
+
+    // A hit was neither lexed nor parsed, so all there is to say is that it was one.
+    private static void printCacheHit(final CompilationStats stats) {
+        if (stats != null) {
+            stats.cached();
+            printStats(stats);
+        }
+    }
+
+    // Output file and/or console, or memory and/or console.
+    private static CodeSink openSink(final CompilerOptions options) throws IOException {
+        final CodeSink primary;
+        if (options.getOutputFile() == null) {
+            primary = CodeSink.inMemory();
+        } else if (options.getLexer() == CompilerOptions.Lexer.PIPELINED) {
+            primary = CodeSink.toFileInBackground(options.getOutputFile());
+        } else {
+            primary = CodeSink.toFile(options.getOutputFile());
+        }
+
+        return options.isEcho() ? primary.tee(CodeSink.toConsole(System.out)) : primary;
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A hand-written, single-pass Lexical Analyzer.
+ * <p>
+ * The input is scanned exactly once, byte by byte, as a small DFA: the current byte selects
+ * the next state (whitespace, comment, operator, number or word) and each state consumes
+ * bytes until it reaches a final state and emits a token. No regular expressions are used and
+ * the input is never split, joined or trimmed into intermediate Strings.
+ * <p>
+ * Tokens no longer need to be delimited by spaces: "x:=(y+1)" scans the same as
+ * "x := ( y + 1 )". A '#' starts a comment that runs to the end of the line.
+ */
+class LexicalAnalyzer implements TokenStream {
+
+    // Byte classes for the scanner's transition table (ASCII only; everything else is a WORD byte).
+    private static final byte WORD = 0;
+    private static final byte SPACE = 1;
+    private static final byte DIGIT = 2;
+    private static final byte OPERATOR = 3;
+    private static final byte COMMENT = 4;
+
+    private static final byte[] BYTE_CLASS = new byte[128];
+
+    static {
+        for (final char c : " \t\n\r\f\u000B".toCharArray()) {
+            BYTE_CLASS[c] = SPACE;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            BYTE_CLASS[c] = DIGIT;
+        }
+        for (final char c : "()+-*/<>=!:".toCharArray()) {
+            BYTE_CLASS[c] = OPERATOR;
+        }
+        BYTE_CLASS['#'] = COMMENT;
+    }
+
+    // TOKENIZED input, and the index of the current token in it.
+    private TokenBuffer tokens;
+    private int position;
+
+    /**
+     * Construct a lexer over an input string.
+     *
+     * @param inputString The input file as a string.
+     */
+    LexicalAnalyzer(final String inputString) {
+        this.tokenize(inputString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Construct a Lexer over the contents of a file. The file is read into a single buffer
+     * and scanned in place; comments and line breaks are skipped by the scanner.
+     *
+     * @param inputFile The file to read from.
+     */
+    LexicalAnalyzer(final File inputFile) throws IOException {
+        this.tokenize(Files.readAllBytes(inputFile.toPath()));
+    }
+
+    /**
+     * Construct a Lexer over source that is already in memory (e.g. received by the
+     * {@link CompileServer}). The buffer is scanned in place, not copied.
+     *
+     * @param input the UTF-8 encoded source.
+     */
+    LexicalAnalyzer(final byte[] input) {
+        this.tokenize(input);
+    }
+
+    /**
+     * Construct a Lexer over part of a buffer only, e.g. the lines an edit touched (see
+     * {@link IncrementalParser}). The range must start and end outside of any token and comment;
+     * the offsets of the tokens are offsets in the whole buffer.
+     *
+     * @param input the UTF-8 encoded source.
+     * @param from  the first byte to scan
+     * @param to    one past the last byte to scan
+     */
+    LexicalAnalyzer(final byte[] input, final int from, final int to) {
+        this.tokens = new TokenBuffer(input, to - from);
+        this.scan(input, from, to);
+    }
+
+    /**
+     * Construct a Lexer over tokens that were already scanned.
+     *
+     * @param tokens the token stream
+     */
+    LexicalAnalyzer(final TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Scan the whole input buffer into a series of tokens.
+     *
+     * @param input the UTF-8 encoded source.
+     */
+    private void tokenize(final byte[] input) {
+        this.tokens = new TokenBuffer(input);
+        this.position = 0;
+        this.scan(input, 0, input.length);
+    }
+
+    // Scan input[pos...end) into the token buffer.
+    private void scan(final byte[] input, int pos, final int end) {
+        while (pos < end) {
+            switch (byteClass(input[pos])) {
+                case SPACE -> pos++;
+                case COMMENT -> pos = skipComment(input, pos, end);
+                default -> {
+                    final long token = scanToken(input, pos, end);
+                    this.tokens.add(kind(token), pos, end(token));
+                    pos = end(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scan the token that starts at input[start] (not a space or a comment).
+     *
+     * @param input the source
+     * @param start the first byte of the token
+     * @param end   the end of the bytes available; the token may not continue past it
+     * @return the token's kind and end, see {@link #kind} and {@link #end}
+     */
+    static long scanToken(final byte[] input, final int start, final int end) {
+        return switch (byteClass(input[start])) {
+            case OPERATOR -> scanOperator(input, start, end);
+            case DIGIT -> scanNumber(input, start, end);
+            default -> scanWord(input, start, end);
+        };
+    }
+
+    static Token kind(final long token) {
+        return Token.fromOrdinal((int) (token >>> 32));
+    }
+
+    static int end(final long token) {
+        return (int) token;
+    }
+
+    private static long token(final Token kind, final int end) {
+        return (long) kind.ordinal() << 32 | end;
+    }
+
+    // '#' ... end of line
+    static int skipComment(final byte[] input, int pos, final int end) {
+        while (pos < end && input[pos] != '\n' && input[pos] != '\r') {
+            pos++;
+        }
+        return pos;
+    }
+
+    // Single character operators, plus ":=", "<=", ">=" and "!=" with one byte of lookahead.
+    private static long scanOperator(final byte[] input, final int pos, final int end) {
+        final byte c = input[pos];
+        final boolean equalsNext = pos + 1 < end && input[pos + 1] == '=';
+
+        return switch (c) {
+            case '(' -> token(Token.LEFTP, pos + 1);
+            case ')' -> token(Token.RIGHTP, pos + 1);
+            case '+', '-' -> token(Token.ADD_OP, pos + 1);
+            case '*', '/' -> token(Token.MULT_OP, pos + 1);
+            case '=' -> token(Token.RELATION, pos + 1);
+            case ':' -> equalsNext ? token(Token.ASSIGNMENT, pos + 2) : token(Token.UNKNOWN, pos + 1);
+            case '<', '>' -> token(Token.RELATION, equalsNext ? pos + 2 : pos + 1);
+            // '!'
+            default -> equalsNext ? token(Token.RELATION, pos + 2) : token(Token.UNKNOWN, pos + 1);
+        };
+    }
+
+    // <NUMBER> ::= digit+ ( '.' digit+ )?  -- anything glued onto it turns it into a word.
+    private static long scanNumber(final byte[] input, final int start, final int end) {
+        int pos = skipDigits(input, start, end);
+
+        if (pos + 1 < end && input[pos] == '.' && byteClass(input[pos + 1]) == DIGIT) {
+            pos = skipDigits(input, pos + 1, end);
+        }
+
+        if (pos < end && isWordByte(input[pos])) {
+            return scanWord(input, start, end);
+        }
+        return token(Token.NUMBER, pos);
+    }
+
+    private static int skipDigits(final byte[] input, int pos, final int end) {
+        while (pos < end && byteClass(input[pos]) == DIGIT) {
+            pos++;
+        }
+        return pos;
+    }
+
+    // Keywords and identifiers: the longest run of WORD and DIGIT bytes.
+    private static long scanWord(final byte[] input, final int start, final int end) {
+        int pos = start;
+        while (pos < end && isWordByte(input[pos])) {
+            pos++;
+        }
+        return token(Token.fromLexeme(input, start, pos), pos);
+    }
+
+    static boolean isSpace(final byte b) {
+        return byteClass(b) == SPACE;
+    }
+
+    static boolean isComment(final byte b) {
+        return byteClass(b) == COMMENT;
+    }
+
+    private static byte byteClass(final byte b) {
+        // Non-ASCII bytes (b < 0) are always part of a word.
+        return b < 0 ? WORD : BYTE_CLASS[b];
+    }
+
+    private static boolean isWordByte(final byte b) {
+        final byte byteClass = byteClass(b);
+        return byteClass == WORD || byteClass == DIGIT;
+    }
+
+    /**
+     * Method to return the current lexeme.
+     * If there are no tokens left or the current token is $$, the function will
+     * return "EOF".
+     * <p>
+     * The lexeme is built on demand from its offsets in the input buffer.
+     *
+     * @return the Lexeme as an Optional string since an empty list has no tokens.
+     */
+    @Override
+    public String getCurrentLexeme() {
+        return (this.position >= this.tokens.size() || this.currentToken() == Token.$$)
+                ? "EOF"
+                : this.tokens.lexeme(this.position);
+    }
+
+    /**
+     * Get just the current token.
+     *
+     * @return the current token.
+     */
+    @Override
+    public Token currentToken() {
+
+        return this.position >= this.tokens.size() ? Token.$$ : this.tokens.token(this.position);
+    }
+
+    /**
+     * Advance to next token, making it current.
+     */
+    @Override
+    public void advanceToken() {
+
+        if (this.position < this.tokens.size()) {
+            this.position++;
+        }
+    }
+
+    /**
+     * Make another token current, e.g. to parse part of the stream again.
+     *
+     * @param position the index of the token in {@link #getTokens()}
+     */
+    void seek(final int position) {
+        this.position = Math.min(position, this.tokens.size());
+    }
+
+    /**
+     * The index of the current token in {@link #getTokens()}.
+     *
+     * @return the current position in the token stream.
+     */
+    @Override
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * The line a token is on.
+     *
+     * @param position the index of the token in {@link #getTokens()} (its size for the end of the source)
+     * @return the line, counting from 1
+     */
+    @Override
+    public int line(final int position) {
+        return this.tokens.lines().line(this.tokens.offset(position));
+    }
+
+    /**
+     * The column a token starts at, in characters.
+     *
+     * @param position the index of the token in {@link #getTokens()} (its size for the end of the source)
+     * @return the column, counting from 1
+     */
+    @Override
+    public int column(final int position) {
+        return this.tokens.lines().column(this.tokens.offset(position));
+    }
+
+    /**
+     * The whole token stream (including the tokens already consumed).
+     *
+     * @return the token buffer.
+     */
+    TokenBuffer getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * To string for debugging.
+     * <p>
+     * (Converts the remaining tokens to a string for debugging.)
+     */
+    @Override
+    public String toString() {
+        return this.tokens.toString();
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * This is a ***SIMULATION*** of a "code generator" that simply generates
+ * GraphViz output.
+ * Technically, this would represent the "Intermediate Code Generation" step.
+ * <p>
+ * Also, Instead of building an entire tree in memory followed by a traversal
+ * the tree at the end,
+ * here we are just adding "code" as we go.
+ * <p>
+ * (This simulates a single-pass compiler; keep in mind that most modern
+ * compilers work in several
+ * passes... eg. Scan for all top level identifiers, build subtrees for each
+ * class/method/etc.,
+ * generate an internal intermediate code representation, and so on).
+ * <p>
+ * DESIGN NOTE: From an OOP design perspective, creating instances of "utility
+ * classes" (classes
+ * with no internal state) is generally bad. However, in a more elaborate
+ * example, the code
+ * generator would most certainly maintain some internal state information.
+ * (Memory address offsets,
+ * etc.)
+ */
+class CodeGenerator implements ParseTreeListener {
+
+    // Platform line separator (what "%n" used to produce).
+    private static final String EOL = System.lineSeparator();
+
+    // Where the generated code goes.
+    private final CodeSink sink;
+
+    // Per-compilation node numbering.
+    private int nextNodeId;
+
+    // Constructor: write generated code to both the screen AND a buffer.
+    CodeGenerator() {
+        this(CodeSink.inMemory().tee(CodeSink.toConsole(System.out)));
+    }
+
+    /**
+     * Generate code into the given sink (a file, the console, memory, or a combination).
+     *
+     * @param sink the destination of the generated code
+     */
+    CodeGenerator(final CodeSink sink) {
+        this.sink = sink;
+    }
+
+    // Write generated code to the sink.
+    void outputGeneratedCode(final String msg) {
+        this.sink.append(msg);
+    }
+
+    // Show the terminals as ovals...
+    @Override
+    public void addTerminalToTree(final TreeNode fromNode, final String lexeme) {
+        final var node = this.buildNode(lexeme);
+
+        this.writeEdge(fromNode.getNodeName(), fromNode.getNodeId(), node.getNodeName(), node.getNodeId(),
+                lexeme, "oval");
+    }
+
+    /**
+     * Add an "inner node" to the parse tree.
+     * <p>
+     * The parser says which rule it is in; the node is labelled with that rule's
+     * (precomputed) name, e.g. "&lt;STMT&gt;".
+     *
+     * @param parentNode the parent of the node being added to the tree
+     * @param symbol     the grammar rule the new node stands for
+     * @return the newly added node as ParseNode object.
+     */
+    @Override
+    public TreeNode addNonTerminalToTree(final TreeNode parentNode, final NonTerminal symbol) {
+        return this.addNonTerminalToTree(parentNode, symbol.getLabel());
+    }
+
+    /**
+     * Add the box for a matched token, labelled e.g. "&lt;ASSIGNMENT&gt;".
+     *
+     * @param parentNode the parent of the node being added to the tree
+     * @param token      the matched token
+     * @return the newly added node
+     */
+    @Override
+    public TreeNode addTokenToTree(final TreeNode parentNode, final Token token) {
+        return this.addNonTerminalToTree(parentNode, token.getLabel());
+    }
+
+    /**
+     * Show the non-terminals as boxes...
+     *
+     * @param fromNode the parent node
+     * @param toNode   the child node
+     * @return the child node
+     */
+    public TreeNode addNonTerminalToTree(final TreeNode fromNode, final TreeNode toNode) {
+        this.writeEdge(fromNode.getNodeName(), fromNode.getNodeId(), toNode.getNodeName(), toNode.getNodeId(),
+                toNode.getNodeName(), "rect");
+
+        return toNode;
+    }
+
+    /**
+     * Add the "from node" to the tree and return a new "next node" object.
+     *
+     * @param fromNode The node to add to the tree.
+     * @return the newly added node as ParseNode object.
+     */
+    public TreeNode addNonTerminalToTree(final TreeNode fromNode, final String toNodeString) {
+        final var toNode = this.buildNode(toNodeString);
+        return this.addNonTerminalToTree(fromNode, toNode);
+    }
+
+    // Show the terminals as ovals...
+    @Override
+    public void addEmptyToTree(final TreeNode fromNode) {
+        final var node = this.buildNode("EMPTY");
+
+        this.writeEdge(fromNode.getNodeName(), fromNode.getNodeId(), node.getNodeName(), node.getNodeId(),
+                "&epsilon;", "none");
+    }
+
+    // Call this if a syntax error occurs...
+    @Override
+    public void syntaxError(final String err, TreeNode fromNode) throws ParseException {
+        this.writeSyntaxError(fromNode.getNodeName(), fromNode.getNodeId(), err);
+
+        throw new ParseException(err);
+    }
+
+    // Build a node name, so it can be later "deconstructed" for the output.
+    private TreeNode buildNode(final String name) {
+        return new TreeNode(name, this.nextNodeId++);
+    }
+
+    // "Real" executable code generally has a header. See:
+    // https://en.wikipedia.org/wiki/Executable_and_Linkable_Format
+    // (There are some good diagrams at the link)
+    public void writeHeader(TreeNode node) {
+        this.writeHeader(node.getNodeName(), node.getNodeId());
+    }
+
+    @Override
+    public TreeNode writeHeader(final String nodeString) {
+        // The header for the "compiled" output
+        final var headerNode = this.buildNode(nodeString);
+
+        this.writeHeader(headerNode);
+        return headerNode;
+    }
+
+    // Our output requires a footer as well.
+    @Override
+    public void writeFooter() {
+        this.sink.append("}\n");
+    }
+
+    /**
+     * Push any buffered output to its destination.
+     */
+    @Override
+    public void flush() {
+        this.sink.flush();
+    }
+
+    /**
+     * Flush and release the output destination.
+     */
+    public void close() {
+        this.sink.close();
+    }
+
+    /**
+     * The complete generated code, if the sink kept it.
+     *
+     * @return the generated code
+     * @throws IllegalStateException if the output was only streamed (e.g. to a file).
+     */
+    public String getGeneratedCodeBuffer() {
+        this.sink.flush();
+        return this.sink.contents()
+                .orElseThrow(() -> new IllegalStateException("The generated code was streamed, not buffered."));
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // The output format itself. These take plain names and ids, so that a tree that was built
+    // first (see DotEmitter) is written out exactly like one generated on the fly.
+
+    // digraph ParseTree {
+    //     "name-id" [label="name", shape=diamond];
+    void writeHeader(final String name, final int id) {
+        this.sink.append("digraph ParseTree {\n\t\"");
+        this.appendNodeId(name, id);
+        this.sink.append("\" [label=\"").append(name).append("\", shape=diamond];\n");
+    }
+
+    //     "from-1" -> {"to-2" [label="label", shape=shape]};
+    void writeEdge(final String fromName, final int fromId, final String toName, final int toId,
+                   final String label, final String shape) {
+        this.sink.append("\t\"");
+        this.appendNodeId(fromName, fromId);
+        this.sink.append("\" -> {\"");
+        this.appendNodeId(toName, toId);
+        this.sink.append("\" [label=\"").append(label).append("\", shape=").append(shape).append("]};").append(EOL);
+    }
+
+    //     "from-1" -> {"to-2" [label="x", shape=oval, tooltip="line 3, column 7"]};
+    void writeEdge(final String fromName, final int fromId, final String toName, final int toId,
+                   final String label, final String shape, final int line, final int column) {
+        this.sink.append("\t\"");
+        this.appendNodeId(fromName, fromId);
+        this.sink.append("\" -> {\"");
+        this.appendNodeId(toName, toId);
+        this.sink.append("\" [label=\"").append(label).append("\", shape=").append(shape)
+                .append(", tooltip=\"line ").append(line).append(", column ").append(column).append("\"]};").append(EOL);
+    }
+
+    //     "from-1" -> {"SYNTAX ERROR: ..."};
+    // }
+    void writeSyntaxError(final String fromName, final int fromId, final String err) {
+        this.sink.append("\t\"");
+        this.appendNodeId(fromName, fromId);
+        this.sink.append("\" -> {\"").append(err).append("\"};").append(EOL).append('}').append(EOL);
+    }
+
+    // Lines that were generated earlier (see IncrementalParser), as they are.
+    void writeGenerated(final CharSequence lines) {
+        this.sink.append(lines);
+    }
+
+    // Same text as TreeNode.toString(), without building it.
+    private void appendNodeId(final String name, final int id) {
+        this.sink.append(name).append('-').append(id);
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * A "3-Tuple" for the node name and id number.
+ */
+class TreeNode {
+
+    private final String nodeName;
+    private final int nodeId;
+
+    // Nodes are numbered by their owner (the CodeGenerator, or the ParseTree index), so that
+    // every compilation numbers its nodes from 0, independently of any other.
+    TreeNode(final String nodeName, final int nodeId) {
+        this.nodeName = nodeName;
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s-%s", this.getNodeName(), this.getNodeId());
+    }
+}
+
+// *********************************************************************************************************
+
+/**
+ * An exception to be raised if parsing fails due to a "syntax error" in the
+ * input file.
+ * <p>
+ * The parsers throw one per error to unwind to the statement they recover at, so it doesn't
+ * fill in a stack trace: the message (see {@link Diagnostics}) says all there is to say.
+ */
+final class ParseException extends RuntimeException implements Serializable {
+
+    private final String ExceptionID = "ZU3vkDLZRB3pOms4woQh";
+
+    public ParseException(String errMsg) {
+        super(errMsg, null, false, false);
+    }
+}
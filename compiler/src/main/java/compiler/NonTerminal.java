@@ -0,0 +1,56 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * The non-terminal symbols of the grammar (see the productions at the top of {@link Parser}).
+ * <p>
+ * Each symbol carries its parse tree label, built once, so that the parser can tell the code
+ * generator which rule it is in without the code generator having to work it out.
+ */
+enum NonTerminal {
+
+    PROGRAM,
+    STMT_LIST,
+    STMT,
+    EXPR,
+    TERM_TAIL,
+    TERM,
+    FACTOR_TAIL,
+    FACTOR,
+    CONDITION,
+    WHILE_STMT,
+    DO_STMT,
+    IF_STMT,
+    IF_TAIL,
+
+    // Helper rule of the table-driven parser: "what follows a <STMT>" in a <STMT_LIST>.
+    // It doesn't appear in the parse tree; its children are attached to the <STMT_LIST>.
+    STMT_LIST_TAIL(false);
+
+    /**
+     * The label shown in the parse tree, e.g. "&lt;STMT_LIST&gt;".
+     */
+    private final String label;
+
+    /**
+     * Whether this symbol gets a node of its own in the parse tree.
+     */
+    private final boolean inTree;
+
+    NonTerminal() {
+        this(true);
+    }
+
+    NonTerminal(final boolean inTree) {
+        this.label = "<" + this.name() + ">";
+        this.inTree = inTree;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isInTree() {
+        return inTree;
+    }
+}
@@ -0,0 +1,591 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import compiler.Program.Operator;
+import compiler.Program.Relation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optimizes a {@link ControlFlowGraph}: the passes of {@code -O1} and {@code -O2}.
+ * <ul>
+ *     <li>{@link Pass#CONSTANT_FOLDING} (-O1): arithmetic on two constants is done once, here;
+ *     {@code x := 2 * 3 + y} becomes {@code x = 6 + y}.</li>
+ *     <li>{@link Pass#COPY_PROPAGATION} (-O1): after {@code x = y}, uses of {@code x} in the
+ *     same block read {@code y} (or the constant) instead, until either is set again.</li>
+ *     <li>{@link Pass#UNREACHABLE_CODE} (-O2): a branch on two constants becomes a goto, and
+ *     blocks no longer reached from the entry, e.g. the body of {@code while 0 > 1}, go.</li>
+ *     <li>{@link Pass#DEAD_CODE} (-O2): instructions setting a variable or temporary that is
+ *     not read afterwards go. A {@code read} stays: it still consumes input.</li>
+ * </ul>
+ * The passes enable each other (folding makes constant branches, removing blocks makes
+ * assignments dead), so they run in rounds until a round changes nothing.
+ * <p>
+ * What a program does is what it reads and writes. Optimized, it reads and writes the same,
+ * but its variables' final values are not kept: a variable that is set and never read again
+ * is dead code.
+ * <p>
+ * The passes work on copies of the graph's arrays. A removed instruction is marked
+ * {@code NOP} and a removed block unreachable, and the optimized graph is laid out without
+ * them at the end.
+ */
+final class Optimizer {
+
+    /**
+     * The passes, with the {@code -O} level that turns them on.
+     */
+    enum Pass {
+        CONSTANT_FOLDING("constant folding", 1),
+        COPY_PROPAGATION("copy propagation", 1),
+        UNREACHABLE_CODE("unreachable code", 2),
+        DEAD_CODE("dead code", 2);
+
+        private final String title;
+        private final int level;
+
+        Pass(final String title, final int level) {
+            this.title = title;
+            this.level = level;
+        }
+
+        String getTitle() {
+            return title;
+        }
+
+        int getLevel() {
+            return level;
+        }
+    }
+
+    /**
+     * The highest {@code -O} level.
+     */
+    static final int MAX_LEVEL = 2;
+
+    private static final int NONE = ControlFlowGraph.NONE;
+    private static final int NOP = -1;
+    private static final int MAX_ROUNDS = 16;
+
+    private static final Operator[] OPERATORS = Operator.values();
+    private static final Relation[] RELATIONS = Relation.values();
+
+    private final ControlFlowGraph graph;
+    private final int variableCount;
+    private final int operandCount;
+    private final int[] removed = new int[Pass.values().length];
+
+    private double[] constants;
+    private int constantCount;
+    private final Map<Long, Integer> constantOperands = new HashMap<>();
+
+    private final int[] opcodes;
+    private final int[] results;
+    private final int[] lefts;
+    private final int[] rights;
+
+    private final int[] exits;
+    private final int[] relations;
+    private final int[] testLefts;
+    private final int[] testRights;
+    private final int[] nexts;
+    private final int[] otherwises;
+    private final boolean[] reachable;
+
+    /**
+     * @param graph the graph to optimize; it isn't changed
+     */
+    Optimizer(final ControlFlowGraph graph) {
+        this.graph = graph;
+        this.variableCount = graph.variableCount();
+        this.operandCount = graph.variableCount() + graph.temporaryCount();
+
+        this.constants = graph.getConstants().clone();
+        this.constantCount = constants.length;
+        for (int c = 0; c < constantCount; c++) {
+            constantOperands.put(Double.doubleToRawLongBits(constants[c]), c);
+        }
+
+        final int instructions = graph.instructionCount();
+        this.opcodes = new int[instructions];
+        this.results = new int[instructions];
+        this.lefts = new int[instructions];
+        this.rights = new int[instructions];
+        for (int i = 0; i < instructions; i++) {
+            opcodes[i] = graph.opcode(i);
+            results[i] = graph.result(i);
+            lefts[i] = graph.left(i);
+            rights[i] = graph.right(i);
+        }
+
+        final int blocks = graph.blockCount();
+        this.exits = new int[blocks];
+        this.relations = new int[blocks];
+        this.testLefts = new int[blocks];
+        this.testRights = new int[blocks];
+        this.nexts = new int[blocks];
+        this.otherwises = new int[blocks];
+        this.reachable = new boolean[blocks];
+        for (int b = 0; b < blocks; b++) {
+            exits[b] = graph.exit(b);
+            relations[b] = exits[b] == ControlFlowGraph.BRANCH ? graph.relation(b).ordinal() : 0;
+            testLefts[b] = graph.testLeft(b);
+            testRights[b] = graph.testRight(b);
+            nexts[b] = graph.next(b);
+            otherwises[b] = graph.otherwise(b);
+        }
+        this.markReachable();
+    }
+
+    /**
+     * Run the passes of a level.
+     *
+     * @param level 0 (nothing) to {@link #MAX_LEVEL}
+     * @return the optimized graph
+     */
+    ControlFlowGraph optimize(final int level) {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            if (level >= Pass.CONSTANT_FOLDING.level) {
+                changed |= this.foldConstants();
+            }
+            if (level >= Pass.COPY_PROPAGATION.level) {
+                changed |= this.propagateCopies();
+            }
+            if (level >= Pass.UNREACHABLE_CODE.level) {
+                changed |= this.removeUnreachableCode();
+            }
+            if (level >= Pass.DEAD_CODE.level) {
+                changed |= this.eliminateDeadCode();
+            }
+            if (!changed) {
+                break;
+            }
+        }
+        return this.layOut();
+    }
+
+    /**
+     * @return how many instructions a pass removed
+     */
+    int removed(final Pass pass) {
+        return removed[pass.ordinal()];
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * A temporary is set once and used in its own block, so once it is known to be a
+     * constant, every use of it can read the constant and it can go at once.
+     */
+    private boolean foldConstants() {
+        boolean changed = false;
+        final int[] known = new int[operandCount];
+        Arrays.fill(known, NONE);
+
+        for (int block = 0; block < reachable.length; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            for (int i = graph.first(block); i < graph.end(block); i++) {
+                if (opcodes[i] == NOP) {
+                    continue;
+                }
+                changed |= this.substitute(i, known);
+                if (opcodes[i] > ControlFlowGraph.DIVIDE
+                        || !ControlFlowGraph.isConstant(lefts[i]) || !ControlFlowGraph.isConstant(rights[i])) {
+                    continue;
+                }
+
+                final double value = OPERATORS[opcodes[i]].apply(this.value(lefts[i]), this.value(rights[i]));
+                if (results[i] >= variableCount) {
+                    known[results[i]] = this.constant(value);
+                    this.remove(i, Pass.CONSTANT_FOLDING);
+                } else {
+                    opcodes[i] = ControlFlowGraph.COPY;
+                    lefts[i] = this.constant(value);
+                    rights[i] = NONE;
+                }
+                changed = true;
+            }
+            changed |= this.substituteTest(block, known);
+        }
+        return changed;
+    }
+
+    /*
+     * Forward through each block, remembering which variable or temporary is a copy of what.
+     * A copy is only good while its source keeps the value it had: every operand has a
+     * version, bumped whenever it is set, and a copy records its source's version.
+     */
+    private boolean propagateCopies() {
+        boolean changed = false;
+        final int[] copies = new int[operandCount];
+        final int[] copiedVersions = new int[operandCount];
+        final int[] versions = new int[operandCount];
+        Arrays.fill(copies, NONE);
+        int[] copied = new int[16];
+
+        for (int block = 0; block < reachable.length; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            int copiedCount = 0;
+            for (int i = graph.first(block); i < graph.end(block); i++) {
+                if (opcodes[i] == NOP) {
+                    continue;
+                }
+                final int left = this.copyOf(lefts[i], copies, copiedVersions, versions);
+                final int right = this.copyOf(rights[i], copies, copiedVersions, versions);
+                if (left != lefts[i] || right != rights[i]) {
+                    lefts[i] = left;
+                    rights[i] = right;
+                    changed = true;
+                }
+
+                final int result = results[i];
+                if (result == NONE) {
+                    continue;
+                }
+                versions[result]++;
+                copies[result] = NONE;
+                if (opcodes[i] == ControlFlowGraph.COPY) {
+                    if (left == result) {
+                        // x = x
+                        this.remove(i, Pass.COPY_PROPAGATION);
+                        changed = true;
+                    } else {
+                        copies[result] = left;
+                        copiedVersions[result] = ControlFlowGraph.isConstant(left) ? 0 : versions[left];
+                        if (copiedCount == copied.length) {
+                            copied = Arrays.copyOf(copied, copiedCount * 2);
+                        }
+                        copied[copiedCount++] = result;
+                    }
+                }
+            }
+
+            final int testLeft = this.copyOf(testLefts[block], copies, copiedVersions, versions);
+            final int testRight = this.copyOf(testRights[block], copies, copiedVersions, versions);
+            if (testLeft != testLefts[block] || testRight != testRights[block]) {
+                testLefts[block] = testLeft;
+                testRights[block] = testRight;
+                changed = true;
+            }
+
+            // A copy made in this block may not hold in the next.
+            for (int c = 0; c < copiedCount; c++) {
+                copies[copied[c]] = NONE;
+            }
+        }
+        return changed;
+    }
+
+    /*
+     * Branches on two constants become gotos, then the blocks that can no longer be reached
+     * are dropped along with their instructions.
+     */
+    private boolean removeUnreachableCode() {
+        boolean changed = false;
+        for (int block = 0; block < reachable.length; block++) {
+            if (!reachable[block] || exits[block] != ControlFlowGraph.BRANCH) {
+                continue;
+            }
+            if (ControlFlowGraph.isConstant(testLefts[block]) && ControlFlowGraph.isConstant(testRights[block])) {
+                if (!RELATIONS[relations[block]].test(this.value(testLefts[block]), this.value(testRights[block]))) {
+                    nexts[block] = otherwises[block];
+                }
+            } else if (nexts[block] != otherwises[block]) {
+                continue;
+            }
+            exits[block] = ControlFlowGraph.GOTO;
+            testLefts[block] = NONE;
+            testRights[block] = NONE;
+            otherwises[block] = -1;
+            changed = true;
+        }
+
+        final boolean[] before = reachable.clone();
+        this.markReachable();
+        for (int block = 0; block < reachable.length; block++) {
+            if (before[block] && !reachable[block]) {
+                for (int i = graph.first(block); i < graph.end(block); i++) {
+                    if (opcodes[i] != NOP) {
+                        this.remove(i, Pass.UNREACHABLE_CODE);
+                    }
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /*
+     * Liveness of the variables between blocks (one bit per variable per block, iterated to a
+     * fixed point), then one backward scan per block. Temporaries never live across blocks.
+     */
+    private boolean eliminateDeadCode() {
+        final int blocks = reachable.length;
+        final int words = (variableCount + 63) >>> 6;
+        final long[] uses = new long[blocks * words];
+        final long[] defs = new long[blocks * words];
+        final long[] liveIn = new long[blocks * words];
+        final long[] liveOut = new long[blocks * words];
+
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            final int base = block * words;
+            for (int i = graph.first(block); i < graph.end(block); i++) {
+                if (opcodes[i] != NOP) {
+                    this.use(uses, defs, base, lefts[i]);
+                    this.use(uses, defs, base, rights[i]);
+                    if (results[i] != NONE && results[i] < variableCount) {
+                        defs[base + (results[i] >>> 6)] |= 1L << results[i];
+                    }
+                }
+            }
+            this.use(uses, defs, base, testLefts[block]);
+            this.use(uses, defs, base, testRights[block]);
+        }
+
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int block = blocks - 1; block >= 0; block--) {
+                if (!reachable[block]) {
+                    continue;
+                }
+                final int base = block * words;
+                for (int w = 0; w < words; w++) {
+                    long out = 0;
+                    if (exits[block] != ControlFlowGraph.HALT) {
+                        out |= liveIn[nexts[block] * words + w];
+                    }
+                    if (exits[block] == ControlFlowGraph.BRANCH) {
+                        out |= liveIn[otherwises[block] * words + w];
+                    }
+                    liveOut[base + w] = out;
+                    final long in = uses[base + w] | (out & ~defs[base + w]);
+                    if (in != liveIn[base + w]) {
+                        liveIn[base + w] = in;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        boolean changed = false;
+        final boolean[] live = new boolean[operandCount];
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            final int base = block * words;
+            for (int v = 0; v < variableCount; v++) {
+                live[v] = (liveOut[base + (v >>> 6)] & (1L << v)) != 0;
+            }
+            this.markLive(live, testLefts[block]);
+            this.markLive(live, testRights[block]);
+
+            for (int i = graph.end(block) - 1; i >= graph.first(block); i--) {
+                final int opcode = opcodes[i];
+                if (opcode == NOP) {
+                    continue;
+                }
+                if (opcode == ControlFlowGraph.WRITE) {
+                    this.markLive(live, lefts[i]);
+                } else if (opcode == ControlFlowGraph.READ) {
+                    live[results[i]] = false;
+                } else if (!live[results[i]]) {
+                    this.remove(i, Pass.DEAD_CODE);
+                    changed = true;
+                } else {
+                    live[results[i]] = false;
+                    this.markLive(live, lefts[i]);
+                    this.markLive(live, rights[i]);
+                }
+            }
+        }
+        return changed;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * The optimized graph: the reachable blocks in their order, without the removed
+     * instructions. A block that only the block before it goes to, by a goto, is merged into
+     * it; with blocks removed, straight-line code often ends up split over several.
+     */
+    private ControlFlowGraph layOut() {
+        final int blocks = reachable.length;
+        final int[] predecessors = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            if (reachable[block] && exits[block] != ControlFlowGraph.HALT) {
+                predecessors[nexts[block]]++;
+                if (exits[block] == ControlFlowGraph.BRANCH) {
+                    predecessors[otherwises[block]]++;
+                }
+            }
+        }
+
+        final int[] numbers = new int[blocks];
+        int blockCount = 0;
+        int instructionCount = 0;
+        int previous = -1;
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            if (previous >= 0 && exits[previous] == ControlFlowGraph.GOTO && nexts[previous] == block
+                    && predecessors[block] == 1) {
+                numbers[block] = numbers[previous];
+            } else {
+                numbers[block] = blockCount++;
+            }
+            for (int i = graph.first(block); i < graph.end(block); i++) {
+                if (opcodes[i] != NOP) {
+                    instructionCount++;
+                }
+            }
+            previous = block;
+        }
+
+        final int[] newOpcodes = new int[instructionCount];
+        final int[] newResults = new int[instructionCount];
+        final int[] newLefts = new int[instructionCount];
+        final int[] newRights = new int[instructionCount];
+        final int[] firsts = new int[blockCount];
+        final int[] ends = new int[blockCount];
+        final int[] newExits = new int[blockCount];
+        final int[] newRelations = new int[blockCount];
+        final int[] newTestLefts = new int[blockCount];
+        final int[] newTestRights = new int[blockCount];
+        final int[] newNexts = new int[blockCount];
+        final int[] newOtherwises = new int[blockCount];
+
+        int at = 0;
+        previous = -1;
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            // A merged block adds its instructions to its group's and takes over the exit.
+            final int b = numbers[block];
+            if (previous < 0 || numbers[previous] != b) {
+                firsts[b] = at;
+            }
+            for (int i = graph.first(block); i < graph.end(block); i++) {
+                if (opcodes[i] != NOP) {
+                    newOpcodes[at] = opcodes[i];
+                    newResults[at] = results[i];
+                    newLefts[at] = lefts[i];
+                    newRights[at] = rights[i];
+                    at++;
+                }
+            }
+            ends[b] = at;
+            newExits[b] = exits[block];
+            newRelations[b] = relations[block];
+            newTestLefts[b] = testLefts[block];
+            newTestRights[b] = testRights[block];
+            newNexts[b] = exits[block] == ControlFlowGraph.HALT ? -1 : numbers[nexts[block]];
+            newOtherwises[b] = exits[block] == ControlFlowGraph.BRANCH ? numbers[otherwises[block]] : -1;
+            previous = block;
+        }
+
+        return new ControlFlowGraph(graph.getVariables(), Arrays.copyOf(constants, constantCount),
+                graph.temporaryCount(), newOpcodes, newResults, newLefts, newRights, firsts, ends, newExits,
+                newRelations, newTestLefts, newTestRights, newNexts, newOtherwises);
+    }
+
+    private void markReachable() {
+        Arrays.fill(reachable, false);
+        final int[] stack = new int[reachable.length];
+        int top = 0;
+        stack[top++] = 0;
+        reachable[0] = true;
+        while (top > 0) {
+            final int block = stack[--top];
+            if (exits[block] == ControlFlowGraph.HALT) {
+                continue;
+            }
+            if (!reachable[nexts[block]]) {
+                reachable[nexts[block]] = true;
+                stack[top++] = nexts[block];
+            }
+            if (exits[block] == ControlFlowGraph.BRANCH && !reachable[otherwises[block]]) {
+                reachable[otherwises[block]] = true;
+                stack[top++] = otherwises[block];
+            }
+        }
+    }
+
+    // Replace an instruction's operands that have a known replacement.
+    private boolean substitute(final int i, final int[] replacements) {
+        boolean changed = false;
+        if (lefts[i] >= 0 && replacements[lefts[i]] != NONE) {
+            lefts[i] = replacements[lefts[i]];
+            changed = true;
+        }
+        if (rights[i] >= 0 && replacements[rights[i]] != NONE) {
+            rights[i] = replacements[rights[i]];
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean substituteTest(final int block, final int[] replacements) {
+        boolean changed = false;
+        if (testLefts[block] >= 0 && replacements[testLefts[block]] != NONE) {
+            testLefts[block] = replacements[testLefts[block]];
+            changed = true;
+        }
+        if (testRights[block] >= 0 && replacements[testRights[block]] != NONE) {
+            testRights[block] = replacements[testRights[block]];
+            changed = true;
+        }
+        return changed;
+    }
+
+    // What an operand is a still-valid copy of, or the operand itself.
+    private int copyOf(final int operand, final int[] copies, final int[] copiedVersions, final int[] versions) {
+        if (operand < 0 || copies[operand] == NONE) {
+            return operand;
+        }
+        final int source = copies[operand];
+        return ControlFlowGraph.isConstant(source) || versions[source] == copiedVersions[operand] ? source : operand;
+    }
+
+    private void use(final long[] uses, final long[] defs, final int base, final int operand) {
+        if (operand >= 0 && operand < variableCount && (defs[base + (operand >>> 6)] & (1L << operand)) == 0) {
+            uses[base + (operand >>> 6)] |= 1L << operand;
+        }
+    }
+
+    private void markLive(final boolean[] live, final int operand) {
+        if (operand >= 0) {
+            live[operand] = true;
+        }
+    }
+
+    private void remove(final int i, final Pass pass) {
+        opcodes[i] = NOP;
+        removed[pass.ordinal()]++;
+    }
+
+    private double value(final int constant) {
+        return constants[-1 - constant];
+    }
+
+    private int constant(final double value) {
+        return -1 - constantOperands.computeIfAbsent(Double.doubleToRawLongBits(value), bits -> {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, Math.max(8, constantCount * 2));
+            }
+            constants[constantCount] = value;
+            return constantCount++;
+        });
+    }
+}
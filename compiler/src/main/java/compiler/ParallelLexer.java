@@ -0,0 +1,185 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans a large source on all cores ({@code --lexer parallel}).
+ * <p>
+ * The source is cut into chunks just after line breaks. A line break is never part of a token
+ * and always ends a comment, so the {@link LexicalAnalyzer} is back in its start state after
+ * one: each chunk scans exactly as it would in one pass over the whole source. The chunks are
+ * scanned on a {@link ForkJoinPool} (the batch's, inside {@code --batch}) into token buffers of
+ * their own, which are then joined in order. A single line longer than a chunk is simply not
+ * cut.
+ * <p>
+ * A file is memory-mapped, and each chunk's task copies its own bytes out of the mapping just
+ * before scanning them, so reading the file is spread across the cores too. The tokens refer
+ * to the source by int offsets into one byte array, which limits a source to 2 GB.
+ */
+final class ParallelLexer {
+
+    // Below this, a chunk isn't worth a task of its own (by default).
+    static final int MIN_CHUNK = 1024 * 1024;
+
+    // Chunks per thread, so that the threads even out chunks that take longer than others.
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelLexer() {
+    }
+
+    /**
+     * Scan source that is already in memory.
+     *
+     * @param source the UTF-8 encoded program
+     * @return the lexer over all of its tokens
+     */
+    static LexicalAnalyzer lex(final byte[] source) {
+        return lex(source, MIN_CHUNK);
+    }
+
+    /**
+     * Scan source that is already in memory, in chunks of at least a given size.
+     *
+     * @param source   the UTF-8 encoded program
+     * @param minChunk the smallest chunk worth a task of its own
+     * @return the lexer over all of its tokens
+     */
+    static LexicalAnalyzer lex(final byte[] source, final int minChunk) {
+        return lex(ByteBuffer.wrap(source), source, null, minChunk);
+    }
+
+    /**
+     * Map a file into memory and scan it.
+     *
+     * @param file the program
+     * @return the lexer over all of its tokens
+     * @throws IOException if the file can't be read, or is larger than 2 GB
+     */
+    static LexicalAnalyzer lex(final Path file) throws IOException {
+        return lex(file, MIN_CHUNK);
+    }
+
+    /**
+     * Map a file into memory and scan it, in chunks of at least a given size.
+     *
+     * @param file     the program
+     * @param minChunk the smallest chunk worth a task of its own
+     * @return the lexer over all of its tokens
+     * @throws IOException if the file can't be read, or is larger than 2 GB
+     */
+    static LexicalAnalyzer lex(final Path file, final int minChunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final int size = TokenBuffer.sourceSize(file, channel.size());
+            final var source = new byte[size];
+            return lex(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), source, source, minChunk);
+        }
+    }
+
+    // Scan input, which is (or, if target isn't null, is copied into) source.
+    private static LexicalAnalyzer lex(final ByteBuffer input, final byte[] source, final byte[] target,
+                                       final int minChunk) {
+        if (minChunk <= 0) {
+            throw new IllegalArgumentException("Not a chunk size: " + minChunk);
+        }
+        final int[] bounds = split(input, chunkCount(source.length, minChunk));
+        final var parts = new TokenBuffer[bounds.length - 1];
+
+        final var task = new ScanTask(input, target, source, bounds, parts, 0, parts.length);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return new LexicalAnalyzer(parts.length == 1 ? parts[0] : TokenBuffer.concat(source, parts));
+    }
+
+    // Enough chunks to keep every thread of the pool busy, none of them tiny.
+    private static int chunkCount(final int length, final int minChunk) {
+        final ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        final int threads = Math.max(1, pool.getParallelism());
+        return Math.max(1, Math.min(length / minChunk, threads * CHUNKS_PER_THREAD));
+    }
+
+    /**
+     * Cut the input into about as many chunks, each starting just after a line break.
+     *
+     * @param input  the source
+     * @param chunks how many chunks to aim for
+     * @return the chunk bounds: chunk i is {@code [bounds[i]...bounds[i + 1])}
+     */
+    static int[] split(final ByteBuffer input, final int chunks) {
+        final int length = input.limit();
+        final int[] bounds = new int[chunks + 1];
+        int count = 1;
+
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int pos = Math.max((int) ((long) length * chunk / chunks), bounds[count - 1]);
+            while (pos < length && !isLineBreak(input.get(pos))) {
+                pos++;
+            }
+            if (pos + 1 >= length) {
+                break;
+            }
+            if (pos + 1 > bounds[count - 1]) {
+                bounds[count++] = pos + 1;
+            }
+        }
+        bounds[count++] = length;
+        return count == bounds.length ? bounds : Arrays.copyOf(bounds, count);
+    }
+
+    private static boolean isLineBreak(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Scans chunks {@code [from...to)}: splits them in halves until there's one left.
+     */
+    private static final class ScanTask extends RecursiveAction {
+
+        private final ByteBuffer input;
+        private final byte[] target;
+        private final byte[] source;
+        private final int[] bounds;
+        private final TokenBuffer[] parts;
+        private final int from;
+        private final int to;
+
+        ScanTask(final ByteBuffer input, final byte[] target, final byte[] source, final int[] bounds,
+                 final TokenBuffer[] parts, final int from, final int to) {
+            this.input = input;
+            this.target = target;
+            this.source = source;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                final int start = bounds[from];
+                final int end = bounds[from + 1];
+                if (target != null) {
+                    input.get(start, target, start, end - start);
+                }
+                parts[from] = new LexicalAnalyzer(source, start, end).getTokens();
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ScanTask(input, target, source, bounds, parts, from, middle),
+                    new ScanTask(input, target, source, bounds, parts, middle, to));
+        }
+    }
+}
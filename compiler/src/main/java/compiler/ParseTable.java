@@ -0,0 +1,66 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.List;
+
+/**
+ * The LL(1) parse table of a {@link Grammar}: for every non-terminal and lookahead token, the
+ * alternative to expand.
+ * <p>
+ * An alternative is entered under every token in its FIRST set (from the
+ * {@link GrammarAnalysis}). Lookaheads that start no alternative select the rule's fallback
+ * (its last alternative), exactly like the "else" branches of the recursive-descent parser;
+ * if the fallback can't match either, the error shows up when its first terminal is matched.
+ */
+final class ParseTable {
+
+    private final Grammar grammar;
+
+    // [non-terminal ordinal][token ordinal] -> production
+    private final Grammar.Production[][] table;
+
+    ParseTable(final GrammarAnalysis analysis) {
+        this.grammar = analysis.getGrammar();
+        this.table = new Grammar.Production[Grammar.NON_TERMINAL_COUNT][Grammar.TERMINAL_COUNT];
+
+        for (final NonTerminal head : NonTerminal.values()) {
+            final List<Grammar.Production> alternatives = grammar.alternatives(head);
+            if (alternatives.isEmpty()) {
+                continue;
+            }
+
+            final Grammar.Production[] row = table[head.ordinal()];
+            final Grammar.Production fallback = alternatives.get(alternatives.size() - 1);
+
+            for (final Grammar.Production production : alternatives) {
+                final long first = analysis.firstOf(production.body());
+                for (final Token token : Token.values()) {
+                    // On a FIRST/FIRST conflict the earlier alternative keeps the entry.
+                    if ((first & GrammarAnalysis.bit(token)) != 0 && row[token.ordinal()] == null) {
+                        row[token.ordinal()] = production;
+                    }
+                }
+            }
+            for (int token = 0; token < row.length; token++) {
+                if (row[token] == null) {
+                    row[token] = fallback;
+                }
+            }
+        }
+    }
+
+    Grammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * The alternative to expand.
+     *
+     * @param head      the non-terminal on top of the parse stack
+     * @param lookahead the current token
+     * @return the production to expand it with
+     */
+    Grammar.Production select(final NonTerminal head, final Token lookahead) {
+        return table[head.ordinal()][lookahead.ordinal()];
+    }
+}
@@ -0,0 +1,258 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * A parse tree kept in memory as parallel int arrays (an "arena"), instead of node objects.
+ * <p>
+ * Node {@code i} is described by {@code symbol[i]}, {@code parent[i]}, {@code firstChild[i]},
+ * {@code nextSibling[i]} and {@code tokenIndex[i]}; missing links are -1. Nodes are numbered in
+ * the order the parser created them, which is also the order of the GraphViz output, and the
+ * root is node 0.
+ * <p>
+ * Symbols use the {@link Grammar} encoding (a non-terminal, a token's box, or
+ * {@link Grammar#EMPTY}), plus {@link #ROOT} and {@link #LEXEME}. Lexemes aren't stored at all:
+ * a LEXEME node remembers its token's index in the {@link TokenBuffer}.
+ * <p>
+ * Filled by {@link ParseTreeBuilder}; read by emitters such as {@link DotEmitter}.
+ */
+final class ParseTree {
+
+    // Node kinds that aren't grammar symbols.
+    static final int ROOT = -1;
+    static final int LEXEME = -2;
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String rootName;
+    private final TokenBuffer tokens;
+
+    private int[] symbol = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private int[] tokenIndex = new int[INITIAL_CAPACITY];
+
+    // Only needed while building: appending a child is O(1).
+    private int[] lastChild = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    // Set if parsing stopped at a syntax error.
+    private String syntaxError;
+    private int syntaxErrorNode = NONE;
+
+    /**
+     * Start a tree with just its root.
+     *
+     * @param rootName the name of the root node (e.g. "PARSE TREE")
+     * @param tokens   the token stream the LEXEME nodes refer to
+     */
+    ParseTree(final String rootName, final TokenBuffer tokens) {
+        this.rootName = rootName;
+        this.tokens = tokens;
+        this.add(ROOT, NONE, NONE);
+    }
+
+    /**
+     * Append a node as the last child of its parent.
+     *
+     * @param symbol     the node's symbol
+     * @param parent     the parent node
+     * @param tokenIndex the token, for LEXEME nodes (otherwise {@link #NONE})
+     * @return the new node
+     */
+    int add(final int symbol, final int parent, final int tokenIndex) {
+        if (size == this.symbol.length) {
+            this.grow(size + 1);
+        }
+
+        final int node = size++;
+        this.symbol[node] = symbol;
+        this.parent[node] = parent;
+        this.firstChild[node] = NONE;
+        this.nextSibling[node] = NONE;
+        this.lastChild[node] = NONE;
+        this.tokenIndex[node] = tokenIndex;
+
+        if (parent != NONE) {
+            if (lastChild[parent] == NONE) {
+                firstChild[parent] = node;
+            } else {
+                nextSibling[lastChild[parent]] = node;
+            }
+            lastChild[parent] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Unhook a run of children from their parent. The nodes stay in the arena, unreachable.
+     *
+     * @param parent the parent
+     * @param after  the child before the run, or {@link #NONE} if the run starts at the first child
+     * @param last   the last child of the run
+     */
+    void unlink(final int parent, final int after, final int last) {
+        if (after == NONE) {
+            firstChild[parent] = nextSibling[last];
+        } else {
+            nextSibling[after] = nextSibling[last];
+        }
+    }
+
+    /**
+     * Copy the children of another tree's root, and everything below them, into this tree:
+     * they become children of {@code into}, right after {@code after}. The copies keep their
+     * creation order, so they take the indexes {@code [size() before the call...size())}.
+     *
+     * @param source a tree whose nodes are in creation order (as built by a parser)
+     * @param into   where the copies go
+     * @param after  the child to put them after, or {@link #NONE} to put them first
+     */
+    void graft(final ParseTree source, final int into, final int after) {
+        final int count = source.size - 1;
+        if (count == 0) {
+            return;
+        }
+        if (size + count > symbol.length) {
+            this.grow(size + count);
+        }
+
+        // Source node i (> 0) becomes node base + i.
+        final int base = size - 1;
+        for (int i = 1; i <= count; i++) {
+            final int node = base + i;
+            symbol[node] = source.symbol[i];
+            parent[node] = source.parent[i] == 0 ? into : base + source.parent[i];
+            firstChild[node] = source.firstChild[i] == NONE ? NONE : base + source.firstChild[i];
+            nextSibling[node] = source.nextSibling[i] == NONE ? NONE : base + source.nextSibling[i];
+            tokenIndex[node] = source.tokenIndex[i];
+        }
+        size += count;
+
+        // Link the copied top level between "after" and whatever followed it.
+        int lastTop = base + source.firstChild[0];
+        while (nextSibling[lastTop] != NONE) {
+            lastTop = nextSibling[lastTop];
+        }
+        if (after == NONE) {
+            nextSibling[lastTop] = firstChild[into];
+            firstChild[into] = base + source.firstChild[0];
+        } else {
+            nextSibling[lastTop] = nextSibling[after];
+            nextSibling[after] = base + source.firstChild[0];
+        }
+    }
+
+    void setSyntaxError(final String message, final int node) {
+        this.syntaxError = message;
+        this.syntaxErrorNode = node;
+    }
+
+    /**
+     * Drop the building scratch space once the tree is complete.
+     */
+    void trim() {
+        symbol = Arrays.copyOf(symbol, size);
+        parent = Arrays.copyOf(parent, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        tokenIndex = Arrays.copyOf(tokenIndex, size);
+        lastChild = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int symbol(final int node) {
+        return symbol[node];
+    }
+
+    int parent(final int node) {
+        return parent[node];
+    }
+
+    int firstChild(final int node) {
+        return firstChild[node];
+    }
+
+    int nextSibling(final int node) {
+        return nextSibling[node];
+    }
+
+    int tokenIndex(final int node) {
+        return tokenIndex[node];
+    }
+
+    TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    boolean isNonTerminal(final int node) {
+        return symbol[node] >= 0 && Grammar.isNonTerminal(symbol[node]);
+    }
+
+    boolean isToken(final int node) {
+        return symbol[node] >= 0 && Grammar.isTerminal(symbol[node]);
+    }
+
+    boolean isEmpty(final int node) {
+        return symbol[node] == Grammar.EMPTY;
+    }
+
+    boolean isLexeme(final int node) {
+        return symbol[node] == LEXEME;
+    }
+
+    /**
+     * The node's name in the parse tree: "PARSE TREE", "&lt;STMT&gt;", "&lt;ASSIGNMENT&gt;", "EMPTY" or the lexeme.
+     *
+     * @param node the node
+     * @return its name
+     */
+    String name(final int node) {
+        final int code = symbol[node];
+
+        if (code == ROOT) {
+            return rootName;
+        } else if (code == LEXEME) {
+            return tokens.lexeme(tokenIndex[node]);
+        } else if (code == Grammar.EMPTY) {
+            return "EMPTY";
+        } else if (Grammar.isTerminal(code)) {
+            return Grammar.token(code).getLabel();
+        }
+        return Grammar.nonTerminal(code).getLabel();
+    }
+
+    /**
+     * @return the syntax error message, or null if the program parsed.
+     */
+    String getSyntaxError() {
+        return syntaxError;
+    }
+
+    /**
+     * @return the node at which parsing failed, or {@link #NONE}.
+     */
+    int getSyntaxErrorNode() {
+        return syntaxErrorNode;
+    }
+
+    private void grow(final int needed) {
+        final int capacity = Math.max(needed, size + (size >> 1));
+        symbol = Arrays.copyOf(symbol, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        tokenIndex = Arrays.copyOf(tokenIndex, capacity);
+        if (lastChild != null) {
+            lastChild = Arrays.copyOf(lastChild, capacity);
+        }
+    }
+}
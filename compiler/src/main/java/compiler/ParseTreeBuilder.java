@@ -0,0 +1,75 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * Records what a parser reports into a {@link ParseTree}, instead of generating code right away.
+ * <p>
+ * The {@link TreeNode} handles given back to the parser are numbered by their index in the
+ * tree, and are only kept by the parser for as long as it is working on them; the tree itself
+ * holds nothing but ints.
+ */
+final class ParseTreeBuilder implements ParseTreeListener {
+
+    private final LexicalAnalyzer lexer;
+    private ParseTree tree;
+
+    /**
+     * @param lexer the lexer the parser reads from (lexemes are recorded as token indexes)
+     */
+    ParseTreeBuilder(final LexicalAnalyzer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * @return the tree built so far (complete after the parser's analyze() returns)
+     */
+    ParseTree getTree() {
+        return tree;
+    }
+
+    @Override
+    public TreeNode writeHeader(final String nodeString) {
+        this.tree = new ParseTree(nodeString, lexer.getTokens());
+        return new TreeNode(nodeString, 0);
+    }
+
+    @Override
+    public TreeNode addNonTerminalToTree(final TreeNode parentNode, final NonTerminal symbol) {
+        final int node = tree.add(Grammar.symbol(symbol), parentNode.getNodeId(), ParseTree.NONE);
+        return new TreeNode(symbol.getLabel(), node);
+    }
+
+    @Override
+    public TreeNode addTokenToTree(final TreeNode parentNode, final Token token) {
+        final int node = tree.add(Grammar.symbol(token), parentNode.getNodeId(), ParseTree.NONE);
+        return new TreeNode(token.getLabel(), node);
+    }
+
+    @Override
+    public void addTerminalToTree(final TreeNode fromNode, final String lexeme) {
+        // The lexeme is the current token; keep its index rather than the text.
+        tree.add(ParseTree.LEXEME, fromNode.getNodeId(), lexer.getPosition());
+    }
+
+    @Override
+    public void addEmptyToTree(final TreeNode fromNode) {
+        tree.add(Grammar.EMPTY, fromNode.getNodeId(), ParseTree.NONE);
+    }
+
+    @Override
+    public void syntaxError(final String err, final TreeNode fromNode) throws ParseException {
+        tree.setSyntaxError(err, fromNode.getNodeId());
+        tree.trim();
+        throw new ParseException(err);
+    }
+
+    @Override
+    public void writeFooter() {
+        tree.trim();
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is buffered.
+    }
+}
@@ -0,0 +1,73 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * What the parsers report while they recognize a program: the nodes of the parse tree, in the
+ * order they are created, and the syntax error (if any).
+ * <p>
+ * {@link CodeGenerator} turns these straight into GraphViz output; {@link ParseTreeBuilder}
+ * records them into a {@link ParseTree} so that the output can be produced later (possibly more
+ * than once, by more than one backend).
+ */
+interface ParseTreeListener {
+
+    /**
+     * Start the tree.
+     *
+     * @param nodeString the name of the root node
+     * @return the root node
+     */
+    TreeNode writeHeader(String nodeString);
+
+    /**
+     * Add an "inner node" for a grammar rule.
+     *
+     * @param parentNode the parent of the new node
+     * @param symbol     the grammar rule the new node stands for
+     * @return the new node
+     */
+    TreeNode addNonTerminalToTree(TreeNode parentNode, NonTerminal symbol);
+
+    /**
+     * Add the node for a matched token (its lexeme goes underneath, see {@link #addTerminalToTree}).
+     *
+     * @param parentNode the parent of the new node
+     * @param token      the matched token
+     * @return the new node
+     */
+    TreeNode addTokenToTree(TreeNode parentNode, Token token);
+
+    /**
+     * Add a lexeme (a leaf) under its token's node.
+     *
+     * @param fromNode the token's node
+     * @param lexeme   the text that was matched
+     */
+    void addTerminalToTree(TreeNode fromNode, String lexeme);
+
+    /**
+     * Add an EMPTY leaf (the result of an epsilon production).
+     *
+     * @param fromNode the parent of the leaf
+     */
+    void addEmptyToTree(TreeNode fromNode);
+
+    /**
+     * Report a syntax error; this ends the tree.
+     *
+     * @param err      the error message
+     * @param fromNode the node where parsing failed
+     * @throws ParseException always
+     */
+    void syntaxError(String err, TreeNode fromNode) throws ParseException;
+
+    /**
+     * End the tree (after a successful parse).
+     */
+    void writeFooter();
+
+    /**
+     * Push out anything that's buffered.
+     */
+    void flush();
+}
@@ -8,10 +8,6 @@ Assignment: Program 1
 Name: Kline, Justin
 */
 
-import java.util.logging.Logger;
-import java.util.ArrayList;
-import java.util.List;
-
 /*
     <PROGRAM> ::= <STMT_LIST> $$   
     <STMT_LIST> ::= <STMT> <STMT_LIST> | <EMPTY> 
@@ -33,26 +29,29 @@ import java.util.List;
  */
 public class Parser {
 
+    // FIRST/FOLLOW sets of the grammar below, computed once.
+    private static final GrammarAnalysis GRAMMAR = GrammarAnalysis.LANGUAGE;
+
     // The lexer which will provide the tokens
-    private final LexicalAnalyzer lexer;
+    private final TokenStream lexer;
 
-    // The actual "code generator"
-    private final CodeGenerator codeGenerator;
+    // The actual "code generator" (discarding everything after the first syntax error)
+    private ParseTreeListener codeGenerator;
+
+    // Every syntax error found
+    private final Diagnostics diagnostics;
 
     /**
      * This is the constructor for the Parser class which
-     * accepts a LexicalAnalyzer and a CodeGenerator object as parameters.
+     * accepts a lexer (any TokenStream) and a CodeGenerator (or any other ParseTreeListener) as parameters.
      *
      * @param lexer         The Lexer Object
-     * @param codeGenerator The CodeGenerator Object
+     * @param codeGenerator The CodeGenerator Object (or a ParseTreeBuilder)
      */
-    public Parser(LexicalAnalyzer lexer, CodeGenerator codeGenerator) {
+    public Parser(TokenStream lexer, ParseTreeListener codeGenerator) {
         this.lexer = lexer;
         this.codeGenerator = codeGenerator;
-
-        // Change this to automatically prompt to see the Open WebGraphViz dialog or
-        // not.
-        MAIN.PROMPT_FOR_GRAPHVIZ = true;
+        this.diagnostics = new Diagnostics(lexer);
     }
 
     /*
@@ -60,8 +59,12 @@ public class Parser {
      * the "analyze" method must invoke the start rule.
      *
      * Begin analyzing...
+     *
+     * Returns true if the program parsed, false if there were syntax errors (all of them
+     * are in getDiagnostics()).
      */
-    void analyze() {
+    boolean analyze() {
+        final ParseTreeListener output = codeGenerator;
         try {
             // Generate header for our output
             TreeNode startNode = codeGenerator.writeHeader("PARSE TREE");
@@ -69,15 +72,29 @@ public class Parser {
             // THIS IS OUR START RULE
             this.beginParsing(startNode);
 
-            // generate footer for our output
-            codeGenerator.writeFooter();
+            if (!diagnostics.hasErrors()) {
+                // generate footer for our output
+                codeGenerator.writeFooter();
+                return true;
+            }
 
-        } catch (ParseException ex) {
-            final String msg = String.format("%s\n", ex.getMessage());
-            Logger.getAnonymousLogger().severe(msg);
+            // Let the partial output reach the console before the errors do.
+            output.flush();
+            diagnostics.log();
+            return false;
+        } finally {
+            // Push out whatever the code generator is still holding on to.
+            output.flush();
         }
     }
 
+    /**
+     * @return the syntax errors found by {@link #analyze()}
+     */
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
     //////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
@@ -95,41 +112,49 @@ public class Parser {
 
     // <PROGRAM> ::= <STMT_LIST> $$
     private void PROGRAM(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.PROGRAM);
         this.STMT_LIST(thisNode);
-        // Test for the end of input.
-        if (lexer.currentToken() != Token.$$) {
-            this.raiseException(Token.$$, thisNode);
+        // Test for the end of input; skip anything else up to the next statement, and go on.
+        while (lexer.currentToken() != Token.$$) {
+            try {
+                this.raiseException(Token.$$, thisNode);
+            } catch (ParseException ex) {
+                // Recorded in the diagnostics.
+            }
+            do {
+                lexer.advanceToken();
+            } while (lexer.currentToken() != Token.$$ && !GRAMMAR.inFirst(NonTerminal.STMT, lexer.currentToken()));
+            this.STMT_LIST(thisNode);
         }
     }
 
     // <STMT_LIST> ::= <STMT> <STMT_LIST> | <EMPTY>
+    // The rest of the list hangs off the same parent, so the recursion is a loop: a statement
+    // per round, and the stack doesn't grow with the length of the program.
     private void STMT_LIST(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
-        this.STMT(thisNode);
-
-        // These are the FIRST(STMT_LIST)
-        List<Token> stmtFirstList = new ArrayList<Token>() {
-            {
-                add(Token.UNKNOWN);
-                add(Token.READ);
-                add(Token.WRITE);
-                add(Token.WHILE);
-                add(Token.DO);
-                add(Token.IF);
+        while (true) {
+            final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.STMT_LIST);
+            try {
+                this.STMT(thisNode);
+            } catch (ParseException ex) {
+                // Panic mode: skip to where the next statement (or the end of this list) starts.
+                while (!Diagnostics.isSynchronizing(lexer.currentToken())) {
+                    lexer.advanceToken();
+                }
+            }
+
+            // These are the FIRST(STMT_LIST)
+            if (!GRAMMAR.inFirst(NonTerminal.STMT, lexer.currentToken())) {
+                this.EMPTY(thisNode);
+                return;
             }
-        };
-        if (stmtFirstList.contains(lexer.currentToken())) {
-            this.STMT_LIST(parentNode);
-        } else {
-            this.EMPTY(thisNode);
         }
     }
 
     // <STMT> ::= <ID> := <EXPR> | read <ID> | write <EXPR> | <WHILE_STMT> |
     // <DO_STMT> | <IF_STMT>
     private void STMT(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.STMT);
         if (lexer.currentToken() == Token.UNKNOWN) {
             this.MATCH(thisNode, Token.UNKNOWN);
             this.MATCH(thisNode, Token.ASSIGNMENT);
@@ -152,14 +177,14 @@ public class Parser {
 
     // <EXPR> ::= <TERM> <TERM_TAIL>
     private void EXPR(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.EXPR);
         this.TERM(thisNode);
         this.TERM_TAIL(thisNode);
     }
 
     // <TERM_TAIL> ::= <ADD_OP> <TERM> <TERM_TAIL> | <EMPTY>
     private void TERM_TAIL(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.TERM_TAIL);
 
         if (lexer.currentToken() == Token.ADD_OP) {
             this.MATCH(thisNode, Token.ADD_OP);
@@ -173,14 +198,14 @@ public class Parser {
 
     // <TERM> ::= <FACTOR> <FACTOR_TAIL>
     private void TERM(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.TERM);
         this.FACTOR(thisNode);
         this.FACTOR_TAIL(thisNode);
     }
 
     // <FACTOR_TAIL> ::= <MULT_OP> <FACTOR> <FACTOR_TAIL> | <EMPTY>
     private void FACTOR_TAIL(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.FACTOR_TAIL);
         if (lexer.currentToken() == Token.MULT_OP) {
             this.MATCH(thisNode, Token.MULT_OP);
             this.FACTOR(thisNode);
@@ -194,7 +219,7 @@ public class Parser {
 
     // <FACTOR> ::= ( <EXPR> ) | <ID> | <NUMBER>
     private void FACTOR(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.FACTOR);
 
         if (lexer.currentToken() == Token.LEFTP) {
             this.MATCH(thisNode, Token.LEFTP);
@@ -210,18 +235,34 @@ public class Parser {
 
     // <CONDITION> ::= <EXPR> <RELATION> <EXPR>
     private void CONDITION(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.CONDITION);
         this.EXPR(thisNode);
         this.MATCH(thisNode, Token.RELATION);
         this.EXPR(thisNode);
     }
 
+    // A while's or an if's condition. After a syntax error in it, skip to the keyword that
+    // follows it, so that the statement goes on with its body; only if a statement boundary
+    // comes first is the error left to the enclosing statement list.
+    private void CONDITION(final TreeNode parentNode, final Token keyword) throws ParseException {
+        try {
+            this.CONDITION(parentNode);
+        } catch (ParseException ex) {
+            while (lexer.currentToken() != keyword) {
+                if (Diagnostics.isSynchronizing(lexer.currentToken())) {
+                    throw ex;
+                }
+                lexer.advanceToken();
+            }
+        }
+    }
+
     // <WHILE_STATEMENT> ::= <WHILE> <CONDITION> <DO> <STMT_LIST> <OD>
     private void WHILE_STMT(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.WHILE_STMT);
 
         this.MATCH(thisNode, Token.WHILE);
-        this.CONDITION(thisNode);
+        this.CONDITION(thisNode, Token.DO);
         this.MATCH(thisNode, Token.DO);
         this.STMT_LIST(thisNode);
         this.MATCH(thisNode, Token.OD);
@@ -229,7 +270,7 @@ public class Parser {
 
     // <DO_STATEMENT> ::= <DO> <STMT_LIST> <UNTIL> <CONDITION>
     private void DO_STMT(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.DO_STMT);
 
         this.MATCH(thisNode, Token.DO);
         this.STMT_LIST(thisNode);
@@ -239,10 +280,10 @@ public class Parser {
 
     // <IF_STMT> ::= <IF> <CONDITION> <THEN> <STMT_LIST> <IF_TAIL>
     private void IF_STMT(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.IF_STMT);
 
         this.MATCH(thisNode, Token.IF);
-        this.CONDITION(thisNode);
+        this.CONDITION(thisNode, Token.THEN);
         this.MATCH(thisNode, Token.THEN);
         this.STMT_LIST(thisNode);
         this.IF_TAIL(thisNode);
@@ -251,7 +292,7 @@ public class Parser {
 
     // <IF_TAIL> ::= <ELSE> <STMT_LIST> <FI> | <FI>
     private void IF_TAIL(final TreeNode parentNode) throws ParseException {
-        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode);
+        final TreeNode thisNode = codeGenerator.addNonTerminalToTree(parentNode, NonTerminal.IF_TAIL);
         if (lexer.currentToken() == Token.ELSE) {
             this.MATCH(thisNode, Token.ELSE);
             this.STMT_LIST(thisNode);
@@ -308,15 +349,14 @@ public class Parser {
      */
     void addTerminalToTree(final TreeNode parentNode, final Token currentToken, final String currentLexeme)
             throws ParseException {
-        var nodeLabel = "<%s>".formatted(currentToken);
-        var terminalNode = codeGenerator.addNonTerminalToTree(parentNode, nodeLabel);
+        var terminalNode = codeGenerator.addTokenToTree(parentNode, currentToken);
 
         codeGenerator.addTerminalToTree(terminalNode, currentLexeme);
     }
 
     /**
      * Raise a ParseException if the input cannot be parsed as defined by the
-     * grammar.
+     * grammar. The first error ends the tree; the parser then only looks for more errors.
      *
      * @param expected   The expected token
      * @param parentNode The token's parent node
@@ -324,6 +364,14 @@ public class Parser {
     private void raiseException(Token expected, TreeNode parentNode) throws ParseException {
         final var template = "SYNTAX ERROR: '%s' was expected but '%s' was found.";
         final var errorMessage = template.formatted(expected.name(), lexer.getCurrentLexeme());
-        codeGenerator.syntaxError(errorMessage, parentNode);
+
+        final boolean first = !diagnostics.hasErrors();
+        diagnostics.report(lexer.getPosition(), errorMessage);
+        if (first) {
+            final ParseTreeListener output = codeGenerator;
+            codeGenerator = DiscardingListener.INSTANCE;
+            output.syntaxError(errorMessage, parentNode);
+        }
+        throw new ParseException(errorMessage);
     }
 }
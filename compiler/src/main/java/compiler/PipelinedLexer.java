@@ -0,0 +1,268 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A lexer that scans on a thread of its own while the parser parses ({@code --lexer pipelined}).
+ * <p>
+ * The {@link LexicalAnalyzer} scans the whole source before the parser starts, and so does
+ * everything else one after the other on one thread. Here a lexer thread reads the file a
+ * chunk at a time and scans each chunk as soon as it is in (see {@link LexicalAnalyzer#scanToken}),
+ * handing the tokens over through a {@link TokenRing}, while the parser takes them on the
+ * calling thread. Reading, scanning and parsing (and, with {@code -o}, writing the output, see
+ * {@link CodeSink#toFileInBackground}) then overlap on a machine with more than one core.
+ * <p>
+ * The tokens are offsets into one source array, which the lexer thread fills and the parser
+ * only reads behind it, so the source has to fit in memory (2 GB at most). A full ring holds
+ * the lexer thread back; closing the lexer stops it. If reading fails, the parser gets the
+ * {@link UncheckedIOException} when it reaches the point of failure.
+ * <p>
+ * There is no going back, so this is only a {@link TokenStream}, not a {@link LexicalAnalyzer}:
+ * there are no tokens to build a {@link ParseTree} from, and the line and column of a token
+ * are only known while it is the current one.
+ */
+final class PipelinedLexer implements TokenStream, AutoCloseable {
+
+    // How much of the file the lexer thread reads before scanning it.
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final byte[] source;
+    private final TokenRing ring = new TokenRing(TokenRing.DEFAULT_CAPACITY);
+
+    // Written by the lexer thread, read once it has finished.
+    private volatile long lexNanos;
+    private volatile int tokenCount;
+
+    // The current token (null at the end of the input): source[start...end).
+    private Token token;
+    private int start;
+    private int end;
+    private int position;
+
+    // Where source[lineOffset] is, for the line and column of the current token.
+    private int lineOffset;
+    private final LineMap.Counter lines = new LineMap.Counter();
+
+    private PipelinedLexer(final byte[] source, final FileChannel channel) {
+        this.source = source;
+        final var thread = new Thread(() -> this.produce(channel), "lexer");
+        thread.setDaemon(true);
+        thread.start();
+        this.next();
+    }
+
+    /**
+     * Scan source that is already in memory.
+     *
+     * @param source the UTF-8 encoded program
+     * @return the lexer, at the first token
+     */
+    static PipelinedLexer lex(final byte[] source) {
+        return new PipelinedLexer(source, null);
+    }
+
+    /**
+     * Read and scan a file. The lexer thread closes the file when it is done.
+     *
+     * @param file the program
+     * @return the lexer, at the first token
+     * @throws IOException if the file can't be opened, or is larger than 2 GB
+     */
+    static PipelinedLexer lex(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new PipelinedLexer(new byte[TokenBuffer.sourceSize(file, channel.size())], channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public String getCurrentLexeme() {
+        if (token == null || token == Token.$$) {
+            return "EOF";
+        }
+        final String canonical = Token.canonicalLexeme(source, start, end);
+        return canonical != null ? canonical : new String(source, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Token currentToken() {
+        return token == null ? Token.$$ : token;
+    }
+
+    @Override
+    public void advanceToken() {
+        if (token != null) {
+            position++;
+            this.next();
+        }
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public int line(final int position) {
+        this.moveTo(position);
+        return lines.line();
+    }
+
+    @Override
+    public int column(final int position) {
+        this.moveTo(position);
+        return lines.column();
+    }
+
+    /**
+     * @return where the current token starts in the source, in bytes
+     */
+    int getTokenStart() {
+        return start;
+    }
+
+    /**
+     * @return where the current token ends in the source, in bytes (exclusive)
+     */
+    int getTokenEnd() {
+        return end;
+    }
+
+    /**
+     * Stop the lexer thread, if it's still running, e.g. after the parser gave up early.
+     */
+    @Override
+    public void close() {
+        ring.close();
+    }
+
+    /**
+     * @return the size of the source
+     */
+    long getSourceSize() {
+        return source.length;
+    }
+
+    /**
+     * @return how many tokens the lexer thread scanned, once the parser is at the end
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return how long the lexer thread took, reading included but not waiting for the parser,
+     * once the parser is at the end
+     */
+    long getLexNanos() {
+        return lexNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelinedLexer{token " + position + ": " + this.currentToken() + " '" + this.getCurrentLexeme() + "'}";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // The parser's thread
+
+    private void next() {
+        if (ring.take()) {
+            token = ring.kind();
+            start = ring.start();
+            end = ring.end();
+        } else {
+            token = null;
+            start = source.length;
+            end = source.length;
+        }
+    }
+
+    // Count lines and columns up to the current token. Errors come in source order, so each
+    // byte is only counted once; the lexer thread is done with everything before the token.
+    private void moveTo(final int position) {
+        if (position != this.position) {
+            throw new IllegalArgumentException("Only the current token's position is known: " + position);
+        }
+        lines.count(source, lineOffset, start);
+        lineOffset = start;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // The lexer thread
+
+    // Read (unless the source is in memory already) and scan the whole source into the ring.
+    private void produce(final FileChannel channel) {
+        final long begin = System.nanoTime();
+        Throwable failure = null;
+        int tokens = 0;
+
+        try (channel) {
+            final ByteBuffer window = ByteBuffer.wrap(source);
+            int limit = channel == null ? source.length : 0;
+            int pos = 0;
+
+            while (!ring.isClosed()) {
+                // Scan everything up to the last token or comment that may go on in the next chunk.
+                final boolean last = limit == source.length;
+                while (pos < limit) {
+                    final byte b = source[pos];
+                    if (LexicalAnalyzer.isSpace(b)) {
+                        pos++;
+                        continue;
+                    }
+                    if (LexicalAnalyzer.isComment(b)) {
+                        final int commentEnd = LexicalAnalyzer.skipComment(source, pos, limit);
+                        if (commentEnd == limit && !last) {
+                            break;
+                        }
+                        pos = commentEnd;
+                        continue;
+                    }
+
+                    final long scanned = LexicalAnalyzer.scanToken(source, pos, limit);
+                    final int tokenEnd = LexicalAnalyzer.end(scanned);
+                    if (tokenEnd == limit && !last) {
+                        break;
+                    }
+                    if (!ring.put(LexicalAnalyzer.kind(scanned), pos, tokenEnd)) {
+                        return;
+                    }
+                    tokens++;
+                    pos = tokenEnd;
+                }
+                if (last) {
+                    break;
+                }
+
+                // Let the parser at what there is while the next chunk is read.
+                ring.publish();
+                window.limit(Math.min(source.length, limit + CHUNK_SIZE)).position(limit);
+                while (window.hasRemaining()) {
+                    if (channel.read(window) < 0) {
+                        throw new IOException("The source ended early (the file shrank while it was read).");
+                    }
+                }
+                limit = window.position();
+            }
+        } catch (IOException ex) {
+            failure = new UncheckedIOException(ex);
+        } catch (RuntimeException | Error ex) {
+            failure = ex;
+        } finally {
+            tokenCount = tokens;
+            lexNanos = System.nanoTime() - begin - ring.getWaitNanos();
+            ring.finish(failure);
+        }
+    }
+}
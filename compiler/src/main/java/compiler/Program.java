@@ -0,0 +1,321 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed program in a form that can be run: statements and expressions instead of grammar
+ * rules, built from a {@link ParseTree} in one pass.
+ * <p>
+ * The pass folds the grammar's helper rules away (&lt;TERM_TAIL&gt; chains become
+ * left-associative {@link Binary} nodes, parentheses disappear) and resolves every variable
+ * to a slot number, once: a running program keeps its variables in a {@code double[]} and never
+ * looks a name up. The slot numbers follow the order in which the variables first appear.
+ * <p>
+ * The language has one type, a double. Variables start at 0; {@code read} reads the next
+ * number from the input and {@code write} writes a number on a line of its own.
+ */
+final class Program {
+
+    /**
+     * A statement.
+     */
+    sealed interface Statement permits Assign, Read, Write, While, DoUntil, If {
+    }
+
+    /**
+     * An expression.
+     */
+    sealed interface Expression permits Constant, Variable, Binary {
+    }
+
+    record Assign(int slot, Expression value) implements Statement {
+    }
+
+    record Read(int slot) implements Statement {
+    }
+
+    record Write(Expression value) implements Statement {
+    }
+
+    record While(Condition condition, Statement[] body) implements Statement {
+    }
+
+    record DoUntil(Statement[] body, Condition condition) implements Statement {
+    }
+
+    /**
+     * @param otherwise the "else" part (empty if there is none)
+     */
+    record If(Condition condition, Statement[] then, Statement[] otherwise) implements Statement {
+    }
+
+    record Constant(double value) implements Expression {
+    }
+
+    record Variable(int slot) implements Expression {
+    }
+
+    record Binary(Operator operator, Expression left, Expression right) implements Expression {
+    }
+
+    record Condition(Relation relation, Expression left, Expression right) {
+    }
+
+    /**
+     * The {@link Token#ADD_OP} and {@link Token#MULT_OP} operators.
+     */
+    enum Operator {
+        ADD, SUBTRACT, MULTIPLY, DIVIDE;
+
+        static Operator fromLexeme(final String lexeme) {
+            return switch (lexeme) {
+                case "+" -> ADD;
+                case "-" -> SUBTRACT;
+                case "*" -> MULTIPLY;
+                case "/" -> DIVIDE;
+                default -> throw new IllegalArgumentException("Not an operator: " + lexeme);
+            };
+        }
+
+        double apply(final double left, final double right) {
+            return switch (this) {
+                case ADD -> left + right;
+                case SUBTRACT -> left - right;
+                case MULTIPLY -> left * right;
+                case DIVIDE -> left / right;
+            };
+        }
+    }
+
+    /**
+     * The {@link Token#RELATION} operators.
+     */
+    enum Relation {
+        LESS, GREATER, LESS_EQUAL, GREATER_EQUAL, EQUAL, NOT_EQUAL;
+
+        static Relation fromLexeme(final String lexeme) {
+            return switch (lexeme) {
+                case "<" -> LESS;
+                case ">" -> GREATER;
+                case "<=" -> LESS_EQUAL;
+                case ">=" -> GREATER_EQUAL;
+                case "=" -> EQUAL;
+                case "!=" -> NOT_EQUAL;
+                default -> throw new IllegalArgumentException("Not a relation: " + lexeme);
+            };
+        }
+
+        boolean test(final double left, final double right) {
+            return switch (this) {
+                case LESS -> left < right;
+                case GREATER -> left > right;
+                case LESS_EQUAL -> left <= right;
+                case GREATER_EQUAL -> left >= right;
+                case EQUAL -> left == right;
+                case NOT_EQUAL -> left != right;
+            };
+        }
+    }
+
+    private static final Statement[] NO_STATEMENTS = new Statement[0];
+
+    private static final int STMT_LIST = Grammar.symbol(NonTerminal.STMT_LIST);
+    private static final int CONDITION = Grammar.symbol(NonTerminal.CONDITION);
+    private static final int IF_TAIL = Grammar.symbol(NonTerminal.IF_TAIL);
+    private static final int WHILE_STMT = Grammar.symbol(NonTerminal.WHILE_STMT);
+    private static final int DO_STMT = Grammar.symbol(NonTerminal.DO_STMT);
+    private static final int IF_STMT = Grammar.symbol(NonTerminal.IF_STMT);
+    private static final int READ = Grammar.symbol(Token.READ);
+    private static final int WRITE = Grammar.symbol(Token.WRITE);
+    private static final int UNKNOWN = Grammar.symbol(Token.UNKNOWN);
+    private static final int NUMBER = Grammar.symbol(Token.NUMBER);
+    private static final int LEFTP = Grammar.symbol(Token.LEFTP);
+    private static final int ADD_OP = Grammar.symbol(Token.ADD_OP);
+    private static final int MULT_OP = Grammar.symbol(Token.MULT_OP);
+
+    private final Statement[] body;
+    private final String[] variables;
+
+    private Program(final Statement[] body, final String[] variables) {
+        this.body = body;
+        this.variables = variables;
+    }
+
+    /**
+     * Build the program from its parse tree.
+     *
+     * @param tree the parse tree of a program that parsed without errors
+     * @return the program
+     */
+    static Program from(final ParseTree tree) {
+        if (tree.getSyntaxError() != null) {
+            throw new IllegalArgumentException("The program has a syntax error: " + tree.getSyntaxError());
+        }
+        return new Builder(tree).build();
+    }
+
+    Statement[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the name of the variable in each slot
+     */
+    String[] getVariables() {
+        return variables;
+    }
+
+    int getSlotCount() {
+        return variables.length;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * The pass from parse tree to program. Statement lists are flat in the tree and expression
+     * tails are walked in loops, so only nesting (loops, ifs, parentheses) recurses.
+     */
+    private static final class Builder {
+
+        private final ParseTree tree;
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        Builder(final ParseTree tree) {
+            this.tree = tree;
+        }
+
+        Program build() {
+            final int program = tree.firstChild(0);
+            return new Program(this.statements(program), names.toArray(new String[0]));
+        }
+
+        // The statements of the STMT_LIST children of a node.
+        private Statement[] statements(final int owner) {
+            final List<Statement> statements = new ArrayList<>();
+            for (int list = tree.firstChild(owner); list != ParseTree.NONE; list = tree.nextSibling(list)) {
+                if (tree.symbol(list) == STMT_LIST) {
+                    final Statement statement = this.statement(tree.firstChild(list));
+                    if (statement != null) {
+                        statements.add(statement);
+                    }
+                }
+            }
+            return statements.isEmpty() ? NO_STATEMENTS : statements.toArray(NO_STATEMENTS);
+        }
+
+        // A STMT node (null for the empty statement).
+        private Statement statement(final int stmt) {
+            final int first = tree.firstChild(stmt);
+            if (first == ParseTree.NONE) {
+                return null;
+            }
+
+            final int symbol = tree.symbol(first);
+            if (symbol == UNKNOWN) {
+                // <ID> := <EXPR>
+                final int assignment = tree.nextSibling(first);
+                return new Assign(this.slot(first), this.expression(tree.nextSibling(assignment)));
+            } else if (symbol == READ) {
+                return new Read(this.slot(tree.nextSibling(first)));
+            } else if (symbol == WRITE) {
+                return new Write(this.expression(tree.nextSibling(first)));
+            } else if (symbol == WHILE_STMT) {
+                // while <CONDITION> do <STMT_LIST> od
+                return new While(this.condition(this.child(first, CONDITION)), this.statements(first));
+            } else if (symbol == DO_STMT) {
+                // do <STMT_LIST> until <CONDITION>
+                return new DoUntil(this.statements(first), this.condition(this.child(first, CONDITION)));
+            } else if (symbol == IF_STMT) {
+                // if <CONDITION> then <STMT_LIST> <IF_TAIL>
+                final int ifTail = this.child(first, IF_TAIL);
+                return new If(this.condition(this.child(first, CONDITION)), this.statements(first),
+                        this.statements(ifTail));
+            }
+            throw new IllegalStateException("Unexpected statement: " + tree.name(first));
+        }
+
+        // <CONDITION> ::= <EXPR> <RELATION> <EXPR>
+        private Condition condition(final int condition) {
+            final int left = tree.firstChild(condition);
+            final int relation = tree.nextSibling(left);
+            final int right = tree.nextSibling(relation);
+            return new Condition(Relation.fromLexeme(this.lexeme(relation)), this.expression(left),
+                    this.expression(right));
+        }
+
+        // <EXPR> ::= <TERM> <TERM_TAIL>, where <TERM_TAIL> ::= <ADD_OP> <TERM> <TERM_TAIL> | <EMPTY>
+        private Expression expression(final int expr) {
+            final int term = tree.firstChild(expr);
+            Expression result = this.term(term);
+
+            for (int tail = tree.nextSibling(term); tail != ParseTree.NONE; ) {
+                final int operator = tree.firstChild(tail);
+                if (tree.symbol(operator) != ADD_OP) {
+                    break;
+                }
+                final int right = tree.nextSibling(operator);
+                result = new Binary(Operator.fromLexeme(this.lexeme(operator)), result, this.term(right));
+                tail = tree.nextSibling(right);
+            }
+            return result;
+        }
+
+        // <TERM> ::= <FACTOR> <FACTOR_TAIL>; the tails are siblings, each <MULT_OP> <FACTOR> (or <EMPTY>)
+        private Expression term(final int term) {
+            final int factor = tree.firstChild(term);
+            Expression result = this.factor(factor);
+
+            for (int tail = tree.nextSibling(factor); tail != ParseTree.NONE; tail = tree.nextSibling(tail)) {
+                final int operator = tree.firstChild(tail);
+                if (tree.symbol(operator) == MULT_OP) {
+                    final int right = tree.nextSibling(operator);
+                    result = new Binary(Operator.fromLexeme(this.lexeme(operator)), result, this.factor(right));
+                }
+            }
+            return result;
+        }
+
+        // <FACTOR> ::= ( <EXPR> ) | <ID> | <NUMBER>
+        private Expression factor(final int factor) {
+            final int first = tree.firstChild(factor);
+            final int symbol = tree.symbol(first);
+
+            if (symbol == LEFTP) {
+                return this.expression(tree.nextSibling(first));
+            } else if (symbol == UNKNOWN) {
+                return new Variable(this.slot(first));
+            } else if (symbol == NUMBER) {
+                return new Constant(Double.parseDouble(this.lexeme(first)));
+            }
+            throw new IllegalStateException("Unexpected factor: " + tree.name(first));
+        }
+
+        // The slot of the variable named by an <UNKNOWN> token node.
+        private int slot(final int token) {
+            final String name = this.lexeme(token);
+            return slots.computeIfAbsent(name, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+        }
+
+        // The text under a token node.
+        private String lexeme(final int token) {
+            return tree.name(tree.firstChild(token));
+        }
+
+        private int child(final int parent, final int symbol) {
+            for (int child = tree.firstChild(parent); child != ParseTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.symbol(child) == symbol) {
+                    return child;
+                }
+            }
+            throw new IllegalStateException("No " + symbol + " under " + tree.name(parent));
+        }
+    }
+}
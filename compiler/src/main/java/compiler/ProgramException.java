@@ -0,0 +1,12 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * An error while running a program, e.g. a {@code read} past the end of the input.
+ */
+final class ProgramException extends RuntimeException {
+
+    ProgramException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,102 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The numbers a running program reads ({@code read x}): whitespace separated, read through one
+ * buffer, and parsed without a String unless they have a fraction.
+ */
+final class ProgramInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Up to this many digits, an integer is exact in a long (and in a double up to 2^53).
+    private static final int EXACT_DIGITS = 15;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] word = new byte[32];
+    private int position;
+    private int limit;
+
+    ProgramInput(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next number
+     * @throws ProgramException at the end of the input, or if the next word isn't a number
+     */
+    double readNumber() {
+        int b = this.skipSpace();
+        if (b < 0) {
+            throw new ProgramException("read: no more input");
+        }
+
+        // Collect the word; integers are converted on the way.
+        int length = 0;
+        long value = 0;
+        boolean integer = true;
+        final boolean negative = b == '-';
+        while (b >= 0 && !isSpace(b)) {
+            if (length == word.length) {
+                word = Arrays.copyOf(word, length * 2);
+            }
+            word[length++] = (byte) b;
+            if (b >= '0' && b <= '9' && length <= EXACT_DIGITS) {
+                value = value * 10 + (b - '0');
+            } else if (length > 1 || (b != '-' && b != '+')) {
+                integer = false;
+            }
+            b = this.next();
+        }
+
+        final int digits = negative || word[0] == '+' ? length - 1 : length;
+        if (integer && digits > 0) {
+            // Negate as a double, so that "-0" is -0.0.
+            return negative ? -(double) value : value;
+        }
+        final String text = new String(word, 0, length, StandardCharsets.UTF_8);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException ex) {
+            throw new ProgramException("read: not a number: " + text);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // The first byte that isn't white space (-1 at the end of the input).
+    private int skipSpace() {
+        int b = this.next();
+        while (b >= 0 && isSpace(b)) {
+            b = this.next();
+        }
+        return b;
+    }
+
+    private int next() {
+        if (position == limit) {
+            try {
+                limit = in.read(buffer, 0, buffer.length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private static boolean isSpace(final int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}
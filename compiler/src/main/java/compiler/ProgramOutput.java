@@ -0,0 +1,96 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The numbers a running program writes ({@code write x}), one per line, through one buffer
+ * that is only pushed out when it's full or the program ends.
+ * <p>
+ * Whole numbers are written without a fraction ("3", not "3.0"); anything else the way
+ * {@link Double#toString(double)} writes it.
+ */
+final class ProgramOutput {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Whole numbers up to here are written as longs; past 2^53 doubles skip integers anyway.
+    private static final double LARGEST_WHOLE = 1e15;
+
+    // The longest number written: Double.toString's, e.g. "-2.2250738585072014E-308".
+    static final int MAX_NUMBER_LENGTH = 24;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    ProgramOutput(final OutputStream out) {
+        this.out = out;
+    }
+
+    void writeNumber(final double value) {
+        // Make room for the longest number and the line break.
+        if (position + MAX_NUMBER_LENGTH + 1 > buffer.length) {
+            this.flush();
+        }
+
+        if (value == (long) value && Math.abs(value) < LARGEST_WHOLE && !isNegativeZero(value)) {
+            position = appendLong(buffer, position, (long) value);
+        } else {
+            final byte[] text = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, buffer, position, text.length);
+            position += text.length;
+        }
+        buffer[position++] = '\n';
+    }
+
+    void flush() {
+        try {
+            out.write(buffer, 0, position);
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        position = 0;
+    }
+
+    /**
+     * @return the text {@link #writeNumber(double)} writes for a number (without the line break)
+     */
+    static String format(final double value) {
+        if (value == (long) value && Math.abs(value) < LARGEST_WHOLE && !isNegativeZero(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static boolean isNegativeZero(final double value) {
+        return value == 0 && Double.doubleToRawLongBits(value) != 0;
+    }
+
+    // Write the digits of a long, returning the position after them.
+    private static int appendLong(final byte[] buffer, int position, long value) {
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        final int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        // The digits came out backwards.
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            final byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        return position;
+    }
+}
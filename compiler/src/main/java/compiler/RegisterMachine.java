@@ -0,0 +1,391 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * Runs a program compiled to a small register machine: the code is one {@code int[]}
+ * and the machine state is one {@code double[]} of registers and a program counter, so running
+ * allocates nothing and a compiled program takes a few bytes per statement.
+ * <p>
+ * The code is generated from the program's {@link ControlFlowGraph}, block by block, with no
+ * jump to the block that comes next anyway. The registers hold, in order, the program's
+ * variables (register k is slot k), its constants (loaded once, by {@link #newRegisters()})
+ * and the temporaries, packed (see {@link ControlFlowGraph#packTemporaries()}). Every operand
+ * is a register. An instruction is one to three ints: the first has the opcode in its
+ * low 8 bits and the first operand in the other 24; the rest are whole ints.
+ * <pre>
+ *     ADD/SUB/MUL/DIV d, x, y   d = x op y
+ *     MOVE d, x                 d = x
+ *     READ d                    d = the next number read
+ *     WRITE x                   write x
+ *     JUMP t                    go to t
+ *     Jrel x, y, t              go to t if x rel y (JLT, JGT, JLE, JGE, JEQ, JNE)
+ *     JNrel x, y, t             go to t unless x rel y (JNLT, JNGT, JNLE, JNGE)
+ *     HALT
+ * </pre>
+ * The negated branches are there because with NaN, "not less than" is not "greater or equal".
+ * (Not equal is the negation of equal, NaN or not.)
+ * <p>
+ * This sits between the {@link Interpreter} and the {@link BytecodeBackend}: compiling is one
+ * quick pass and nothing is loaded into the JVM, which suits running many small programs.
+ */
+final class RegisterMachine {
+
+    static final int ADD = 0;
+    static final int SUB = 1;
+    static final int MUL = 2;
+    static final int DIV = 3;
+    static final int MOVE = 4;
+    static final int READ = 5;
+    static final int WRITE = 6;
+    static final int JUMP = 7;
+    static final int JLT = 8;
+    static final int JGT = 9;
+    static final int JLE = 10;
+    static final int JGE = 11;
+    static final int JEQ = 12;
+    static final int JNE = 13;
+    static final int JNLT = 14;
+    static final int JNGT = 15;
+    static final int JNLE = 16;
+    static final int JNGE = 17;
+    static final int HALT = 18;
+
+    private static final int OPCODE_BITS = 8;
+    private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+    private static final int MAX_OPERAND = (1 << (Integer.SIZE - OPCODE_BITS)) - 1;
+
+    private final int[] code;
+    private final double[] constants;
+    private final int variables;
+    private final int registers;
+
+    private RegisterMachine(final int[] code, final double[] constants, final int variables, final int registers) {
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.registers = registers;
+    }
+
+    /**
+     * Compile a program.
+     *
+     * @param graph the program's control-flow graph
+     * @return the compiled program
+     * @throws IllegalArgumentException if the program needs more registers or code than an
+     *                                  instruction can address (16M)
+     */
+    static RegisterMachine compile(final ControlFlowGraph graph) {
+        return new Assembler(graph).assemble();
+    }
+
+    /**
+     * @return a register file for {@link #run}: the variables at 0, the constants loaded
+     */
+    double[] newRegisters() {
+        final double[] file = new double[registers];
+        System.arraycopy(constants, 0, file, variables, constants.length);
+        return file;
+    }
+
+    /**
+     * Run the program to the end. The output is flushed even if the program fails.
+     *
+     * @param file the registers, from {@link #newRegisters()}; afterwards the variables are in
+     *             the first {@link Program#getSlotCount()} of them
+     * @param in   where {@code read} reads from
+     * @param out  where {@code write} writes to
+     * @throws ProgramException if the program fails
+     */
+    void run(final double[] file, final ProgramInput in, final ProgramOutput out) {
+        try {
+            this.execute(file, in, out);
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the instructions, as listed by {@link #toString()}
+     */
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * @return a listing of the code, one instruction per line
+     */
+    @Override
+    public String toString() {
+        final StringBuilder listing = new StringBuilder();
+        for (int pc = 0; pc < code.length; ) {
+            final int op = code[pc] & OPCODE_MASK;
+            final int a = code[pc] >>> OPCODE_BITS;
+            listing.append(String.format("%5d  %-6s", pc, NAMES[op]));
+            switch (op) {
+                case ADD, SUB, MUL, DIV -> listing.append(this.register(a)).append(", ")
+                        .append(this.register(code[pc + 1])).append(", ").append(this.register(code[pc + 2]));
+                case MOVE -> listing.append(this.register(a)).append(", ").append(this.register(code[pc + 1]));
+                case READ, WRITE -> listing.append(this.register(a));
+                case JUMP -> listing.append(a);
+                case HALT -> {
+                }
+                default -> listing.append(this.register(a)).append(", ").append(this.register(code[pc + 1]))
+                        .append(", ").append(code[pc + 2]);
+            }
+            listing.append(System.lineSeparator());
+            pc += length(op);
+        }
+        return listing.toString();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final String[] NAMES = {"ADD", "SUB", "MUL", "DIV", "MOVE", "READ", "WRITE", "JUMP",
+            "JLT", "JGT", "JLE", "JGE", "JEQ", "JNE", "JNLT", "JNGT", "JNLE", "JNGE", "HALT"};
+
+    // The number of ints in an instruction.
+    private static int length(final int op) {
+        return switch (op) {
+            case READ, WRITE, JUMP, HALT -> 1;
+            case MOVE -> 2;
+            default -> 3;
+        };
+    }
+
+    // r3 for a variable or temporary, #3.5 for a constant.
+    private String register(final int register) {
+        if (register >= variables && register < variables + constants.length) {
+            return "#" + ProgramOutput.format(constants[register - variables]);
+        }
+        return "r" + register;
+    }
+
+    private void execute(final double[] r, final ProgramInput in, final ProgramOutput out) {
+        final int[] code = this.code;
+        int pc = 0;
+        while (true) {
+            final int instruction = code[pc];
+            final int a = instruction >>> OPCODE_BITS;
+            switch (instruction & OPCODE_MASK) {
+                case ADD -> {
+                    r[a] = r[code[pc + 1]] + r[code[pc + 2]];
+                    pc += 3;
+                }
+                case SUB -> {
+                    r[a] = r[code[pc + 1]] - r[code[pc + 2]];
+                    pc += 3;
+                }
+                case MUL -> {
+                    r[a] = r[code[pc + 1]] * r[code[pc + 2]];
+                    pc += 3;
+                }
+                case DIV -> {
+                    r[a] = r[code[pc + 1]] / r[code[pc + 2]];
+                    pc += 3;
+                }
+                case MOVE -> {
+                    r[a] = r[code[pc + 1]];
+                    pc += 2;
+                }
+                case READ -> {
+                    r[a] = in.readNumber();
+                    pc++;
+                }
+                case WRITE -> {
+                    out.writeNumber(r[a]);
+                    pc++;
+                }
+                case JUMP -> pc = a;
+                case JLT -> pc = r[a] < r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JGT -> pc = r[a] > r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JLE -> pc = r[a] <= r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JGE -> pc = r[a] >= r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JEQ -> pc = r[a] == r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JNE -> pc = r[a] != r[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JNLT -> pc = !(r[a] < r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                case JNGT -> pc = !(r[a] > r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                case JNLE -> pc = !(r[a] <= r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                case JNGE -> pc = !(r[a] >= r[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                case HALT -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Bad opcode at " + pc + ": " + (instruction & OPCODE_MASK));
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+     * One pass over the blocks. Jumps to blocks that haven't been placed yet are patched at
+     * the end, when every block's address is known.
+     */
+    private static final class Assembler {
+
+        private final ControlFlowGraph graph;
+        private final int[] packed;
+        private final int firstTemporary;
+        private final int[] addresses;
+
+        private int[] code = new int[64];
+        private int length;
+
+        // The words holding a block number rather than an address, and whether it's a JUMP's.
+        private int[] patches = new int[16];
+        private int patchCount;
+
+        Assembler(final ControlFlowGraph graph) {
+            this.graph = graph;
+            this.packed = graph.packTemporaries();
+            this.firstTemporary = graph.variableCount() + graph.constantCount();
+            this.addresses = new int[graph.blockCount()];
+        }
+
+        RegisterMachine assemble() {
+            int temporaries = 0;
+            for (final int temporary : packed) {
+                temporaries = Math.max(temporaries, temporary + 1);
+            }
+            final long registers = (long) firstTemporary + temporaries;
+            if (registers > MAX_OPERAND) {
+                throw new IllegalArgumentException("The program needs too many registers: " + registers);
+            }
+
+            for (int block = 0; block < graph.blockCount(); block++) {
+                addresses[block] = length;
+                for (int i = graph.first(block); i < graph.end(block); i++) {
+                    this.instruction(i);
+                }
+                this.exit(block);
+            }
+
+            for (int p = 0; p < patchCount; p++) {
+                final int at = patches[p];
+                if (at < 0) {
+                    // A JUMP: the target is in the top 24 bits.
+                    final int word = -1 - at;
+                    code[word] = JUMP | (this.address(code[word] >>> OPCODE_BITS) << OPCODE_BITS);
+                } else {
+                    code[at] = addresses[code[at]];
+                }
+            }
+            return new RegisterMachine(Arrays.copyOf(code, length), graph.getConstants().clone(),
+                    graph.variableCount(), (int) registers);
+        }
+
+        private void instruction(final int i) {
+            final int opcode = graph.opcode(i);
+            switch (opcode) {
+                case ControlFlowGraph.COPY -> {
+                    this.word(MOVE | (this.register(graph.result(i)) << OPCODE_BITS));
+                    this.word(this.register(graph.left(i)));
+                }
+                case ControlFlowGraph.READ -> this.word(READ | (this.register(graph.result(i)) << OPCODE_BITS));
+                case ControlFlowGraph.WRITE -> this.word(WRITE | (this.register(graph.left(i)) << OPCODE_BITS));
+                default -> {
+                    final int op = switch (opcode) {
+                        case ControlFlowGraph.ADD -> ADD;
+                        case ControlFlowGraph.SUBTRACT -> SUB;
+                        case ControlFlowGraph.MULTIPLY -> MUL;
+                        default -> DIV;
+                    };
+                    this.word(op | (this.register(graph.result(i)) << OPCODE_BITS));
+                    this.word(this.register(graph.left(i)));
+                    this.word(this.register(graph.right(i)));
+                }
+            }
+        }
+
+        // No jump to the next block; a branch whose "true" block is next is turned around.
+        private void exit(final int block) {
+            final int following = block + 1;
+            switch (graph.exit(block)) {
+                case ControlFlowGraph.GOTO -> {
+                    if (graph.next(block) != following) {
+                        this.jump(graph.next(block));
+                    }
+                }
+                case ControlFlowGraph.BRANCH -> {
+                    final int left = this.register(graph.testLeft(block));
+                    final int right = this.register(graph.testRight(block));
+                    if (graph.next(block) == following) {
+                        this.branch(negated(graph.relation(block)), left, right, graph.otherwise(block));
+                    } else {
+                        this.branch(taken(graph.relation(block)), left, right, graph.next(block));
+                        if (graph.otherwise(block) != following) {
+                            this.jump(graph.otherwise(block));
+                        }
+                    }
+                }
+                default -> this.word(HALT);
+            }
+        }
+
+        private static int taken(final Program.Relation relation) {
+            return switch (relation) {
+                case LESS -> JLT;
+                case GREATER -> JGT;
+                case LESS_EQUAL -> JLE;
+                case GREATER_EQUAL -> JGE;
+                case EQUAL -> JEQ;
+                case NOT_EQUAL -> JNE;
+            };
+        }
+
+        private static int negated(final Program.Relation relation) {
+            return switch (relation) {
+                case LESS -> JNLT;
+                case GREATER -> JNGT;
+                case LESS_EQUAL -> JNLE;
+                case GREATER_EQUAL -> JNGE;
+                case EQUAL -> JNE;
+                case NOT_EQUAL -> JEQ;
+            };
+        }
+
+        private void branch(final int opcode, final int left, final int right, final int block) {
+            this.word(opcode | (left << OPCODE_BITS));
+            this.word(right);
+            this.patch(length);
+            this.word(block);
+        }
+
+        private void jump(final int block) {
+            this.patch(-1 - length);
+            this.word(JUMP | (block << OPCODE_BITS));
+        }
+
+        // The register of a variable, constant or temporary.
+        private int register(final int operand) {
+            if (ControlFlowGraph.isConstant(operand)) {
+                return graph.variableCount() - 1 - operand;
+            } else if (graph.isTemporary(operand)) {
+                return firstTemporary + packed[operand - graph.variableCount()];
+            }
+            return operand;
+        }
+
+        private int address(final int block) {
+            if (addresses[block] > MAX_OPERAND) {
+                throw new IllegalArgumentException("The program is too long for the register machine.");
+            }
+            return addresses[block];
+        }
+
+        private void patch(final int at) {
+            if (patchCount == patches.length) {
+                patches = Arrays.copyOf(patches, patchCount * 2);
+            }
+            patches[patchCount++] = at;
+        }
+
+        private void word(final int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = value;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A lexer that scans one token at a time, as the parser asks for it ({@code --lexer streaming}).
+ * <p>
+ * The {@link LexicalAnalyzer} scans the whole source into a {@link TokenBuffer} before the
+ * parser starts, so its memory grows with the source, although the parsers only ever look at
+ * the current token. This one reads the source through a fixed-size buffer from any channel
+ * (a file, a pipe, the standard input) and keeps nothing but the current token: the same
+ * scanner (see {@link LexicalAnalyzer#scanToken}) runs over the buffer, and a token that runs
+ * into the end of the buffer is scanned again once more input is in. The buffer only grows
+ * for a single token longer than itself.
+ * <p>
+ * The lexer itself then needs the same memory however long the program is. With the code
+ * streamed out too ({@code -o} and {@code -q}), so does the whole compile: the parsers' stacks
+ * grow with the nesting of the program (and, for the recursive {@link Parser}, with the length
+ * of an expression), not with the number of statements.
+ * <p>
+ * There is no going back, so this is only a {@link TokenStream}, not a {@link LexicalAnalyzer}:
+ * there are no tokens to build a {@link ParseTree} from, and the line and column of a token
+ * are only known while it is the current one.
+ * <p>
+ * Read errors are rethrown as {@link UncheckedIOException}, since the parser has no business
+ * knowing about them.
+ */
+final class StreamingLexer implements TokenStream {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    // Input: buffer[pos...limit) is still to be scanned; discarded bytes came before buffer[0].
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private ByteBuffer window = ByteBuffer.wrap(buffer);
+    private int pos;
+    private int limit;
+    private long discarded;
+    private boolean endOfInput;
+    private boolean inComment;
+
+    // Where buffer[pos] is.
+    private final LineMap.Counter lines = new LineMap.Counter();
+
+    // The current token (null at the end of the input): buffer[start...end).
+    private Token token;
+    private int start;
+    private int end;
+    private int tokenLine;
+    private int tokenColumn;
+    private int position;
+    private int tokenCount;
+
+    /**
+     * Start scanning a channel. The channel is read up to the first token right away, and
+     * left open at the end.
+     *
+     * @param channel the UTF-8 encoded source
+     */
+    StreamingLexer(final ReadableByteChannel channel) {
+        this.channel = channel;
+        this.next();
+    }
+
+    @Override
+    public String getCurrentLexeme() {
+        if (token == null || token == Token.$$) {
+            return "EOF";
+        }
+        final String canonical = Token.canonicalLexeme(buffer, start, end);
+        return canonical != null ? canonical : new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Token currentToken() {
+        return token == null ? Token.$$ : token;
+    }
+
+    @Override
+    public void advanceToken() {
+        if (token != null) {
+            position++;
+            this.next();
+        }
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public int line(final int position) {
+        this.checkCurrent(position);
+        return tokenLine;
+    }
+
+    @Override
+    public int column(final int position) {
+        this.checkCurrent(position);
+        return tokenColumn;
+    }
+
+    /**
+     * @return where the current token starts in the source, in bytes
+     */
+    long getTokenStart() {
+        return discarded + start;
+    }
+
+    /**
+     * @return where the current token ends in the source, in bytes (exclusive)
+     */
+    long getTokenEnd() {
+        return discarded + end;
+    }
+
+    /**
+     * @return how many bytes of the source were read so far
+     */
+    long getBytesRead() {
+        return discarded + limit;
+    }
+
+    /**
+     * @return how many tokens were scanned so far
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingLexer{token " + position + ": " + this.currentToken() + " '" + this.getCurrentLexeme() + "'}";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Scan the next token, reading more input as needed.
+    private void next() {
+        while (true) {
+            if (pos == limit && !this.fill()) {
+                token = null;
+                tokenLine = lines.line();
+                tokenColumn = lines.column();
+                return;
+            }
+
+            final byte b = buffer[pos];
+            if (inComment || LexicalAnalyzer.isComment(b)) {
+                final int commentEnd = LexicalAnalyzer.skipComment(buffer, pos, limit);
+                this.advance(commentEnd);
+                // Out of input before the end of the line: the comment goes on in the next read.
+                inComment = pos == limit;
+            } else if (LexicalAnalyzer.isSpace(b)) {
+                this.advance(pos + 1);
+            } else {
+                this.scan();
+                return;
+            }
+        }
+    }
+
+    // Scan the token at buffer[pos].
+    private void scan() {
+        long scanned = LexicalAnalyzer.scanToken(buffer, pos, limit);
+
+        // A token that reaches the end of the input read so far may go on (a longer word, a
+        // number's fraction, the '=' of ":="): read more, and scan it again. Reading moves the
+        // token to the front of the buffer, so it is scanned again even if nothing more came.
+        while (LexicalAnalyzer.end(scanned) == limit && !endOfInput) {
+            this.fill();
+            scanned = LexicalAnalyzer.scanToken(buffer, pos, limit);
+        }
+
+        token = LexicalAnalyzer.kind(scanned);
+        start = pos;
+        end = LexicalAnalyzer.end(scanned);
+        tokenLine = lines.line();
+        tokenColumn = lines.column();
+        tokenCount++;
+        this.advance(end);
+    }
+
+    // Count the lines and columns of buffer[pos...to), and move past them.
+    private void advance(final int to) {
+        lines.count(buffer, pos, to);
+        pos = to;
+    }
+
+    // Read more input after buffer[limit], keeping buffer[pos...limit); false at the end of the input.
+    private boolean fill() {
+        if (endOfInput) {
+            return false;
+        }
+
+        // Drop what was scanned already; grow only if one token fills the whole buffer.
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            discarded += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            window = ByteBuffer.wrap(buffer);
+        }
+
+        try {
+            int read;
+            do {
+                read = channel.read(window.limit(buffer.length).position(limit));
+            } while (read == 0);
+
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void checkCurrent(final int position) {
+        if (position != this.position) {
+            throw new IllegalArgumentException("Only the current token's position is known: " + position);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * A non-recursive, table-driven LL(1) Syntax Analyzer.
+ * <p>
+ * It accepts the same language as {@link Parser} and sends the same calls to the
+ * {@link CodeGenerator}, in the same order, but keeps its work on an explicit stack instead
+ * of the Java call stack. The stack only grows with the nesting of the program (loops inside
+ * ifs inside loops...), never with its length, so arbitrarily long programs parse without
+ * {@code StackOverflowError} or a bigger {@code -Xss}.
+ * <p>
+ * Each stack entry is a grammar symbol plus the tree node it hangs from (and that node's
+ * parent, for "sibling" symbols). See {@link Grammar} for the encoding.
+ * <p>
+ * Error recovery mirrors {@link Parser}'s: the parser remembers the stack height of each
+ * &lt;STMT&gt; it's in, and after a syntax error it cuts the stack back to the innermost one,
+ * skips to a statement boundary and lets the enclosing statement list carry on. An error in
+ * a while's or an if's condition skips to its {@code do} or {@code then} instead, when that
+ * comes first, and the statement carries on.
+ */
+public class TableDrivenParser {
+
+    // The table for the language, built once.
+    private static final ParseTable LANGUAGE_TABLE = new ParseTable(GrammarAnalysis.LANGUAGE);
+
+    private static final GrammarAnalysis GRAMMAR = GrammarAnalysis.LANGUAGE;
+
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    // The lexer which will provide the tokens
+    private final TokenStream lexer;
+
+    // The actual "code generator" (discarding everything after the first syntax error)
+    private ParseTreeListener codeGenerator;
+
+    // Every syntax error found
+    private final Diagnostics diagnostics;
+
+    private final ParseTable table;
+
+    // The parse stack: symbol, the node it attaches to, and that node's parent.
+    private int[] symbols = new int[INITIAL_STACK_SIZE];
+    private TreeNode[] nodes = new TreeNode[INITIAL_STACK_SIZE];
+    private TreeNode[] parents = new TreeNode[INITIAL_STACK_SIZE];
+    private int top;
+
+    // The stack heights of the <STMT>s being parsed, innermost last.
+    private int[] statements = new int[INITIAL_STACK_SIZE];
+    private int statementCount;
+
+    /**
+     * Constructor with the same contract as {@link Parser#Parser(TokenStream, ParseTreeListener)}.
+     *
+     * @param lexer         The Lexer Object
+     * @param codeGenerator The CodeGenerator Object (or a ParseTreeBuilder)
+     */
+    public TableDrivenParser(TokenStream lexer, ParseTreeListener codeGenerator) {
+        this.lexer = lexer;
+        this.codeGenerator = codeGenerator;
+        this.diagnostics = new Diagnostics(lexer);
+        this.table = LANGUAGE_TABLE;
+    }
+
+    /*
+     * Begin analyzing...
+     *
+     * Returns true if the program parsed, false if there were syntax errors (all of them
+     * are in getDiagnostics()).
+     */
+    boolean analyze() {
+        final ParseTreeListener output = codeGenerator;
+        try {
+            // Generate header for our output
+            TreeNode startNode = codeGenerator.writeHeader("PARSE TREE");
+
+            this.run(table.getGrammar().getStart(), startNode, true);
+
+            if (!diagnostics.hasErrors()) {
+                // generate footer for our output
+                codeGenerator.writeFooter();
+                return true;
+            }
+
+            // Let the partial output reach the console before the errors do.
+            output.flush();
+            diagnostics.log();
+            return false;
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * @return the syntax errors found by {@link #analyze()}
+     */
+    Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Run the LL(1) driver: expand non-terminals by the table, match terminals, until the
+     * stack is empty.
+     * <p>
+     * Any non-terminal may be parsed on its own, from wherever the lexer is, which is how
+     * {@link IncrementalParser} reparses a single statement. This stops at the first syntax
+     * error.
+     *
+     * @param symbol   the non-terminal to parse
+     * @param rootNode the node it hangs from
+     * @throws ParseException If there is a syntax error
+     */
+    void parse(final NonTerminal symbol, final TreeNode rootNode) throws ParseException {
+        this.run(symbol, rootNode, false);
+    }
+
+    private void run(final NonTerminal symbol, final TreeNode rootNode, final boolean recover) throws ParseException {
+        this.top = 0;
+        this.statementCount = 0;
+        this.push(Grammar.symbol(symbol), rootNode, null);
+
+        while (top > 0) {
+            top--;
+            // A statement whose symbols are all off the stack is done.
+            while (statementCount > 0 && statements[statementCount - 1] > top) {
+                statementCount--;
+            }
+
+            final int code = symbols[top];
+            final TreeNode node = nodes[top];
+            final TreeNode parent = parents[top];
+            nodes[top] = null;
+            parents[top] = null;
+
+            if (code == Grammar.EMPTY) {
+                codeGenerator.addEmptyToTree(node);
+            } else if (Grammar.isTerminal(code)) {
+                try {
+                    this.terminal(code, node);
+                } catch (ParseException ex) {
+                    if (!recover) {
+                        throw ex;
+                    }
+                    this.recover(code, node, parent);
+                }
+            } else {
+                this.expand(Grammar.nonTerminal(code), node, parent);
+            }
+        }
+    }
+
+    // Panic mode, after a syntax error at a terminal (already popped off the stack).
+    private void recover(final int code, final TreeNode node, final TreeNode parent) {
+        if (statementCount > 0 && this.resumeAfterCondition(statements[statementCount - 1])) {
+            return;
+        }
+        if (statementCount > 0) {
+            // Drop the rest of the innermost statement and skip to where the next statement
+            // (or the end of its list) starts; the statement list then carries on.
+            final int height = statements[--statementCount];
+            Arrays.fill(nodes, height, top, null);
+            Arrays.fill(parents, height, top, null);
+            top = height;
+            while (!Diagnostics.isSynchronizing(lexer.currentToken())) {
+                lexer.advanceToken();
+            }
+            return;
+        }
+
+        // Only the end of the program is matched outside of a statement: skip to the next
+        // statement, and parse the rest as more statements.
+        do {
+            lexer.advanceToken();
+        } while (lexer.currentToken() != Token.$$ && !GRAMMAR.inFirst(NonTerminal.STMT, lexer.currentToken()));
+        this.push(code, node, parent);
+        this.push(Grammar.symbol(NonTerminal.STMT_LIST), node, parent);
+    }
+
+    // As in Parser: an error in a while's or an if's condition leaves its do or then on the
+    // stack. Skip to that keyword and drop what's left of the condition, so that the statement
+    // goes on with its body; false if a statement boundary comes first.
+    private boolean resumeAfterCondition(final int height) {
+        int keyword = top - 1;
+        while (keyword >= height && symbols[keyword] != Grammar.symbol(Token.DO)
+                && symbols[keyword] != Grammar.symbol(Token.THEN)) {
+            keyword--;
+        }
+        if (keyword < height) {
+            return false;
+        }
+
+        final Token token = Grammar.token(symbols[keyword]);
+        while (lexer.currentToken() != token) {
+            if (Diagnostics.isSynchronizing(lexer.currentToken())) {
+                return false;
+            }
+            lexer.advanceToken();
+        }
+        Arrays.fill(nodes, keyword + 1, top, null);
+        Arrays.fill(parents, keyword + 1, top, null);
+        top = keyword + 1;
+        return true;
+    }
+
+    // Replace a non-terminal on the stack with the body of the production the table selects.
+    private void expand(final NonTerminal symbol, final TreeNode node, final TreeNode parent) {
+        if (symbol == NonTerminal.STMT) {
+            // Where to recover if this statement has a syntax error.
+            if (statementCount == statements.length) {
+                statements = Arrays.copyOf(statements, statementCount * 2);
+            }
+            statements[statementCount++] = top;
+        }
+
+        // Hidden helper rules reuse the node (and parent) they were given.
+        final TreeNode thisNode = symbol.isInTree() ? codeGenerator.addNonTerminalToTree(node, symbol) : node;
+        final TreeNode thisParent = symbol.isInTree() ? node : parent;
+
+        final int[] body = table.select(symbol, lexer.currentToken()).body();
+
+        // Push right to left so that the leftmost symbol is on top.
+        for (int i = body.length - 1; i >= 0; i--) {
+            final int code = body[i];
+            if ((code & Grammar.SIBLING) != 0) {
+                this.push(code & Grammar.SYMBOL_MASK, thisParent, null);
+            } else {
+                this.push(code, thisNode, thisParent);
+            }
+        }
+    }
+
+    // Match (or, for a "peek" terminal, just check) the current token.
+    private void terminal(final int code, final TreeNode parentNode) throws ParseException {
+        final Token expectedToken = Grammar.token(code);
+        final Token currentToken = lexer.currentToken();
+
+        if (currentToken != expectedToken) {
+            this.raiseException(expectedToken, parentNode);
+        }
+        if ((code & Grammar.PEEK) != 0) {
+            return;
+        }
+
+        final var terminalNode = codeGenerator.addTokenToTree(parentNode, currentToken);
+        codeGenerator.addTerminalToTree(terminalNode, lexer.getCurrentLexeme());
+
+        lexer.advanceToken();
+    }
+
+    private void push(final int code, final TreeNode node, final TreeNode parent) {
+        if (node == null) {
+            throw new IllegalStateException("Sibling symbol has no parent node to attach to.");
+        }
+        if (top == symbols.length) {
+            final int size = top * 2;
+            symbols = Arrays.copyOf(symbols, size);
+            nodes = Arrays.copyOf(nodes, size);
+            parents = Arrays.copyOf(parents, size);
+        }
+        symbols[top] = code;
+        nodes[top] = node;
+        parents[top] = parent;
+        top++;
+    }
+
+    /**
+     * Raise a ParseException if the input cannot be parsed as defined by the
+     * grammar.
+     *
+     * @param expected   The expected token
+     * @param parentNode The token's parent node
+     */
+    private void raiseException(Token expected, TreeNode parentNode) throws ParseException {
+        final var template = "SYNTAX ERROR: '%s' was expected but '%s' was found.";
+        final var errorMessage = template.formatted(expected.name(), lexer.getCurrentLexeme());
+
+        // As in Parser: the first error ends the tree.
+        final boolean first = !diagnostics.hasErrors();
+        diagnostics.report(lexer.getPosition(), errorMessage);
+        if (first) {
+            final ParseTreeListener output = codeGenerator;
+            codeGenerator = DiscardingListener.INSTANCE;
+            output.syntaxError(errorMessage, parentNode);
+        }
+        throw new ParseException(errorMessage);
+    }
+}
@@ -0,0 +1,260 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+/*
+COURSE: COSC455003
+Assignment: Program 1
+
+ 
+Name: Kline, Justin
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public enum Token {
+
+    WRITE("write"),
+    READ("read"),
+    ELSE("else"),
+    THEN("then"),
+    FI("fi"),
+    IF("if"),
+    UNTIL("until"),
+    OD("od"),
+    DO("do"),
+    WHILE("while"),
+    LEFTP("("),
+    RIGHTP(")"),
+    ASSIGNMENT(":="),
+    ADD_OP("+", "-"),
+    MULT_OP("*", "/"),
+    RELATION("<", ">", "<=", ">=", "=", "!="),
+    // THESE ARE NOT USED IN THE GRAMMAR, BUT MIGHT BE USEFUL... :)
+    $$, // End of file
+    UNKNOWN, // Could be "ID" in a "real programming language"
+    NUMBER; // A sequence of digits.
+
+    /**
+     * A list of all lexemes for each token.
+     */
+    private final List<String> lexemeList;
+
+    /**
+     * The label shown in the parse tree, e.g. "&lt;ASSIGNMENT&gt;".
+     */
+    private final String label;
+
+    // A collision-free ("perfect") hash table over every lexeme of every token, keyed on the
+    // lexeme's length and its first two characters. A lookup is one hash, one array load and
+    // one character-by-character comparison against the single candidate; nothing is allocated.
+    private static final int LOOKUP_SIZE = 64;
+    private static final String[] LOOKUP_LEXEMES = new String[LOOKUP_SIZE];
+    private static final Token[] LOOKUP_TOKENS = new Token[LOOKUP_SIZE];
+    private static final int LOOKUP_MULTIPLIER;
+
+    private static final Token[] VALUES = values();
+
+    static {
+        LOOKUP_MULTIPLIER = findPerfectMultiplier();
+
+        for (final var token : values()) {
+            for (final var lexeme : token.lexemeList) {
+                final int slot = slot(lexeme.length(), lexeme.charAt(0), lexeme.length() > 1 ? lexeme.charAt(1) : 0);
+                LOOKUP_LEXEMES[slot] = lexeme;
+                LOOKUP_TOKENS[slot] = token;
+            }
+        }
+    }
+
+    Token(final String... tokenStrings) {
+        this.lexemeList = new ArrayList<>(tokenStrings.length);
+        this.lexemeList.addAll(Arrays.asList(tokenStrings));
+        this.label = "<" + this.name() + ">";
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Get a Token object from the Lexeme string.
+     *
+     * @param string The String (lexeme) to convert to a compiler.Token
+     * @return A compiler.Token object based on the input String (lexeme)
+     */
+    public static Token fromLexeme(final String string) {
+        // Just to be safe... (the same as String.trim(), without the copy)
+        int start = 0;
+        int end = string.length();
+        while (start < end && string.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && string.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // An empty string/lexeme should mean no more tokens to process.
+        // Return the "end of input maker" if the string is empty.
+        if (start == end) {
+            return $$;
+        }
+
+        // One or more digits optionally followed by a '.' and more digits.
+        // (doesn't handle "-", "+" etc., only digits)
+        if (isNumber(string, start, end)) {
+            return NUMBER;
+        }
+
+        final int length = end - start;
+        final int slot = slot(length, string.charAt(start), length > 1 ? string.charAt(start + 1) : 0);
+        final String candidate = LOOKUP_LEXEMES[slot];
+
+        if (candidate != null && candidate.length() == length && string.regionMatches(start, candidate, 0, length)) {
+            return LOOKUP_TOKENS[slot];
+        }
+
+        // NOTE: UNKNOWN could represent an ID, for example.
+        return UNKNOWN;
+    }
+
+    /**
+     * Get a Token object from a lexeme that is still sitting in the (ASCII/UTF-8) input buffer,
+     * so that the lexer doesn't have to build a String just to classify it.
+     *
+     * @param input The input buffer
+     * @param start Index of the first byte of the lexeme
+     * @param end   Index one past the last byte of the lexeme
+     * @return A compiler.Token object based on the lexeme
+     */
+    static Token fromLexeme(final byte[] input, final int start, final int end) {
+        if (start == end) {
+            return $$;
+        }
+
+        if (isNumber(input, start, end)) {
+            return NUMBER;
+        }
+
+        final int slot = lookupSlot(input, start, end);
+        return slot < 0 ? UNKNOWN : LOOKUP_TOKENS[slot];
+    }
+
+    /**
+     * Get the shared String instance for a keyword or operator lexeme in the input buffer.
+     *
+     * @param input The input buffer
+     * @param start Index of the first byte of the lexeme
+     * @param end   Index one past the last byte of the lexeme
+     * @return the canonical lexeme, or null if this isn't a keyword or operator.
+     */
+    static String canonicalLexeme(final byte[] input, final int start, final int end) {
+        final int slot = lookupSlot(input, start, end);
+        return slot < 0 ? null : LOOKUP_LEXEMES[slot];
+    }
+
+    /**
+     * Get a Token from its ordinal without cloning {@code values()}.
+     *
+     * @param ordinal the token's ordinal
+     * @return the token
+     */
+    static Token fromOrdinal(final int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    // The lookup slot holding this lexeme, or -1.
+    private static int lookupSlot(final byte[] input, final int start, final int end) {
+        final int length = end - start;
+        if (length == 0) {
+            return -1;
+        }
+
+        final int slot = slot(length, input[start], length > 1 ? input[start + 1] : 0);
+        final String candidate = LOOKUP_LEXEMES[slot];
+
+        if (candidate == null || candidate.length() != length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input[start + i] != candidate.charAt(i)) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    // digit+ ( '.' digit+ )?
+    private static boolean isNumber(final String lexeme, final int start, final int end) {
+        int pos = start;
+        while (pos < end && isDigit(lexeme.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            return false;
+        }
+        if (pos < end && lexeme.charAt(pos) == '.') {
+            final int fraction = ++pos;
+            while (pos < end && isDigit(lexeme.charAt(pos))) {
+                pos++;
+            }
+            return pos > fraction && pos == end;
+        }
+        return pos == end;
+    }
+
+    // digit+ ( '.' digit+ )?
+    private static boolean isNumber(final byte[] input, final int start, final int end) {
+        int pos = start;
+        while (pos < end && isDigit(input[pos])) {
+            pos++;
+        }
+        if (pos == start) {
+            return false;
+        }
+        if (pos < end && input[pos] == '.') {
+            final int fraction = ++pos;
+            while (pos < end && isDigit(input[pos])) {
+                pos++;
+            }
+            return pos > fraction && pos == end;
+        }
+        return pos == end;
+    }
+
+    private static boolean isDigit(final int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int slot(final int length, final int first, final int second) {
+        return slot(length, first, second, LOOKUP_MULTIPLIER);
+    }
+
+    private static int slot(final int length, final int first, final int second, final int multiplier) {
+        final int key = (length << 16) ^ ((first & 0xFF) << 8) ^ (second & 0xFF);
+        return (key * multiplier) >>> 26; // top 6 bits -> [0, LOOKUP_SIZE)
+    }
+
+    // Search for an odd multiplier that sends every lexeme to its own slot.
+    private static int findPerfectMultiplier() {
+        for (int multiplier = 0x9E3779B1; ; multiplier += 2) {
+            final boolean[] used = new boolean[LOOKUP_SIZE];
+            boolean perfect = true;
+
+            for (final var token : values()) {
+                for (final var lexeme : token.lexemeList) {
+                    final int slot = slot(lexeme.length(), lexeme.charAt(0),
+                            lexeme.length() > 1 ? lexeme.charAt(1) : 0, multiplier);
+                    if (used[slot]) {
+                        perfect = false;
+                    }
+                    used[slot] = true;
+                }
+            }
+
+            if (perfect) {
+                return multiplier;
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A compact, "struct of arrays" token stream.
+ * <p>
+ * Instead of one object per token, every token is a slot in three parallel arrays: the token
+ * kind (as a {@link Token} ordinal) and the start/end byte offsets of its lexeme in the source
+ * buffer. The lexeme text is only materialized when somebody asks for it, and keywords and
+ * operators come back as shared constants, so only identifiers and numbers ever allocate.
+ */
+final class TokenBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // The largest byte array a JVM will allocate: the offsets are ints into one source array.
+    private static final long MAX_SOURCE = Integer.MAX_VALUE - 8;
+
+    // The source the offsets point into.
+    private byte[] source;
+
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    // Line starts of the source, indexed on first use.
+    private LineMap lines;
+
+    /**
+     * Check that a file fits in one source array, before reading it into one.
+     *
+     * @param file the program
+     * @param size its size
+     * @return the size
+     * @throws IOException if the file is larger than 2 GB
+     */
+    static int sourceSize(final Path file, final long size) throws IOException {
+        if (size > MAX_SOURCE) {
+            throw new IOException(file + " is too large to compile (" + size + " bytes; at most 2 GB)");
+        }
+        return (int) size;
+    }
+
+    TokenBuffer(final byte[] source) {
+        this(source, source.length);
+    }
+
+    /**
+     * @param source the source the offsets point into
+     * @param length how many bytes of it will be scanned
+     */
+    TokenBuffer(final byte[] source, final int length) {
+        this.source = source;
+        // A token needs at least two bytes of input (itself plus a delimiter), most need more.
+        final int capacity = Math.max(INITIAL_CAPACITY, length / 4);
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+    }
+
+    private TokenBuffer(final byte[] source, final int capacity, final int size) {
+        this.source = source;
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.size = size;
+    }
+
+    /**
+     * Join the tokens of consecutive parts of one source, each scanned on its own (see
+     * {@link ParallelLexer}), into one stream.
+     *
+     * @param source the source the offsets point into
+     * @param parts  the parts' tokens, in source order
+     * @return the tokens of the whole source
+     */
+    static TokenBuffer concat(final byte[] source, final TokenBuffer[] parts) {
+        int size = 0;
+        for (final TokenBuffer part : parts) {
+            size = Math.addExact(size, part.size);
+        }
+
+        final var tokens = new TokenBuffer(source, Math.max(INITIAL_CAPACITY, size), size);
+        int at = 0;
+        for (final TokenBuffer part : parts) {
+            System.arraycopy(part.kinds, 0, tokens.kinds, at, part.size);
+            System.arraycopy(part.starts, 0, tokens.starts, at, part.size);
+            System.arraycopy(part.ends, 0, tokens.ends, at, part.size);
+            at += part.size;
+        }
+        return tokens;
+    }
+
+    /**
+     * Append a token.
+     *
+     * @param token the token kind
+     * @param start offset of the first byte of the lexeme
+     * @param end   offset one past the last byte of the lexeme
+     */
+    void add(final Token token, final int start, final int end) {
+        if (size == kinds.length) {
+            final int capacity = size + (size >> 1) + 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+
+        kinds[size] = (byte) token.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Replace tokens {@code [from...to)} with the tokens of another buffer, after the source
+     * was edited: the other buffer was scanned from the new source, and every token after the
+     * edit moves by {@code shift} bytes.
+     *
+     * @param from        the first token replaced
+     * @param to          one past the last token replaced
+     * @param replacement the new tokens, with offsets into the new source
+     * @param newSource   the edited source
+     * @param shift       how far the bytes after the edit moved
+     */
+    void splice(final int from, final int to, final TokenBuffer replacement, final byte[] newSource,
+                final int shift) {
+        final int count = replacement.size;
+        final int newSize = size - (to - from) + count;
+
+        if (newSize > kinds.length) {
+            final int capacity = newSize + (newSize >> 1) + 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+
+        // Move the tail, then drop the new tokens into the gap.
+        final int tail = size - to;
+        System.arraycopy(kinds, to, kinds, from + count, tail);
+        System.arraycopy(starts, to, starts, from + count, tail);
+        System.arraycopy(ends, to, ends, from + count, tail);
+        if (shift != 0) {
+            for (int i = from + count; i < newSize; i++) {
+                starts[i] += shift;
+                ends[i] += shift;
+            }
+        }
+        System.arraycopy(replacement.kinds, 0, kinds, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.ends, 0, ends, from, count);
+
+        this.size = newSize;
+        this.source = newSource;
+        this.lines = null;
+    }
+
+    /**
+     * @param offset a byte offset in the source
+     * @return the index of the first token that starts at or after it
+     */
+    int firstStartingAt(final int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Token token(final int index) {
+        return Token.fromOrdinal(kinds[index]);
+    }
+
+    int start(final int index) {
+        return starts[index];
+    }
+
+    int end(final int index) {
+        return ends[index];
+    }
+
+    byte[] source() {
+        return source;
+    }
+
+    /**
+     * @param index the token's position in the stream (the end of the stream for the end of the source)
+     * @return the token's byte offset in the source
+     */
+    int offset(final int index) {
+        return index < size ? starts[index] : source.length;
+    }
+
+    /**
+     * @return the line/column index of the source, built the first time it's asked for
+     */
+    LineMap lines() {
+        if (lines == null) {
+            lines = new LineMap(source);
+        }
+        return lines;
+    }
+
+    /**
+     * Build (or look up) the text of a token.
+     *
+     * @param index the token's position in the stream
+     * @return the lexeme
+     */
+    String lexeme(final int index) {
+        final int start = starts[index];
+        final int end = ends[index];
+
+        final String canonical = Token.canonicalLexeme(source, start, end);
+        return canonical != null ? canonical : new String(source, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        final var builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append("{lexeme=").append(lexeme(i)).append(", token=").append(token(i)).append('}');
+        }
+        return builder.append(']').toString();
+    }
+}
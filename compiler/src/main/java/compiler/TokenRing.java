@@ -0,0 +1,254 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue of tokens from one producer thread to one consumer thread (see
+ * {@link PipelinedLexer}).
+ * <p>
+ * A token is a record of three ints (kind, start offset, end offset) in one int array used as
+ * a ring, so passing tokens allocates nothing. Neither side touches a shared counter per token:
+ * the producer publishes its tokens a batch at a time, and the consumer hands back its slots
+ * only once it has read everything it was shown. A side that has to wait spins briefly (on
+ * more than one core) and then parks until the other side wakes it up; a full ring holds the
+ * producer back.
+ * <p>
+ * Either side can stop the other: the producer {@link #finish finishes}, with or without a
+ * failure, and the consumer {@link #close closes} the ring when it doesn't want any more
+ * tokens.
+ */
+final class TokenRing {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    // How many tokens the producer writes before it shows them to the consumer.
+    private static final int BATCH = 256;
+
+    // Spinning only helps when the other side runs on another core.
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 256 : 0;
+
+    private static final int KIND = 0;
+    private static final int START = 1;
+    private static final int END = 2;
+    private static final int FIELDS = 3;
+
+    private final int[] records;
+    private final int mask;
+
+    // Producer side: tokens written (published or not), and the consumer's released count as last seen.
+    private long written;
+    private long releasedSeen;
+    private volatile long published;
+    private volatile boolean finished;
+    private volatile Throwable failure;
+    private volatile Thread waitingProducer;
+    private long waitNanos;
+
+    // Consumer side: tokens read, and the producer's published count as last seen.
+    private long read;
+    private long publishedSeen;
+    private volatile long released;
+    private volatile boolean closed;
+    private volatile Thread waitingConsumer;
+
+    // The token last taken by the consumer.
+    private int kind;
+    private int start;
+    private int end;
+
+    /**
+     * @param capacity how many tokens the producer may be ahead of the consumer; a power of 2
+     */
+    TokenRing(final int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of 2: " + capacity);
+        }
+        this.records = new int[capacity * FIELDS];
+        this.mask = capacity - 1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // Producer side
+
+    /**
+     * Add a token, waiting for room if the ring is full.
+     *
+     * @return false if the consumer has closed the ring, so there's no point going on
+     */
+    boolean put(final Token kind, final int start, final int end) {
+        if (written - releasedSeen > mask && !this.awaitRoom()) {
+            return false;
+        }
+
+        final int slot = (int) (written & mask) * FIELDS;
+        records[slot + KIND] = kind.ordinal();
+        records[slot + START] = start;
+        records[slot + END] = end;
+        written++;
+
+        if (written - published >= BATCH) {
+            this.publish();
+        }
+        return true;
+    }
+
+    /**
+     * Show the consumer every token added so far, e.g. before blocking for more input.
+     */
+    void publish() {
+        if (written != published) {
+            published = written;
+            LockSupport.unpark(waitingConsumer);
+        }
+    }
+
+    /**
+     * There are no more tokens: publish the last ones, and let the consumer see the end (or the
+     * failure) once it has read them.
+     *
+     * @param failure why the producer stopped early, or null
+     */
+    void finish(final Throwable failure) {
+        this.failure = failure;
+        published = written;
+        finished = true;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * @return how long the producer waited for room so far (not counting the brief spinning)
+     */
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return true if the consumer has closed the ring
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Wait until the consumer has released a slot; false if it closed the ring instead.
+    private boolean awaitRoom() {
+        this.publish();
+        for (int i = 0; i < SPINS; i++) {
+            releasedSeen = released;
+            if (written - releasedSeen <= mask || closed) {
+                return !closed;
+            }
+            Thread.onSpinWait();
+        }
+
+        final long start = System.nanoTime();
+        waitingProducer = Thread.currentThread();
+        try {
+            while (true) {
+                releasedSeen = released;
+                if (closed) {
+                    return false;
+                }
+                if (written - releasedSeen <= mask) {
+                    return true;
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingProducer = null;
+            waitNanos += System.nanoTime() - start;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+    // Consumer side
+
+    /**
+     * Take the next token, waiting for the producer if there is none yet; see {@link #kind()},
+     * {@link #start()} and {@link #end()}.
+     *
+     * @return false once the producer has finished and every token was taken
+     * @throws RuntimeException whatever stopped the producer early (checked exceptions wrapped)
+     */
+    boolean take() {
+        if (read == publishedSeen && !this.awaitTokens()) {
+            return false;
+        }
+
+        final int slot = (int) (read & mask) * FIELDS;
+        kind = records[slot + KIND];
+        start = records[slot + START];
+        end = records[slot + END];
+        read++;
+        return true;
+    }
+
+    Token kind() {
+        return Token.fromOrdinal(kind);
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    /**
+     * Stop taking tokens: the producer stops at its next token, even if it's waiting for room.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(waitingProducer);
+    }
+
+    // Hand back the slots read so far, and wait for more tokens; false at the end.
+    private boolean awaitTokens() {
+        released = read;
+        LockSupport.unpark(waitingProducer);
+
+        for (int i = 0; i < SPINS; i++) {
+            if (this.seeTokens()) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+
+        waitingConsumer = Thread.currentThread();
+        try {
+            while (!this.seeTokens()) {
+                if (finished) {
+                    // Everything was published before finishing; look once more.
+                    if (this.seeTokens()) {
+                        return true;
+                    }
+                    this.rethrow();
+                    return false;
+                }
+                LockSupport.park(this);
+            }
+            return true;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    private boolean seeTokens() {
+        publishedSeen = published;
+        return publishedSeen != read;
+    }
+
+    private void rethrow() {
+        final Throwable cause = failure;
+        if (cause instanceof RuntimeException ex) {
+            throw ex;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        if (cause != null) {
+            throw new IllegalStateException("The lexer failed", cause);
+        }
+    }
+}
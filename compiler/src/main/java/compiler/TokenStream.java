@@ -0,0 +1,51 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+/**
+ * What the parsers (and their {@link Diagnostics}) need from a lexer: the current token, and
+ * the next one on request.
+ * <p>
+ * The {@link LexicalAnalyzer} scans the whole source first and keeps every token, so it can
+ * also go back ({@link LexicalAnalyzer#seek}) and hand out all of them (for a {@link ParseTree}).
+ * A {@link StreamingLexer} only ever has the current token.
+ */
+interface TokenStream {
+
+    /**
+     * @return the current token ({@link Token#$$} once the source is used up)
+     */
+    Token currentToken();
+
+    /**
+     * Advance to the next token, making it current (not past the end of the source).
+     */
+    void advanceToken();
+
+    /**
+     * @return the text of the current token, or "EOF" at the end of the source
+     */
+    String getCurrentLexeme();
+
+    /**
+     * @return the index of the current token, counting from 0
+     */
+    int getPosition();
+
+    /**
+     * The line a token is on.
+     *
+     * @param position the index of the token; a lexer that doesn't keep its tokens only knows
+     *                 the current one's
+     * @return the line, counting from 1
+     */
+    int line(int position);
+
+    /**
+     * The column a token starts at, in characters.
+     *
+     * @param position the index of the token; a lexer that doesn't keep its tokens only knows
+     *                 the current one's
+     * @return the column, counting from 1
+     */
+    int column(int position);
+}
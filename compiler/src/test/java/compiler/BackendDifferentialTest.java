@@ -0,0 +1,182 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Random programs must read and write exactly the same on every backend, at every {@code -O}
+ * level, as on the {@link Interpreter}: including division by zero, NaN in comparisons, and
+ * running out of input.
+ */
+final class BackendDifferentialTest {
+
+    private static final String[] VARIABLES = {"a", "b", "c", "d"};
+    private static final String[] NUMBERS = {"0", "1", "2", "3", "10"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+    private static final String[] RELATIONS = {"<", ">", "<=", ">=", "=", "!="};
+
+    // What the programs read; some read more than this, and must fail the same way.
+    private static final String INPUT = "3 0 -1 2.5 7 0 1e308 -4 0.25 9 0 2 5 -0 8 1 6 0 3 4 1 1 2 0 -2 7 9 1 0 5";
+
+    private static final int PROGRAMS = 300;
+
+    @Test
+    void backendsAgreeWithTheInterpreter() {
+        final var random = new Random(455);
+
+        for (int i = 0; i < PROGRAMS; i++) {
+            final String source = new ProgramGenerator(random).generate();
+            final Program program = program(source);
+            final String expected = interpret(program);
+
+            for (int level = 0; level <= Optimizer.MAX_LEVEL; level++) {
+                final ControlFlowGraph graph = level == 0
+                        ? ControlFlowGraph.from(program)
+                        : new Optimizer(ControlFlowGraph.from(program)).optimize(level);
+                final String where = "-O" + level + " on:\n" + source;
+
+                assertEquals(expected, runOnMachine(graph), () -> "vm " + where);
+                assertEquals(expected, runAsBytecode(graph, program), () -> "bytecode " + where);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    static Program program(final String source) {
+        final var lexer = new LexicalAnalyzer(source.getBytes(StandardCharsets.UTF_8));
+        final var builder = new ParseTreeBuilder(lexer);
+        new TableDrivenParser(lexer, builder).analyze();
+        final ParseTree tree = builder.getTree();
+        assertNull(tree.getSyntaxError(), () -> "Not a program:\n" + source);
+        return Program.from(tree);
+    }
+
+    private static String interpret(final Program program) {
+        return outcome((in, out) -> new Interpreter(program, in, out).run());
+    }
+
+    private static String runOnMachine(final ControlFlowGraph graph) {
+        final RegisterMachine machine = RegisterMachine.compile(graph);
+        return outcome((in, out) -> machine.run(machine.newRegisters(), in, out));
+    }
+
+    private static String runAsBytecode(final ControlFlowGraph graph, final Program program) {
+        final var run = BytecodeBackend.load(BytecodeBackend.compile(graph));
+        return outcome((in, out) -> BytecodeBackend.run(run, in, out, new double[program.getSlotCount()]));
+    }
+
+    private interface Run {
+        void run(ProgramInput in, ProgramOutput out);
+    }
+
+    // What the program wrote, and how it failed, if it did.
+    private static String outcome(final Run run) {
+        final var output = new ByteArrayOutputStream();
+        final var in = new ProgramInput(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+        String failure = "";
+        try {
+            run.run(in, new ProgramOutput(output));
+        } catch (ProgramException ex) {
+            failure = "failed: " + ex.getMessage();
+        }
+        return output.toString(StandardCharsets.UTF_8) + failure;
+    }
+
+    // ****************************************************************************************
+
+    /*
+     * Writes a random program that terminates: every loop counts a variable of its own up to a
+     * small bound, and nothing else sets that variable.
+     */
+    private static final class ProgramGenerator {
+
+        private static final int MAX_DEPTH = 3;
+
+        private final Random random;
+        private final StringBuilder source = new StringBuilder();
+        private int loops;
+
+        ProgramGenerator(final Random random) {
+            this.random = random;
+        }
+
+        String generate() {
+            this.statements(0, 3 + random.nextInt(6));
+            // Show the final values, so that every assignment can matter.
+            for (final String variable : VARIABLES) {
+                source.append("write ").append(variable).append('\n');
+            }
+            return source.toString();
+        }
+
+        private void statements(final int depth, final int count) {
+            for (int i = 0; i < count; i++) {
+                this.statement(depth);
+            }
+        }
+
+        private void statement(final int depth) {
+            final int kind = random.nextInt(depth < MAX_DEPTH ? 8 : 5);
+            switch (kind) {
+                case 0, 1 -> source.append(this.variable()).append(" := ").append(this.expression(2)).append('\n');
+                case 2 -> source.append("read ").append(this.variable()).append('\n');
+                case 3, 4 -> source.append("write ").append(this.expression(2)).append('\n');
+                case 5 -> {
+                    source.append("if ").append(this.condition()).append(" then\n");
+                    this.statements(depth + 1, 1 + random.nextInt(3));
+                    if (random.nextBoolean()) {
+                        source.append("else\n");
+                        this.statements(depth + 1, 1 + random.nextInt(3));
+                    }
+                    source.append("fi\n");
+                }
+                case 6 -> {
+                    final String counter = this.counter();
+                    source.append(counter).append(" := 0\n");
+                    source.append("while ").append(counter).append(" < ").append(1 + random.nextInt(3)).append(" do\n");
+                    this.statements(depth + 1, 1 + random.nextInt(3));
+                    source.append(counter).append(" := ").append(counter).append(" + 1\nod\n");
+                }
+                default -> {
+                    final String counter = this.counter();
+                    source.append(counter).append(" := 0\ndo\n");
+                    this.statements(depth + 1, 1 + random.nextInt(3));
+                    source.append(counter).append(" := ").append(counter).append(" + 1\n");
+                    source.append("until ").append(counter).append(" >= ").append(1 + random.nextInt(3)).append('\n');
+                }
+            }
+        }
+
+        // Conditions on the variables, which may well be NaN or infinite by now.
+        private String condition() {
+            return this.expression(1) + " " + RELATIONS[random.nextInt(RELATIONS.length)] + " " + this.expression(1);
+        }
+
+        private String expression(final int depth) {
+            final int kind = random.nextInt(depth > 0 ? 5 : 2);
+            return switch (kind) {
+                case 0 -> this.variable();
+                case 1 -> NUMBERS[random.nextInt(NUMBERS.length)];
+                case 2 -> "(" + this.expression(depth - 1) + ")";
+                default -> this.expression(depth - 1) + " " + OPERATORS[random.nextInt(OPERATORS.length)] + " "
+                        + this.expression(depth - 1);
+            };
+        }
+
+        private String variable() {
+            return VARIABLES[random.nextInt(VARIABLES.length)];
+        }
+
+        private String counter() {
+            return "loop" + (char) ('a' + loops++ % 26) + (loops > 26 ? "z".repeat(loops / 26) : "");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link Compilation#compile} closes the sink it was given, even if the program can't be read.
+ */
+final class CompilationTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sinkIsClosedWhenTheFileCantBeRead() {
+        final File missing = directory.resolve("missing.txt").toFile();
+        for (final String lexer : new String[]{"sequential", "parallel", "streaming", "pipelined"}) {
+            final CompilerOptions options = CompilerOptions.parse(new String[]{"-q", "--lexer", lexer, missing.getPath()});
+            final var writer = new ClosableWriter();
+
+            assertThrows(IOException.class, () -> Compilation.compile(options, missing, CodeSink.toWriter(writer)));
+            assertTrue(writer.closed, lexer + " left the sink open");
+        }
+    }
+
+    private static final class ClosableWriter extends StringWriter {
+
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The {@link CompileCache} must find code only under the settings it was compiled with, keep
+ * the most recently used entries within its size, and keep its running total right however
+ * many caches store into the directory at once.
+ */
+final class CompileCacheTest {
+
+    private static final CompilerOptions RECURSIVE = CompilerOptions.forRequest(false, false, false);
+    private static final CompilerOptions TABLE = CompilerOptions.forRequest(true, false, false);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keyCoversSourceAndSettings() {
+        final byte[] source = "write 1".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(CompileCache.key(RECURSIVE, source), CompileCache.key(RECURSIVE, source.clone()));
+        assertNotEquals(CompileCache.key(RECURSIVE, source), CompileCache.key(TABLE, source));
+        assertNotEquals(CompileCache.key(RECURSIVE, source),
+                CompileCache.key(CompilerOptions.forRequest(false, true, false), source));
+        assertNotEquals(CompileCache.key(RECURSIVE, source),
+                CompileCache.key(RECURSIVE, "write 2".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void storedCodeComesBack() throws IOException {
+        final var cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_SIZE);
+        final String key = key(1);
+
+        assertNull(cache.read(key));
+        assertFalse(cache.contains(key));
+        cache.store(key, "digraph {}\n");
+
+        assertEquals("digraph {}\n", cache.read(key));
+        final Path output = directory.resolve("out.dot");
+        assertTrue(cache.copyTo(key, output));
+        assertEquals("digraph {}\n", Files.readString(output));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(Files.size(output), total());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        final int entrySize = 1000;
+        final var cache = new CompileCache(directory, 10L * entrySize);
+        final long longAgo = System.currentTimeMillis() - 3_600_000;
+
+        // Ten entries fill the cache exactly, the oldest first.
+        for (int i = 0; i < 10; i++) {
+            cache.store(key(i), code(i, entrySize));
+            Files.setLastModifiedTime(entry(key(i)), FileTime.fromMillis(longAgo + i * 1000L));
+        }
+        assertEquals(10L * entrySize, total());
+
+        // Using the oldest one saves it; the eleventh evicts down to 90%, the least recently used first.
+        assertTrue(cache.contains(key(0)));
+        cache.store(key(10), code(10, entrySize));
+
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(i != 1 && i != 2, Files.exists(entry(key(i))), "entry " + i);
+        }
+        assertEquals(9L * entrySize, total());
+        assertEquals(total(), sizeOfEntries());
+    }
+
+    @Test
+    void concurrentStoresAgreeOnTheTotal() throws Exception {
+        final long maxSize = 50_000;
+        // Caches of their own, as separate builds would have, on threads of their own.
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> stores = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final var cache = new CompileCache(directory, maxSize);
+                final int first = thread * 20;
+                stores.add(pool.submit(() -> {
+                    // Overlapping ranges, so that some stores find the entry there already.
+                    for (int i = first; i < first + 40; i++) {
+                        cache.store(key(i), code(i, 500 + 37 * i));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> store : stores) {
+                store.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(sizeOfEntries(), total());
+        assertTrue(total() <= maxSize, total() + " bytes");
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")), "temporary files left");
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String key(final int program) {
+        return CompileCache.key(RECURSIVE, ("write " + program).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String code(final int program, final int size) {
+        final String line = "// " + program + "\n";
+        return line + "x".repeat(size - line.length());
+    }
+
+    // Where the class doc says an entry goes.
+    private Path entry(final String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ".dot");
+    }
+
+    // The running total in the lock file.
+    private long total() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(directory.resolve("cache.lock"))).getLong();
+    }
+
+    private long sizeOfEntries() throws IOException {
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            long total = 0;
+            for (final Path file : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".dot"))::iterator) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A {@link CompileServer} on the loopback interface must answer each {@link CompileClient}
+ * request the way {@link MAIN} would compile it, and turn away what it can't serve.
+ */
+final class CompileServerTest {
+
+    private static final byte[] PROGRAM = """
+            read n
+            i := 0
+            while i < n do write i * 2 i := i + 1 od
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BROKEN = "x := 1 + \nwrite ( y\n".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private CompileServer server;
+
+    @AfterEach
+    void stop() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void answersLikeALocalCompile() throws Exception {
+        final String address = this.start("--server", "0");
+        try (CompileClient client = new CompileClient(address)) {
+            // Several requests on one connection, with every combination of flags.
+            for (final boolean table : new boolean[]{false, true}) {
+                for (final boolean tree : new boolean[]{false, true}) {
+                    final CompilerOptions options = CompilerOptions.forRequest(table, tree, tree);
+                    final CompileClient.Response response = client.compile(options, PROGRAM);
+
+                    assertEquals(CompileServer.OK, response.status());
+                    assertEquals(compileHere(options, PROGRAM), response.text());
+                    assertEquals("", response.errors());
+                }
+            }
+        }
+    }
+
+    @Test
+    void incrementalRequestsAreVersionsOfOneProgram() throws Exception {
+        final String address = this.start("--server", "0");
+        final byte[] edited = new String(PROGRAM, StandardCharsets.UTF_8)
+                .replace("i * 2", "i * 3")
+                .getBytes(StandardCharsets.UTF_8);
+        // What the connection's parser generates for each version in turn.
+        final var here = new IncrementalParser(PROGRAM);
+        final String first = emit(here);
+        here.update(edited);
+        final String second = emit(here);
+
+        try (CompileClient client = new CompileClient(address)) {
+            final CompilerOptions options = CompilerOptions.parse(
+                    new String[]{"--client", address, "--incremental", "in.txt"});
+            assertTrue(options.isIncremental());
+
+            assertEquals(first, client.compile(options, PROGRAM, true).text());
+            final CompileClient.Response response = client.compile(options, edited, true);
+            assertEquals(CompileServer.OK, response.status());
+            assertEquals(second, response.text());
+        }
+    }
+
+    @Test
+    void answersOnAUnixDomainSocket() throws Exception {
+        final String address = this.start("--server", directory.resolve("compiler.sock").toString());
+        try (CompileClient client = new CompileClient(address)) {
+            final CompilerOptions options = CompilerOptions.forRequest(false, false, false);
+            assertEquals(compileHere(options, PROGRAM), client.compile(options, PROGRAM).text());
+        }
+    }
+
+    @Test
+    void syntaxErrorsComeAfterTheCode() throws Exception {
+        final String address = this.start("--server", "0");
+        try (CompileClient client = new CompileClient(address)) {
+            final CompilerOptions options = CompilerOptions.forRequest(false, false, false);
+            final CompileClient.Response response = client.compile(options, BROKEN);
+
+            assertEquals(CompileServer.SYNTAX_ERROR, response.status());
+            assertEquals(compileHere(options, BROKEN), response.text());
+            final var diagnostics = Compilation.diagnose(options, BROKEN, CodeSink.inMemory());
+            assertEquals(diagnostics.describeAll(), response.errors());
+            assertTrue(response.errors().startsWith("Line 2, column 1: "), response.errors());
+
+            // The connection goes on.
+            assertEquals(CompileServer.OK, client.compile(options, PROGRAM).status());
+        }
+    }
+
+    @Test
+    void badRequestHangsUp() throws Exception {
+        final InetSocketAddress address = (InetSocketAddress) CompileServer.address(this.start("--server", "0"));
+        for (final int[] request : new int[][]{{0x12345678, 0}, {CompileServer.MAGIC, -1},
+                {CompileServer.MAGIC, CompileServer.MAX_SOURCE_SIZE + 1}}) {
+            try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+                final var out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(request[0]);
+                out.writeByte(0);
+                out.writeInt(request[1]);
+                out.flush();
+
+                final var in = new DataInputStream(socket.getInputStream());
+                assertEquals(CompileServer.BAD_REQUEST, in.readByte());
+                in.readNBytes(in.readInt());
+                assertEquals(-1, in.read(), "the connection is still open");
+            }
+        }
+    }
+
+    @Test
+    void busyOnceThreadsAndQueueAreFull() throws Exception {
+        final String address = this.start("--server", "0", "--threads", "1", "--queue", "1");
+        // Long enough to keep the one compile thread busy while the others ask.
+        final byte[] big = "x := (1 + y) * 2 - z / 4\n".repeat(4_000).getBytes(StandardCharsets.UTF_8);
+        final CompilerOptions options = CompilerOptions.forRequest(false, false, false);
+
+        final int clientCount = 6;
+        final List<CompileClient> clients = new ArrayList<>();
+        final ExecutorService pool = Executors.newFixedThreadPool(clientCount);
+        try {
+            final List<Future<CompileClient.Response>> responses = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                final var client = new CompileClient(address);
+                clients.add(client);
+                responses.add(pool.submit(() -> client.compile(options, big)));
+            }
+
+            final List<CompileClient> turnedAway = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                final CompileClient.Response response = responses.get(i).get();
+                if (response.status() == CompileServer.BUSY) {
+                    turnedAway.add(clients.get(i));
+                } else {
+                    assertEquals(CompileServer.OK, response.status(), response.text());
+                }
+            }
+            // One compiling and one waiting; the rest can't all have come too late.
+            assertTrue(!turnedAway.isEmpty() && turnedAway.size() <= clientCount - 2, turnedAway.size() + " BUSY answers");
+
+            // A BUSY answer leaves the connection open for the next request.
+            for (final CompileClient client : turnedAway) {
+                final CompileClient.Response response = client.compile(options, PROGRAM);
+                assertEquals(CompileServer.OK, response.status(), response.text());
+            }
+        } finally {
+            pool.shutdown();
+            for (final CompileClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void idleClientIsHungUpOn() throws Exception {
+        final InetSocketAddress address = (InetSocketAddress) CompileServer.address(
+                this.start("--server", "0", "--idle-timeout", "1"));
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(30_000);
+            final long start = System.nanoTime();
+            // Half a request, then nothing.
+            socket.getOutputStream().write(new byte[]{0x44, 0x4F});
+            assertEquals(-1, socket.getInputStream().read());
+            assertTrue(System.nanoTime() - start >= 900_000_000L, "hung up before the timeout");
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Start a server on a thread of its own; returns the address for a client.
+    private String start(final String... args) throws IOException {
+        server = new CompileServer(CompilerOptions.parse(args));
+        final var thread = new Thread(server::serve, "server");
+        thread.setDaemon(true);
+        thread.start();
+
+        return server.getAddress() instanceof InetSocketAddress inet
+                ? Integer.toString(inet.getPort())
+                : args[1];
+    }
+
+    private static String emit(final IncrementalParser parser) {
+        final CodeSink output = CodeSink.inMemory();
+        final var codeGenerator = new CodeGenerator(output);
+        parser.emit(codeGenerator);
+        codeGenerator.close();
+        return output.contents().orElseThrow();
+    }
+
+    private static String compileHere(final CompilerOptions options, final byte[] source) {
+        final CodeSink output = CodeSink.inMemory();
+        Compilation.diagnose(options, source, output);
+        return output.contents().orElseThrow();
+    }
+}
@@ -0,0 +1,104 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Both parsers must recover from a syntax error at the same place, report each error once,
+ * where it was found, and produce the same code and {@link Diagnostics} as each other.
+ */
+final class DiagnosticsTest {
+
+    @Test
+    void everyBrokenStatementIsReported() {
+        this.assertErrors("x := 1 + \nwrite ( y\nread 5\nwrite 2\n",
+                "Line 2, column 1: SYNTAX ERROR: 'NUMBER' was expected but 'write' was found.",
+                "Line 3, column 1: SYNTAX ERROR: 'RIGHTP' was expected but 'read' was found.",
+                "Line 3, column 6: SYNTAX ERROR: 'UNKNOWN' was expected but '5' was found.");
+    }
+
+    @Test
+    void whileGoesOnAtItsOwnDo() {
+        this.assertErrors("while x < do z := 1 od\nwrite z\n",
+                "Line 1, column 11: SYNTAX ERROR: 'NUMBER' was expected but 'do' was found.");
+        this.assertErrors("while x < * 2 do z := 1 od\n",
+                "Line 1, column 11: SYNTAX ERROR: 'NUMBER' was expected but '*' was found.");
+        // Errors in the body are still found.
+        this.assertErrors("while x < do z := od\n",
+                "Line 1, column 11: SYNTAX ERROR: 'NUMBER' was expected but 'do' was found.",
+                "Line 1, column 19: SYNTAX ERROR: 'NUMBER' was expected but 'od' was found.");
+    }
+
+    @Test
+    void ifGoesOnAtItsOwnThen() {
+        this.assertErrors("if x then y := 1 else y := 2 fi\nwrite y\n",
+                "Line 1, column 6: SYNTAX ERROR: 'RELATION' was expected but 'then' was found.");
+    }
+
+    @Test
+    void statementBoundaryBeforeTheKeywordWins() {
+        // No do before the next statement: the while is given up, and the list carries on.
+        this.assertErrors("while x < \nwrite 1\n",
+                "Line 2, column 1: SYNTAX ERROR: 'NUMBER' was expected but 'write' was found.");
+    }
+
+    @Test
+    void falloutOfAnErrorIsNotReported() {
+        // The missing od is also a stray fi at the end of the program; only the first counts.
+        this.assertErrors("while a < b do x := 1 fi\n",
+                "Line 1, column 23: SYNTAX ERROR: 'OD' was expected but 'fi' was found.");
+    }
+
+    @Test
+    void reportDropsErrorsAtOrBeforeTheLastOne() {
+        final var diagnostics = new Diagnostics(ParallelLexer.lex(bytes("x := 1\n  y := 2\n")));
+
+        assertFalse(diagnostics.hasErrors());
+        assertTrue(diagnostics.report(1, "first"));
+        assertFalse(diagnostics.report(1, "fallout"));
+        assertFalse(diagnostics.report(0, "earlier"));
+        assertTrue(diagnostics.report(3, "second"));
+
+        assertEquals(2, diagnostics.count());
+        assertEquals(3, diagnostics.token(1));
+        assertEquals(2, diagnostics.line(1));
+        assertEquals(3, diagnostics.column(1));
+        assertEquals("Line 1, column 3: first\nLine 2, column 3: second\n", diagnostics.describeAll());
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // The same errors from both parsers, with or without a tree, and the same code from each.
+    private void assertErrors(final String program, final String... errors) {
+        final String expected = errors.length == 0 ? "" : String.join("\n", errors) + "\n";
+        final byte[] source = bytes(program);
+
+        String code = null;
+        for (final boolean table : new boolean[]{false, true}) {
+            for (final boolean tree : new boolean[]{false, true}) {
+                final CompilerOptions options = CompilerOptions.forRequest(table, tree, false);
+                final CodeSink output = CodeSink.inMemory();
+                final Diagnostics diagnostics = Compilation.diagnose(options, source, output);
+
+                final String parser = (table ? "table" : "recursive") + (tree ? " with a tree" : "");
+                assertEquals(expected, diagnostics.describeAll(), parser);
+                assertEquals(errors.length, diagnostics.count(), parser);
+                if (!tree) {
+                    if (code == null) {
+                        code = output.contents().orElseThrow();
+                    }
+                    assertEquals(code, output.contents().orElseThrow(), parser);
+                }
+            }
+        }
+    }
+
+    private static byte[] bytes(final String program) {
+        return program.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link IncrementalParser} must generate what a fresh parse of the same version would,
+ * up to the node ids.
+ */
+final class IncrementalParserTest {
+
+    private static final String PROGRAM = """
+            read n
+            sum := 0
+            i := 1
+            while i <= n do
+              if i != 0 then sum := sum + (i * 2) / 1 else sum := sum - 1 fi
+              do i := i + 1 until i >= 0
+            od
+            # a comment
+            write sum
+            """;
+
+    // What the random edits insert: bits of tokens, whole tokens, whole statements.
+    private static final String[] SNIPPETS = {
+            "x", "1", " ", "\n", "+", "*", ":=", "while ", " do ", " od", "if ", " then ", " else ", " fi",
+            "do ", " until ", "read y\n", "write 3\n", "(", ")", "<", "z := z + 1\n", "# c\n", "",
+    };
+
+    // A node name, e.g. "<STMT>-12": its id is renumbered.
+    private static final Pattern NODE_ID = Pattern.compile("-(\\d+)\"");
+
+    @Test
+    void randomEditsMatchAFreshParse() {
+        final var random = new Random(455);
+        String program = PROGRAM;
+        String lastParsed = PROGRAM;
+        final var parser = new IncrementalParser(bytes(program));
+        int syntaxErrors = 0;
+
+        for (int i = 0; i < 2_000; i++) {
+            final int at = random.nextInt(program.length() + 1);
+            final int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(6), program.length() - at) : 0;
+            final String edited = program.substring(0, at) + SNIPPETS[random.nextInt(SNIPPETS.length)]
+                    + program.substring(at + removed);
+
+            parser.update(bytes(edited));
+            assertSameCode(edited, parser);
+
+            if (parser.hasSyntaxError()) {
+                syntaxErrors++;
+                // Mostly repair the error (back to the last version that parsed), so that the
+                // program keeps growing rather than staying broken.
+                if (random.nextInt(3) > 0) {
+                    parser.update(bytes(lastParsed));
+                    assertFalse(parser.hasSyntaxError());
+                    assertSameCode(lastParsed, parser);
+                    program = lastParsed;
+                    continue;
+                }
+            } else {
+                lastParsed = edited;
+            }
+            program = edited;
+        }
+        assertTrue(syntaxErrors > 0, "No edit broke the program");
+    }
+
+    @Test
+    void syntaxErrorIsIntroducedAndRepaired() {
+        final var parser = new IncrementalParser(bytes(PROGRAM));
+        assertFalse(parser.hasSyntaxError());
+
+        final String broken = PROGRAM.replace(" fi\n", "\n");
+        parser.update(bytes(broken));
+        assertTrue(parser.hasSyntaxError());
+        assertEquals(1, parser.getDiagnostics().count());
+        assertSameCode(broken, parser);
+
+        final String repaired = broken.replace("sum - 1\n", "sum - 2 fi\n");
+        final IncrementalParser.Edit edit = parser.update(bytes(repaired));
+        assertTrue(edit.fullReparse());
+        assertFalse(parser.hasSyntaxError());
+        assertFalse(parser.getDiagnostics().hasErrors());
+        assertSameCode(repaired, parser);
+
+        // Back to editing a statement at a time.
+        final String edited = repaired.replace("sum := 0", "sum := 10");
+        assertFalse(parser.update(bytes(edited)).fullReparse());
+        assertSameCode(edited, parser);
+    }
+
+    @Test
+    void unchangedSourceCostsNothing() {
+        final var parser = new IncrementalParser(bytes(PROGRAM));
+        assertEquals(new IncrementalParser.Edit(0, 0, false), parser.update(bytes(PROGRAM)));
+        assertSameCode(PROGRAM, parser);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void assertSameCode(final String program, final IncrementalParser parser) {
+        final var lexer = new LexicalAnalyzer(bytes(program));
+        final var builder = new ParseTreeBuilder(lexer);
+        new TableDrivenParser(lexer, builder).analyze();
+        final CodeSink fresh = CodeSink.inMemory();
+        final var freshGenerator = new CodeGenerator(fresh);
+        DotEmitter.emit(builder.getTree(), freshGenerator);
+        freshGenerator.close();
+
+        final CodeSink incremental = CodeSink.inMemory();
+        final var incrementalGenerator = new CodeGenerator(incremental);
+        parser.emit(incrementalGenerator);
+        incrementalGenerator.close();
+
+        assertEquals(renumber(fresh.contents().orElseThrow()), renumber(incremental.contents().orElseThrow()),
+                () -> "After editing into:\n" + program);
+    }
+
+    // Number the node ids in the order they first appear.
+    private static String renumber(final String code) {
+        final Map<String, Integer> ids = new HashMap<>();
+        final Matcher matcher = NODE_ID.matcher(code);
+        final var renumbered = new StringBuilder();
+        while (matcher.find()) {
+            final int id = ids.computeIfAbsent(matcher.group(1), old -> ids.size());
+            matcher.appendReplacement(renumbered, "-" + id + "\"");
+        }
+        matcher.appendTail(renumbered);
+        return renumbered.toString();
+    }
+
+    private static byte[] bytes(final String program) {
+        return program.getBytes(StandardCharsets.UTF_8);
+    }
+}
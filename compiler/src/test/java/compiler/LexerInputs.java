@@ -0,0 +1,87 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Random sources for the lexer tests, and the check that a lexer scanned one the way the
+ * {@link LexicalAnalyzer} does.
+ */
+final class LexerInputs {
+
+    // Whole tokens, bits of tokens, and things that only look like tokens.
+    private static final String[] PIECES = {
+            "x", "y1", ":=", "(", ")", "+", "-", "*", "/", "<", "<=", ">=", ">", "=", "!=", "!", ":",
+            "while", "do", "od", "if", "then", "else", "fi", "read", "write", "until", "12", "3.5", "4.", "7x",
+            "été", "#c :=\n", "# comment", "$$",
+    };
+
+    // What goes between them: nothing, spaces, and every kind of line break.
+    private static final String[] GAPS = {"", " ", "\n", "\r\n", "\r", "\t", "  \n  "};
+
+    private LexerInputs() {
+    }
+
+    /**
+     * @param random    the pieces and gaps to pick
+     * @param size      about how many bytes
+     * @param longLines true to leave out almost all line breaks
+     * @return a UTF-8 encoded source
+     */
+    static byte[] random(final Random random, final int size, final boolean longLines) {
+        final var source = new StringBuilder();
+        while (source.length() < size) {
+            source.append(PIECES[random.nextInt(PIECES.length)]);
+            String gap = GAPS[random.nextInt(GAPS.length)];
+            if (longLines && (gap.indexOf('\n') >= 0 || gap.indexOf('\r') >= 0) && random.nextInt(100) > 0) {
+                gap = " ";
+            }
+            source.append(gap);
+        }
+        return source.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Every token must be the same kind, from the same offsets.
+     */
+    static void assertSameTokens(final TokenBuffer expected, final TokenBuffer actual) {
+        assertEquals(expected.size(), actual.size(), "token count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.token(i), actual.token(i), "kind of token " + i);
+            assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+            assertEquals(expected.end(i), actual.end(i), "end of token " + i);
+        }
+    }
+
+    /**
+     * A lexer that only has the current token must go through the same tokens as the
+     * {@link LexicalAnalyzer}, and place them on the same lines and columns.
+     *
+     * @param source the source both scan
+     * @param actual the lexer, at its first token; it is left at the end
+     * @param start  where actual's current token starts
+     * @param end    where actual's current token ends
+     */
+    static void assertSameTokens(final byte[] source, final TokenStream actual, final LongSupplier start,
+                                 final LongSupplier end) {
+        final var expected = new LexicalAnalyzer(source);
+        final TokenBuffer tokens = expected.getTokens();
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(i, actual.getPosition());
+            assertEquals(tokens.token(i), actual.currentToken(), "kind of token " + i);
+            assertEquals(tokens.start(i), start.getAsLong(), "start of token " + i);
+            assertEquals(tokens.end(i), end.getAsLong(), "end of token " + i);
+            assertEquals(expected.line(i), actual.line(i), "line of token " + i);
+            assertEquals(expected.column(i), actual.column(i), "column of token " + i);
+            actual.advanceToken();
+        }
+        assertEquals(Token.$$, actual.currentToken(), "past the last token");
+        assertEquals(tokens.size(), actual.getPosition());
+        assertEquals(expected.line(tokens.size()), actual.line(tokens.size()), "line of the end");
+        assertEquals(expected.column(tokens.size()), actual.column(tokens.size()), "column of the end");
+    }
+}
@@ -0,0 +1,71 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link LineMap} must place every offset where a count from the start of the source does,
+ * in whatever order the offsets are looked up.
+ */
+final class LineMapTest {
+
+    @Test
+    void lookupsInAnyOrder() {
+        final var random = new Random(15);
+        for (int i = 0; i < 20; i++) {
+            final byte[] source = LexerInputs.random(random, 1 + random.nextInt(4096), random.nextInt(3) == 0);
+            final int[][] expected = count(source);
+            final var lines = new LineMap(source);
+
+            // Forward, as the DOT output and the diagnostics look them up, then anywhere.
+            for (int offset = 0; offset <= source.length; offset += 1 + random.nextInt(5)) {
+                assertPosition(expected, lines, offset);
+            }
+            for (int j = 0; j < 1000; j++) {
+                assertPosition(expected, lines, random.nextInt(source.length + 1));
+            }
+        }
+    }
+
+    @Test
+    void lineBreaks() {
+        final byte[] source = "a\nb\r\nc\rd\n\ré".getBytes(StandardCharsets.UTF_8);
+        final var lines = new LineMap(source);
+
+        assertEquals(6, lines.lineCount());
+        assertEquals(3, lines.line(5));
+        assertEquals(1, lines.column(5));
+        assertEquals(6, lines.line(source.length));
+        assertEquals(2, lines.column(source.length));
+        assertEquals(1, lines.column(0));
+    }
+
+    private static void assertPosition(final int[][] expected, final LineMap lines, final int offset) {
+        // Nothing starts between the "\r" and the "\n" of a "\r\n".
+        if (expected[0][offset] < 0) {
+            return;
+        }
+        assertEquals(expected[0][offset], lines.line(offset), "line at " + offset);
+        assertEquals(expected[1][offset], lines.column(offset), "column at " + offset);
+    }
+
+    // The line and column of every offset, counted forward.
+    private static int[][] count(final byte[] source) {
+        final int[][] positions = new int[2][source.length + 1];
+        final var counter = new LineMap.Counter();
+        for (int offset = 0; offset <= source.length; offset++) {
+            final boolean inLineBreak = offset > 0 && source[offset - 1] == '\r'
+                    && offset < source.length && source[offset] == '\n';
+            positions[0][offset] = inLineBreak ? -1 : counter.line();
+            positions[1][offset] = counter.column();
+            if (offset < source.length) {
+                counter.count(source, offset, offset + 1);
+            }
+        }
+        return positions;
+    }
+}
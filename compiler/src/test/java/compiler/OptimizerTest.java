@@ -0,0 +1,81 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * What each {@link Optimizer} pass does to a small program, as three-address code.
+ */
+final class OptimizerTest {
+
+    @Test
+    void constantsAreFolded() {
+        final var optimizer = new Optimizer(graph("read y\nz := 2 * 3 + y\nwrite z\n"));
+        final String code = optimizer.optimize(1).toString();
+
+        assertTrue(code.contains("z = 6 + y"), code);
+        assertFalse(code.contains("*"), code);
+        assertEquals(1, optimizer.removed(Optimizer.Pass.CONSTANT_FOLDING));
+    }
+
+    @Test
+    void copiesArePropagated() {
+        final String code = new Optimizer(graph("read y\nx := y\nwrite x\n")).optimize(1).toString();
+
+        assertTrue(code.contains("write y"), code);
+    }
+
+    @Test
+    void copiesStopAtARedefinition() {
+        // Once y is set again, x still holds the old y.
+        final ControlFlowGraph optimized = new Optimizer(graph("read y\nx := y\ny := 5\nwrite x\n")).optimize(1);
+
+        assertTrue(optimized.toString().contains("write x"), optimized.toString());
+        assertEquals("7\n", run(optimized, "7"));
+    }
+
+    @Test
+    void deadCodeKeepsReads() {
+        // x is never used, but reading it still consumes the first number.
+        final var optimizer = new Optimizer(graph("read x\nread y\nx := y * 2\nwrite y\n"));
+        final ControlFlowGraph optimized = optimizer.optimize(2);
+        final String code = optimized.toString();
+
+        assertTrue(code.contains("read x"), code);
+        assertTrue(code.contains("read y"), code);
+        assertFalse(code.contains("*"), code);
+        assertEquals(1, optimizer.removed(Optimizer.Pass.DEAD_CODE));
+        assertEquals("2\n", run(optimized, "1 2"));
+        assertThrows(ProgramException.class, () -> run(optimized, "1"));
+    }
+
+    @Test
+    void unreachableBranchesGo() {
+        final String code = new Optimizer(graph("while 0 > 1 do write 1 od\nwrite 2\n")).optimize(2).toString();
+
+        assertFalse(code.contains("write 1"), code);
+        assertTrue(code.contains("write 2"), code);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    static ControlFlowGraph graph(final String program) {
+        return ControlFlowGraph.from(BackendDifferentialTest.program(program));
+    }
+
+    private static String run(final ControlFlowGraph graph, final String input) {
+        final var output = new ByteArrayOutputStream();
+        final RegisterMachine machine = RegisterMachine.compile(graph);
+        machine.run(machine.newRegisters(), new ProgramInput(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                new ProgramOutput(output));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
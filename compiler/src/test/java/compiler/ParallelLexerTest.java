@@ -0,0 +1,82 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The {@link ParallelLexer} must scan a source into the same tokens as the
+ * {@link LexicalAnalyzer}, however it is cut into chunks.
+ */
+final class ParallelLexerTest {
+
+    // Small chunks, so that a small source is cut into many.
+    private static final int CHUNK = 256;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void chunksScanLikeOnePass() throws Exception {
+        final var random = new Random(455);
+        // A pool of its own, for as many chunks (4 per thread) on any machine.
+        final var pool = new ForkJoinPool(8);
+        try {
+            for (int i = 0; i < 50; i++) {
+                final byte[] source = LexerInputs.random(random, 1 + random.nextInt(64 * 1024), random.nextInt(4) == 0);
+
+                LexerInputs.assertSameTokens(new LexicalAnalyzer(source).getTokens(),
+                        pool.submit(() -> ParallelLexer.lex(source, CHUNK)).get().getTokens());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void mappedFileScansLikeOnePass() throws IOException {
+        final var random = new Random(23);
+        for (int i = 0; i < 10; i++) {
+            final byte[] source = LexerInputs.random(random, 1 + random.nextInt(64 * 1024), false);
+            final Path file = Files.write(directory.resolve("program" + i + ".txt"), source);
+
+            final TokenBuffer tokens = ParallelLexer.lex(file, CHUNK).getTokens();
+            LexerInputs.assertSameTokens(new LexicalAnalyzer(source).getTokens(), tokens);
+            assertArrayEquals(source, tokens.source());
+        }
+    }
+
+    @Test
+    void chunksStartAfterLineBreaks() {
+        final byte[] source = "x := 1\r\ny := 2\rwrite x\n# done\n".getBytes(StandardCharsets.UTF_8);
+        final int[] bounds = ParallelLexer.split(ByteBuffer.wrap(source), 8);
+
+        assertEquals(0, bounds[0]);
+        assertEquals(source.length, bounds[bounds.length - 1]);
+        for (int i = 1; i < bounds.length - 1; i++) {
+            final byte before = source[bounds[i] - 1];
+            assertTrue(before == '\n' || before == '\r', "chunk " + i + " starts mid-line");
+            assertTrue(bounds[i] > bounds[i - 1]);
+        }
+    }
+
+    @Test
+    void longLineIsNotCut() {
+        final byte[] source = "x := y + 1 ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(new int[]{0, source.length}, ParallelLexer.split(ByteBuffer.wrap(source), 4));
+        LexerInputs.assertSameTokens(new LexicalAnalyzer(source).getTokens(),
+                ParallelLexer.lex(source, CHUNK).getTokens());
+    }
+}
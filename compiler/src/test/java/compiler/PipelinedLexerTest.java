@@ -0,0 +1,90 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The {@link PipelinedLexer} must hand the parser the same tokens as the
+ * {@link LexicalAnalyzer}, wherever its chunks cut the file.
+ */
+final class PipelinedLexerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tokensStraddleTheChunks() throws IOException {
+        final var random = new Random(25);
+        for (int i = 0; i < 10; i++) {
+            // Several chunks, so that tokens and comments are cut at their ends.
+            final byte[] source = LexerInputs.random(random, 3 * PipelinedLexer.CHUNK_SIZE + random.nextInt(1000),
+                    random.nextInt(3) == 0);
+            final Path file = Files.write(directory.resolve("program" + i + ".txt"), source);
+
+            try (PipelinedLexer lexer = PipelinedLexer.lex(file)) {
+                LexerInputs.assertSameTokens(source, lexer, lexer::getTokenStart, lexer::getTokenEnd);
+                assertEquals(source.length, lexer.getSourceSize());
+            }
+        }
+    }
+
+    @Test
+    void tokenLongerThanAChunk() throws IOException {
+        final String word = "x".repeat(3 * PipelinedLexer.CHUNK_SIZE);
+        final byte[] source = ("a := 1\r\n" + word + " := 2\r# " + word + "\nwrite " + word + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        final Path file = Files.write(directory.resolve("long.txt"), source);
+
+        try (PipelinedLexer lexer = PipelinedLexer.lex(file)) {
+            LexerInputs.assertSameTokens(source, lexer, lexer::getTokenStart, lexer::getTokenEnd);
+        }
+    }
+
+    @Test
+    void sourceInMemory() {
+        final byte[] source = LexerInputs.random(new Random(7), 100_000, false);
+        try (PipelinedLexer lexer = PipelinedLexer.lex(source)) {
+            LexerInputs.assertSameTokens(source, lexer, lexer::getTokenStart, lexer::getTokenEnd);
+            assertEquals(new LexicalAnalyzer(source).getTokens().size(), lexer.getTokenCount());
+        }
+    }
+
+    @Test
+    void emptySource() {
+        for (final String text : new String[]{"", "# nothing but a comment", " \r\n\t"}) {
+            final byte[] source = text.getBytes(StandardCharsets.UTF_8);
+            try (PipelinedLexer lexer = PipelinedLexer.lex(source)) {
+                LexerInputs.assertSameTokens(source, lexer, lexer::getTokenStart, lexer::getTokenEnd);
+            }
+        }
+    }
+
+    @Test
+    void closingStopsTheLexerThread() {
+        // Many times what the ring holds, so the lexer thread is held back when it's closed.
+        final byte[] source = "x := x + 1\n".repeat(100 * TokenRing.DEFAULT_CAPACITY).getBytes(StandardCharsets.UTF_8);
+        final int total = new LexicalAnalyzer(source).getTokens().size();
+
+        final PipelinedLexer lexer = PipelinedLexer.lex(source);
+        for (int i = 0; i < 10; i++) {
+            lexer.advanceToken();
+        }
+        lexer.close();
+
+        // What was in the ring is still handed out, and then the end: the thread has finished.
+        while (lexer.currentToken() != Token.$$) {
+            lexer.advanceToken();
+        }
+        assertTrue(lexer.getPosition() < total, "the lexer thread scanned the whole source");
+        assertTrue(lexer.getTokenCount() < total);
+    }
+}
@@ -0,0 +1,38 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link ProgramInput} must read every number the way {@link Double#parseDouble} does.
+ */
+final class ProgramInputTest {
+
+    @Test
+    void numbersReadLikeParseDouble() {
+        final String[] words = {"0", "-0", "+0", "-0.0", "7", "-7", "+7", "123456789012345", "-1234567890123456789",
+                "3.5", "-.5", "1e3", "-2.2250738585072014E-308", "Infinity", "-Infinity"};
+        final ProgramInput input = input(String.join(" \r\n\t", words));
+        for (final String word : words) {
+            // assertEquals on doubles tells -0.0 from 0.0.
+            assertEquals(Double.parseDouble(word), input.readNumber(), word);
+        }
+        assertThrows(ProgramException.class, input::readNumber);
+    }
+
+    @Test
+    void wordsThatAreNotNumbers() {
+        for (final String word : new String[]{"-", "+", "x", "1-", "--1", "1x"}) {
+            assertThrows(ProgramException.class, () -> input(word).readNumber(), word);
+        }
+    }
+
+    private static ProgramInput input(final String text) {
+        return new ProgramInput(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,55 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link ProgramOutput} must write every number whole, wherever the end of its buffer falls.
+ */
+final class ProgramOutputTest {
+
+    private static final double[] LONGEST = {-2.2250738585072014E-308, -3.3e-301, -1.7976931348623157E308, -0.0};
+
+    @Test
+    void numbersStraddleTheBuffer() {
+        // Fill the buffer to every few bytes short of its end, then write a long double.
+        for (int gap = 0; gap <= ProgramOutput.MAX_NUMBER_LENGTH + 2; gap++) {
+            for (final double value : LONGEST) {
+                final var bytes = new ByteArrayOutputStream();
+                final var output = new ProgramOutput(bytes);
+                final var expected = new StringBuilder();
+
+                // "1\n" pairs, and a "10\n" to make the gap odd.
+                int used = 0;
+                final int fill = ProgramOutput.BUFFER_SIZE - gap;
+                if ((fill & 1) != 0) {
+                    output.writeNumber(10);
+                    expected.append("10\n");
+                    used = 3;
+                }
+                for (; used < fill; used += 2) {
+                    output.writeNumber(1);
+                    expected.append("1\n");
+                }
+                output.writeNumber(value);
+                output.writeNumber(7);
+                output.flush();
+                expected.append(ProgramOutput.format(value)).append('\n').append("7\n");
+
+                assertEquals(expected.toString(), bytes.toString(StandardCharsets.US_ASCII), "gap " + gap);
+            }
+        }
+    }
+
+    @Test
+    void longestNumberFits() {
+        assertEquals(ProgramOutput.MAX_NUMBER_LENGTH, Double.toString(-2.2250738585072014E-308).length());
+        assertEquals("-0.0", ProgramOutput.format(-0.0));
+        assertEquals("-123", ProgramOutput.format(-123));
+        assertEquals("1.0E15", ProgramOutput.format(1e15));
+    }
+}
@@ -0,0 +1,94 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link StreamingLexer} must scan a source into the same tokens as the
+ * {@link LexicalAnalyzer}, wherever its reads and its buffer happen to cut the source.
+ */
+final class StreamingLexerTest {
+
+    @Test
+    void tokensStraddleTheBuffer() {
+        final var random = new Random(455);
+        for (int i = 0; i < 10; i++) {
+            // Several times the buffer, so that tokens and comments are cut at its end.
+            final byte[] source = LexerInputs.random(random, 3 * StreamingLexer.BUFFER_SIZE + random.nextInt(1000),
+                    random.nextInt(3) == 0);
+            assertSameTokens(source, Channels.newChannel(new ByteArrayInputStream(source)));
+        }
+    }
+
+    @Test
+    void tokensStraddleShortReads() {
+        final var random = new Random(24);
+        for (int i = 0; i < 50; i++) {
+            final byte[] source = LexerInputs.random(random, 1 + random.nextInt(4096), random.nextInt(3) == 0);
+            assertSameTokens(source, new TricklingChannel(source, new Random(i)));
+        }
+    }
+
+    @Test
+    void tokenLongerThanTheBuffer() {
+        final String word = "x".repeat(3 * StreamingLexer.BUFFER_SIZE);
+        final byte[] source = ("a := 1\r\n" + word + " := 2\r# " + word + "\nwrite " + word + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        assertSameTokens(source, Channels.newChannel(new ByteArrayInputStream(source)));
+    }
+
+    @Test
+    void emptySource() {
+        assertSameTokens(new byte[0], Channels.newChannel(new ByteArrayInputStream(new byte[0])));
+        final byte[] comment = "# nothing but a comment".getBytes(StandardCharsets.UTF_8);
+        assertSameTokens(comment, Channels.newChannel(new ByteArrayInputStream(comment)));
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void assertSameTokens(final byte[] source, final ReadableByteChannel channel) {
+        final var lexer = new StreamingLexer(channel);
+        LexerInputs.assertSameTokens(source, lexer, lexer::getTokenStart, lexer::getTokenEnd);
+    }
+
+    /*
+     * Hands out a few bytes per read (sometimes none), like a slow pipe.
+     */
+    private static final class TricklingChannel implements ReadableByteChannel {
+
+        private final ByteBuffer source;
+        private final Random random;
+
+        TricklingChannel(final byte[] source, final Random random) {
+            this.source = ByteBuffer.wrap(source);
+            this.random = random;
+        }
+
+        @Override
+        public int read(final ByteBuffer target) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(random.nextInt(8), source.remaining()), target.remaining());
+            target.put(target.position(), source, source.position(), count);
+            target.position(target.position() + count);
+            source.position(source.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+//  ************** REQUIRES JAVA 17 OR ABOVE! (https://adoptium.net/) ************** //
+package compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The {@link TokenRing} must hand every token over in order, however often it wraps around,
+ * and let either side stop the other.
+ */
+final class TokenRingTest {
+
+    private static final Token[] KINDS = {Token.UNKNOWN, Token.NUMBER, Token.ASSIGNMENT, Token.ADD_OP};
+
+    @Test
+    void tokensWrapAroundTheRing() throws InterruptedException {
+        // A ring smaller than a batch: the producer waits for room all the time.
+        final var ring = new TokenRing(4);
+        final int count = 100_000;
+        final var producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                if (!ring.put(KINDS[i % KINDS.length], i, i + 1)) {
+                    return;
+                }
+                if (i % 7 == 0) {
+                    ring.publish();
+                }
+            }
+            ring.finish(null);
+        });
+        producer.start();
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(ring.take(), "token " + i);
+            assertSame(KINDS[i % KINDS.length], ring.kind());
+            assertEquals(i, ring.start());
+            assertEquals(i + 1, ring.end());
+        }
+        assertFalse(ring.take());
+        producer.join();
+    }
+
+    @Test
+    void closingWakesUpAParkedProducer() throws InterruptedException {
+        final var ring = new TokenRing(2);
+        final var stopped = new AtomicBoolean();
+        final var producer = new Thread(() -> {
+            int i = 0;
+            while (ring.put(Token.UNKNOWN, i, i + 1)) {
+                i++;
+            }
+            stopped.set(true);
+        });
+        producer.start();
+
+        // The ring is full after two tokens; wait until the producer parks for room.
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        ring.close();
+        producer.join(10_000);
+
+        assertFalse(producer.isAlive(), "the producer is still waiting for room");
+        assertTrue(stopped.get());
+        assertTrue(ring.isClosed());
+    }
+
+    @Test
+    void failureReachesTheConsumerAfterTheTokens() {
+        final var ring = new TokenRing(8);
+        ring.put(Token.UNKNOWN, 0, 1);
+        ring.put(Token.UNKNOWN, 2, 3);
+        ring.finish(new IllegalStateException("read failed"));
+
+        assertTrue(ring.take());
+        assertTrue(ring.take());
+        assertEquals(2, ring.start());
+        assertEquals("read failed", assertThrows(IllegalStateException.class, ring::take).getMessage());
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenRing(6));
+        assertThrows(IllegalArgumentException.class, () -> new TokenRing(0));
+    }
+}